@@ -16,12 +16,15 @@
 
 package org.terasology.cities.bldg;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.terasology.cities.deco.Decoration;
 import org.terasology.cities.door.Door;
+import org.terasology.cities.metrics.Tracer;
 import org.terasology.cities.model.roof.Roof;
 import org.terasology.cities.window.Window;
 import org.terasology.math.geom.Shape;
@@ -29,13 +32,15 @@
 import com.google.common.collect.Sets;
 
 /**
- *
+ * Windows, doors and decorations can be added directly or through detail generators
+ * that are run lazily the first time any of them is requested.
  */
 public abstract class AbstractBuildingPart implements BuildingPart {
 
     private final Set<Window> windows = Sets.newHashSet();
     private final Set<Door> doors = Sets.newHashSet();
     private final Set<Decoration> decorations = new HashSet<>();
+    private final List<Runnable> detailGenerators = new ArrayList<>();
     private final Shape layout;
     private final int wallHeight;
     private final int baseHeight;
@@ -77,36 +82,67 @@ public int getBaseHeight() {
     /**
      * @param window the window to add
      */
-    public void addWindow(Window window) {
+    public synchronized void addWindow(Window window) {
         windows.add(window);
     }
 
     /**
      * @param door the door to add
      */
-    public void addDoor(Door door) {
+    public synchronized void addDoor(Door door) {
         doors.add(door);
     }
 
     /**
      * @param decoration the decoration to add
      */
-    public void addDecoration(Decoration decoration) {
+    public synchronized void addDecoration(Decoration decoration) {
         decorations.add(decoration);
     }
 
+    /**
+     * Registers a generator that adds windows, doors or decorations. It is run
+     * the first time details are requested, i.e. not at all for coarse rasterization.
+     * Everything the generator captures (such as the terrain height map) must stay valid until then.
+     * @param generator the detail generator
+     */
+    public synchronized void addDetails(Runnable generator) {
+        detailGenerators.add(generator);
+    }
+
     @Override
     public Set<Window> getWindows() {
+        expandDetails();
         return Collections.unmodifiableSet(windows);
     }
 
     @Override
     public Set<Door> getDoors() {
+        expandDetails();
         return Collections.unmodifiableSet(doors);
     }
 
     @Override
     public Set<Decoration> getDecorations() {
+        expandDetails();
         return Collections.unmodifiableSet(decorations);
     }
+
+    private synchronized void expandDetails() {
+        if (detailGenerators.isEmpty()) {
+            return;
+        }
+
+        Tracer.Span span = Tracer.begin("details", getClass().getSimpleName());
+        try {
+            while (!detailGenerators.isEmpty()) {
+                // generators may register more generators
+                List<Runnable> pending = new ArrayList<>(detailGenerators);
+                detailGenerators.clear();
+                pending.forEach(Runnable::run);
+            }
+        } finally {
+            span.close();
+        }
+    }
 }
@@ -45,8 +45,10 @@ public SimpleTower(Orientation orient, Rect2i layout, int baseHeight, int wallHe
         Rect2i roofArea = layout.expand(new Vector2i(1, 1));
         Roof roof = new BattlementRoof(layout, roofArea, baseHeight + wallHeight, 1);
         room = new StaircaseBuildingPart(layout, orient, roof, baseHeight, wallHeight);
-        Vector2i doorPos = new Vector2i(Edges.getCorner(layout, orient));
-        room.addDoor(new SimpleDoor(orient, doorPos, baseHeight, baseHeight + 2));
+        room.addDetails(() -> {
+            Vector2i doorPos = new Vector2i(Edges.getCorner(layout, orient));
+            room.addDoor(new SimpleDoor(orient, doorPos, baseHeight, baseHeight + 2));
+        });
         addPart(room);
     }
 
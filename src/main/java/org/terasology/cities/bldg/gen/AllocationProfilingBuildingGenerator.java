@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.bldg.gen;
+
+import org.terasology.cities.bldg.Building;
+import org.terasology.cities.metrics.AllocationProfiler;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.commonworld.heightmap.HeightMap;
+
+/**
+ * Records the bytes that another generator allocates per building in the {@link AllocationProfiler},
+ * if profiling is enabled. The entries are named after the class of the wrapped generator.
+ * Doors, windows and decorations are created lazily and are not included.
+ */
+public class AllocationProfilingBuildingGenerator implements BuildingGenerator {
+
+    private final BuildingGenerator generator;
+    private final String name;
+
+    /**
+     * @param generator the generator to profile
+     */
+    public AllocationProfilingBuildingGenerator(BuildingGenerator generator) {
+        this.generator = generator;
+        this.name = generator.getClass().getSimpleName();
+    }
+
+    @Override
+    public Building generate(Parcel parcel, HeightMap hm) {
+        if (!AllocationProfiler.isEnabled()) {
+            return generator.generate(parcel, hm);
+        }
+
+        long before = AllocationProfiler.getAllocatedBytes();
+        Building building = generator.generate(parcel, hm);
+        AllocationProfiler.record(name, AllocationProfiler.getAllocatedBytes() - before);
+        return building;
+    }
+
+    @Override
+    public boolean canGenerate(Parcel parcel) {
+        return generator.canGenerate(parcel);
+    }
+}
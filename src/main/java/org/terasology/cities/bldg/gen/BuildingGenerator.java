@@ -25,6 +25,23 @@
  */
 public interface BuildingGenerator {
 
+    /**
+     * Windows, doors and decorations may be added lazily through {@link org.terasology.cities.bldg.AbstractBuildingPart#addDetails(Runnable)}.
+     * These detail generators capture the height map and read it when the details are first requested,
+     * i.e. possibly long after this method returned. The height map must therefore remain valid for as long as the building is used.
+     * @param parcel the parcel to build on
+     * @param hm the terrain height map
+     * @return the building
+     */
     Building generate(Parcel parcel, HeightMap hm);
 
+    /**
+     * A cheap test that must be passed before {@link #generate(Parcel, HeightMap)} is called.
+     * @param parcel the parcel to test
+     * @return true if a non-degenerate building can be generated on the parcel
+     */
+    default boolean canGenerate(Parcel parcel) {
+        return true;
+    }
+
 }
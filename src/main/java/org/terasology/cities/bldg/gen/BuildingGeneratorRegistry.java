@@ -0,0 +1,324 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.bldg.gen;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.terasology.cities.bldg.Building;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.parcels.Zone;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.utilities.random.MersenneRandom;
+import org.terasology.utilities.random.Random;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Maps {@link Zone}s to weighted lists of {@link BuildingGenerator}s. Every entry defines the range of parcel
+ * sizes it can be used for: the shorter parcel edge must be at least the minimum size and the longer
+ * edge must not exceed the maximum size. In addition, the generator must accept the parcel
+ * in {@link BuildingGenerator#canGenerate(Parcel)}.
+ * <br><br>
+ * The selection among the entries that fit a parcel is done through an alias table (Vose's method) in O(1).
+ * The tables are computed lazily for every zone and combination of fitting entries and are then reused.
+ * {@link #generate(Parcel, HeightMap)} runs the generators through a {@link TracingBuildingGenerator}
+ * and an {@link AllocationProfilingBuildingGenerator}.
+ * Registration is not thread-safe, but selection is.
+ */
+public class BuildingGeneratorRegistry {
+
+    /**
+     * The maximum number of entries per zone
+     */
+    public static final int MAX_ENTRIES = 64;
+
+    private final Map<Zone, ZoneEntries> zones = new EnumMap<>(Zone.class);
+
+    /**
+     * Creates a registry with the default generators of this module.
+     * @param seed the seed for the generators that require one
+     * @return a new registry
+     */
+    public static BuildingGeneratorRegistry createDefault(long seed) {
+        BuildingGeneratorRegistry registry = new BuildingGeneratorRegistry();
+        registry.register(Zone.RESIDENTIAL, new RectHouseGenerator(), 1f, 0, Integer.MAX_VALUE);
+        registry.register(Zone.COMMERCIAL, new CommercialBuildingGenerator(seed), 1f, 0, Integer.MAX_VALUE);
+        registry.register(Zone.COMMERCIAL, new RectHouseGenerator(), 0.25f, 0, 20);
+        registry.register(Zone.CLERICAL, new SimpleChurchGenerator(seed), 1f, 0, Integer.MAX_VALUE);
+        registry.register(Zone.GOVERNMENTAL, new TownHallGenerator(), 1f, 0, Integer.MAX_VALUE);
+        return registry;
+    }
+
+    /**
+     * @param zone the zone
+     * @param generator the generator
+     * @param weight the relative probability of the entry (must be positive)
+     * @param minSize the minimum length of the shorter parcel edge
+     * @param maxSize the maximum length of the longer parcel edge
+     * @return this
+     */
+    public BuildingGeneratorRegistry register(Zone zone, BuildingGenerator generator, float weight, int minSize, int maxSize) {
+        Preconditions.checkArgument(zone != null, "zone must not be null");
+        Preconditions.checkArgument(generator != null, "generator must not be null");
+        Preconditions.checkArgument(weight > 0, "weight must be positive");
+        Preconditions.checkArgument(minSize <= maxSize, "minSize must not be larger than maxSize");
+
+        ZoneEntries prev = zones.get(zone);
+        Entry[] prevEntries = (prev != null) ? prev.entries : new Entry[0];
+        Preconditions.checkState(prevEntries.length < MAX_ENTRIES, "too many entries for zone %s", zone);
+
+        Entry[] next = Arrays.copyOf(prevEntries, prevEntries.length + 1);
+        next[prevEntries.length] = new Entry(generator, weight, minSize, maxSize);
+        zones.put(zone, new ZoneEntries(next));
+        return this;
+    }
+
+    /**
+     * @param parcel the parcel
+     * @param rng the random number generator
+     * @return a generator that fits the parcel or <code>null</code> if there is none
+     */
+    public BuildingGenerator select(Parcel parcel, Random rng) {
+        Entry entry = selectEntry(parcel, rng);
+        return (entry != null) ? entry.generator : null;
+    }
+
+    /**
+     * Creates a building with a generator that fits the parcel. The random numbers are derived from the parcel shape.
+     * @param parcel the parcel
+     * @param hm the height map
+     * @return the building or <code>null</code> if no generator fits the parcel
+     */
+    public Building generate(Parcel parcel, HeightMap hm) {
+        Entry entry = selectEntry(parcel, new MersenneRandom(parcel.getShape().hashCode()));
+        return (entry != null) ? entry.traced.generate(parcel, hm) : null;
+    }
+
+    /**
+     * Tests many parcels at once, so that infeasible parcels can be dropped before any building is generated.
+     * @param parcels the parcels to test
+     * @return the indices of all parcels that at least one registered generator fits
+     */
+    public BitSet getFeasible(List<? extends Parcel> parcels) {
+        BitSet result = new BitSet(parcels.size());
+        for (int i = 0; i < parcels.size(); i++) {
+            Parcel parcel = parcels.get(i);
+            ZoneEntries zoneEntries = zones.get(parcel.getZone());
+            if (zoneEntries != null && getFeasible(zoneEntries.entries, parcel) != 0) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    private Entry selectEntry(Parcel parcel, Random rng) {
+        ZoneEntries zoneEntries = zones.get(parcel.getZone());
+        if (zoneEntries == null) {
+            return null;
+        }
+
+        long mask = getFeasible(zoneEntries.entries, parcel);
+        if (mask == 0) {
+            return null;
+        }
+
+        AliasTable table = zoneEntries.tables.get(mask);
+        if (table == null) {
+            table = zoneEntries.createTable(mask);
+        }
+        return table.sample(rng);
+    }
+
+    private static long getFeasible(Entry[] zoneEntries, Parcel parcel) {
+        Rect2i shape = parcel.getShape();
+        int shorter = Math.min(shape.width(), shape.height());
+        int longer = Math.max(shape.width(), shape.height());
+        long mask = 0;
+        for (int i = 0; i < zoneEntries.length; i++) {
+            Entry entry = zoneEntries[i];
+            if (shorter >= entry.minSize && longer <= entry.maxSize && entry.generator.canGenerate(parcel)) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static final class ZoneEntries {
+        private final Entry[] entries;
+        private volatile AliasTableMap tables = new AliasTableMap(8);    // key is the mask of fitting entries
+
+        ZoneEntries(Entry[] entries) {
+            this.entries = entries;
+        }
+
+        /**
+         * Creates the table for the given mask only once, even if called concurrently.
+         * The lookups in {@link #selectEntry} see either the previous or the new map.
+         */
+        synchronized AliasTable createTable(long mask) {
+            AliasTableMap current = tables;
+            AliasTable table = current.get(mask);
+            if (table == null) {
+                table = new AliasTable(entries, mask);
+                tables = current.with(mask, table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * An immutable open-addressed map from masks of fitting entries to alias tables.
+     * Lookups do not box the mask and do not lock; adding a table creates a new map.
+     */
+    private static final class AliasTableMap {
+        private final long[] masks;
+        private final AliasTable[] tables;
+        private int size;       // only modified before the map is published
+
+        AliasTableMap(int capacity) {
+            this.masks = new long[capacity];
+            this.tables = new AliasTable[capacity];
+        }
+
+        AliasTable get(long mask) {
+            int last = tables.length - 1;
+            for (int i = indexOf(mask, last); tables[i] != null; i = (i + 1) & last) {
+                if (masks[i] == mask) {
+                    return tables[i];
+                }
+            }
+            return null;
+        }
+
+        AliasTableMap with(long mask, AliasTable table) {
+            // keep the load factor at 0.5 at most, so that probe sequences remain short
+            int capacity = (2 * (size + 1) > tables.length) ? 2 * tables.length : tables.length;
+            AliasTableMap next = new AliasTableMap(capacity);
+            for (int i = 0; i < tables.length; i++) {
+                if (tables[i] != null) {
+                    next.put(masks[i], tables[i]);
+                }
+            }
+            next.put(mask, table);
+            return next;
+        }
+
+        private void put(long mask, AliasTable table) {
+            int last = tables.length - 1;
+            int i = indexOf(mask, last);
+            while (tables[i] != null) {
+                i = (i + 1) & last;
+            }
+            masks[i] = mask;
+            tables[i] = table;
+            size++;
+        }
+
+        private static int indexOf(long mask, int last) {
+            return (int) ((mask * 0x9E3779B97F4A7C15L) >>> 32) & last;
+        }
+    }
+
+    private static final class Entry {
+        private final BuildingGenerator generator;
+        private final BuildingGenerator traced;
+        private final float weight;
+        private final int minSize;
+        private final int maxSize;
+
+        Entry(BuildingGenerator generator, float weight, int minSize, int maxSize) {
+            this.generator = generator;
+            BuildingGenerator profiled = new AllocationProfilingBuildingGenerator(generator);
+            this.traced = new TracingBuildingGenerator(profiled, generator.getClass().getSimpleName());
+            this.weight = weight;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Vose's alias method for a subset of entries
+     */
+    private static final class AliasTable {
+        private final Entry[] entries;
+        private final float[] prob;
+        private final int[] alias;
+
+        AliasTable(Entry[] zoneEntries, long mask) {
+            int n = Long.bitCount(mask);
+            entries = new Entry[n];
+            prob = new float[n];
+            alias = new int[n];
+
+            double sum = 0;
+            double[] weights = new double[n];
+            int k = 0;
+            for (int i = 0; i < zoneEntries.length; i++) {
+                if ((mask & (1L << i)) != 0) {
+                    entries[k] = zoneEntries[i];
+                    weights[k] = zoneEntries[i].weight;
+                    sum += weights[k];
+                    k++;
+                }
+            }
+
+            Deque<Integer> small = new ArrayDeque<>();
+            Deque<Integer> large = new ArrayDeque<>();
+            for (int i = 0; i < n; i++) {
+                weights[i] = weights[i] * n / sum;
+                if (weights[i] < 1) {
+                    small.push(i);
+                } else {
+                    large.push(i);
+                }
+            }
+
+            while (!small.isEmpty() && !large.isEmpty()) {
+                int less = small.pop();
+                int more = large.pop();
+                prob[less] = (float) weights[less];
+                alias[less] = more;
+                weights[more] = weights[more] + weights[less] - 1;
+                if (weights[more] < 1) {
+                    small.push(more);
+                } else {
+                    large.push(more);
+                }
+            }
+
+            // the remaining ones are (numerically close to) 1
+            while (!large.isEmpty()) {
+                prob[large.pop()] = 1;
+            }
+            while (!small.isEmpty()) {
+                prob[small.pop()] = 1;
+            }
+        }
+
+        Entry sample(Random rng) {
+            int column = rng.nextInt(prob.length);
+            return (rng.nextFloat() < prob[column]) ? entries[column] : entries[alias[column]];
+        }
+    }
+}
@@ -36,6 +36,11 @@
  */
 public class CommercialBuildingGenerator implements BuildingGenerator {
 
+    /**
+     * The inset on both sides plus one arch (2 * radius + 1) between two pillars
+     */
+    private static final int MIN_SIZE = 2 * 4 + (2 * 4 + 1) + 2;
+
     private long seed;
 
     /**
@@ -45,6 +50,12 @@ public CommercialBuildingGenerator(long seed) {
         this.seed = seed;
     }
 
+    @Override
+    public boolean canGenerate(Parcel parcel) {
+        Rect2i rc = parcel.getShape();
+        return Math.min(rc.width(), rc.height()) >= MIN_SIZE;
+    }
+
     public Building generate(Parcel parcel, HeightMap hm) {
         Orientation o = parcel.getOrientation();
         DefaultBuilding bldg = new DefaultBuilding(o);
@@ -65,6 +76,14 @@ public Building generate(Parcel parcel, HeightMap hm) {
         HollowBuildingPart hall = new HollowBuildingPart(rc, roof, baseHeight, wallHeight, arcRadius);
         bldg.addPart(hall);
 
+        // decorations are created only when they are requested
+        hall.addDetails(() -> addDecorations(hall, baseHeight, roofBaseHeight));
+
+        return bldg;
+    }
+
+    private void addDecorations(HollowBuildingPart hall, int baseHeight, int roofBaseHeight) {
+        Rect2i rc = hall.getShape();
         WhiteNoise noiseGen = new WhiteNoise(seed);
 
         float fillFactor = 0.3f;
@@ -83,8 +102,6 @@ public Building generate(Parcel parcel, HeightMap hm) {
             BaseVector3i pos3d = new ImmutableVector3i(pos.x(), roofBaseHeight - 2, pos.y());
             hall.addDecoration(new SingleBlockDecoration(DefaultBlockType.TORCH, pos3d, Side.FRONT));
         }
-
-        return bldg;
     }
 
 }
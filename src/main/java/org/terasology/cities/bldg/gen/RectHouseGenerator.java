@@ -45,6 +45,17 @@
  */
 public class RectHouseGenerator implements BuildingGenerator {
 
+    /**
+     * The inset on both sides plus a wall on both sides of at least one block of floor space
+     */
+    private static final int MIN_SIZE = 2 * 2 + 3;
+
+    @Override
+    public boolean canGenerate(Parcel parcel) {
+        Rect2i rc = parcel.getShape();
+        return Math.min(rc.width(), rc.height()) >= MIN_SIZE;
+    }
+
     public Building generate(Parcel parcel, HeightMap hm) {
 
         // use the rectangle, not the lot itself, because its hashcode is the identity hashcode
@@ -72,6 +83,15 @@ public Building generate(Parcel parcel, HeightMap hm) {
         RectBuildingPart part = new RectBuildingPart(layout, roof, floorHeight, wallHeight);
         bldg.addPart(part);
 
+        // doors, windows and decorations are created only when they are requested
+        part.addDetails(() -> addDetails(part, o, doorPos, hm, rng));
+
+        return bldg;
+    }
+
+    private void addDetails(RectBuildingPart part, Orientation o, Vector2i doorPos, HeightMap hm, Random rng) {
+        Rect2i layout = part.getShape();
+        int floorHeight = part.getBaseHeight();
         int doorHeight = 2;
 
         SimpleDoor door = new SimpleDoor(o, doorPos, floorHeight, floorHeight + doorHeight);
@@ -94,8 +114,6 @@ public Building generate(Parcel parcel, HeightMap hm) {
         }
 
         addDecorations(part, o.getOpposite(), floorHeight, rng);
-
-        return bldg;
     }
 
     private void addDecorations(RectBuildingPart part, Orientation o, int baseHeight, Random rng) {
@@ -36,10 +36,11 @@
 import org.terasology.commonworld.heightmap.HeightMap;
 import org.terasology.math.Side;
 import org.terasology.math.TeraMath;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.ImmutableVector3i;
 import org.terasology.math.geom.LineSegment;
 import org.terasology.math.geom.Rect2i;
 import org.terasology.math.geom.Vector2i;
-import org.terasology.math.geom.Vector3i;
 import org.terasology.utilities.random.MersenneRandom;
 import org.terasology.utilities.random.Random;
 
@@ -50,6 +51,12 @@
  */
 public class SimpleChurchGenerator implements BuildingGenerator {
 
+    /**
+     * The nave must be at least as wide as the entrance (3) and has aisles of 5 blocks on both sides,
+     * plus the inset on both sides
+     */
+    private static final int MIN_SIZE = 2 * 1 + 3 + 2 * 5;
+
     private final long seed;
 
     /**
@@ -59,6 +66,12 @@ public SimpleChurchGenerator(long seed) {
         this.seed = seed;
     }
 
+    @Override
+    public boolean canGenerate(Parcel parcel) {
+        Rect2i rc = parcel.getShape();
+        return Math.min(rc.width(), rc.height()) >= MIN_SIZE;
+    }
+
     /**
      * @param lot the lot to use
      * @param hm the height map to define the floor level
@@ -69,7 +82,7 @@ public Building generate(Parcel lot, HeightMap hm) {
         Random rand = new MersenneRandom(seed ^ lot.getShape().hashCode());
 
         // make build-able area 1 block smaller, so make the roof stay inside
-        Rect2i lotRc = lot.getShape().expand(new Vector2i(-1, -1));
+        Rect2i lotRc = lot.getShape().expand(-1, -1);
 
         boolean alignEastWest = (lotRc.width() > lotRc.height());
         Orientation o = alignEastWest ? Orientation.EAST : Orientation.NORTH;
@@ -136,23 +149,28 @@ private BuildingPart createNave(Turtle cur, Rect2i naveRect, Rect2i doorRc, int
 
         RectBuildingPart nave = new RectBuildingPart(naveRect, naveRoof, baseHeight, hallHeight);
 
-        WingDoor entrance = new WingDoor(cur.getOrientation(), doorRc, baseHeight, baseHeight + entranceHeight);
-        nave.addDoor(entrance);
-
-        int wallDist = cur.width(naveRect) / 2;
-        for (int i = 4; i < cur.length(naveRect) - 4; i += 3) {
-            Orientation left = cur.getOrientation().getRotated(-90);
-            Orientation right = cur.getOrientation().getRotated(90);
-            nave.addWindow(new SimpleWindow(left, cur.transform(-wallDist, i), topHeight - 3));
-            nave.addWindow(new SimpleWindow(right, cur.transform(wallDist, i), topHeight - 3));
-        }
+        nave.addDetails(() -> {
+            WingDoor entrance = new WingDoor(cur.getOrientation(), doorRc, baseHeight, baseHeight + entranceHeight);
+            nave.addDoor(entrance);
+
+            int wallDist = cur.width(naveRect) / 2;
+            for (int i = 4; i < cur.length(naveRect) - 4; i += 3) {
+                Orientation left = cur.getOrientation().getRotated(-90);
+                Orientation right = cur.getOrientation().getRotated(90);
+                ImmutableVector2i leftPos = new ImmutableVector2i(cur.transformX(-wallDist, i), cur.transformY(-wallDist, i));
+                ImmutableVector2i rightPos = new ImmutableVector2i(cur.transformX(wallDist, i), cur.transformY(wallDist, i));
+                nave.addWindow(new SimpleWindow(left, leftPos, topHeight - 3));
+                nave.addWindow(new SimpleWindow(right, rightPos, topHeight - 3));
+            }
 
-        Vector2i colLeft = cur.transform(-wallDist + 2, cur.length(naveRect) - 2);
-        Vector2i colRight = cur.transform(wallDist - 2, cur.length(naveRect) - 2);
-        Vector3i colLeft3d = new Vector3i(colLeft.getX(), baseHeight, colLeft.getY());
-        Vector3i colRight3d = new Vector3i(colRight.getX(), baseHeight, colRight.getY());
-        nave.addDecoration(new Pillar(colLeft3d, hallHeight - 3));
-        nave.addDecoration(new Pillar(colRight3d, hallHeight - 3));
+            int colDist = cur.length(naveRect) - 2;
+            ImmutableVector3i colLeft3d = new ImmutableVector3i(
+                    cur.transformX(-wallDist + 2, colDist), baseHeight, cur.transformY(-wallDist + 2, colDist));
+            ImmutableVector3i colRight3d = new ImmutableVector3i(
+                    cur.transformX(wallDist - 2, colDist), baseHeight, cur.transformY(wallDist - 2, colDist));
+            nave.addDecoration(new Pillar(colLeft3d, hallHeight - 3));
+            nave.addDecoration(new Pillar(colRight3d, hallHeight - 3));
+        });
         return nave;
     }
 
@@ -166,31 +184,33 @@ private BuildingPart createTower(Turtle turtle, Rect2i rect, int baseHeight) {
         HipRoof towerRoof = new HipRoof(rect, towerRoofRect, topHeight, 2);
         RectBuildingPart tower = new RectBuildingPart(rect, towerRoof, baseHeight, towerHeight);
 
-        turtle.setPosition(Edges.getCorner(rect, dir.getOpposite()));
-
-        int width = turtle.width(rect) - 2;
-        tower.addDoor(new WingDoor(dir, turtle.rectCentered(0, width, 1), baseHeight, baseHeight + doorHeight));
+        tower.addDetails(() -> {
+            turtle.setPosition(Edges.getCorner(rect, dir.getOpposite()));
 
-        // create and add tower windows
-        for (int i = 0; i < 3; i++) {
-            // use the other three cardinal directions to place windows
-            Orientation orient = dir.getRotated(90 * (i - 1)); // left, forward, right
-            LineSegment towerBorder = Edges.getEdge(rect, orient);
-            Vector2i towerPos = new Vector2i(towerBorder.lerp(0.5f), RoundingMode.HALF_UP);
+            int width = turtle.width(rect) - 2;
+            tower.addDoor(new WingDoor(dir, turtle.rectCentered(0, width, 1), baseHeight, baseHeight + doorHeight));
 
-            Rect2i wndRect = Rect2i.createFromMinAndSize(towerPos.getX(), towerPos.getY(), 1, 1);
-            tower.addWindow(new RectWindow(orient, wndRect, topHeight - 4, topHeight - 1, DefaultBlockType.AIR));
-        }
+            // create and add tower windows
+            for (int i = 0; i < 3; i++) {
+                // use the other three cardinal directions to place windows
+                Orientation orient = dir.getRotated(90 * (i - 1)); // left, forward, right
+                LineSegment towerBorder = Edges.getEdge(rect, orient);
+                Vector2i towerPos = new Vector2i(towerBorder.lerp(0.5f), RoundingMode.HALF_UP);
 
-        Vector2i torchPos2d = turtle.transform(0, turtle.length(rect) - 2);
-        Vector3i torchPos3d = new Vector3i(torchPos2d.x(), baseHeight + 4, torchPos2d.y());
-        tower.addDecoration(new SingleBlockDecoration(DefaultBlockType.TORCH, torchPos3d, Side.FRONT));
+                Rect2i wndRect = Rect2i.createFromMinAndSize(towerPos.getX(), towerPos.getY(), 1, 1);
+                tower.addWindow(new RectWindow(orient, wndRect, topHeight - 4, topHeight - 1, DefaultBlockType.AIR));
+            }
 
-        Orientation ladderDir = dir.getRotated(270);
-        Vector2i ladderPos2d = Edges.getCorner(rect.expand(-1, -1), ladderDir);
-        Vector3i ladderPos3d = new Vector3i(ladderPos2d.getX(), baseHeight + 1, ladderPos2d.getY());
-        tower.addDecoration(new Ladder(ladderPos3d, ladderDir, towerHeight - 3));
+            int torchDist = turtle.length(rect) - 2;
+            ImmutableVector3i torchPos3d = new ImmutableVector3i(
+                    turtle.transformX(0, torchDist), baseHeight + 4, turtle.transformY(0, torchDist));
+            tower.addDecoration(new SingleBlockDecoration(DefaultBlockType.TORCH, torchPos3d, Side.FRONT));
 
+            Orientation ladderDir = dir.getRotated(270);
+            Vector2i ladderPos2d = Edges.getCorner(rect.expand(-1, -1), ladderDir);
+            ImmutableVector3i ladderPos3d = new ImmutableVector3i(ladderPos2d.getX(), baseHeight + 1, ladderPos2d.getY());
+            tower.addDecoration(new Ladder(ladderPos3d, ladderDir, towerHeight - 3));
+        });
         return tower;
     }
 
@@ -204,13 +224,14 @@ private RectBuildingPart createAisle(Turtle turtle, Rect2i rect, int baseHeight)
         PentRoof roof = new PentRoof(rect, roofRect, baseHeight + sideWallHeight, roofOrient, 0.333f);
         RectBuildingPart aisle = new RectBuildingPart(rect, roof, baseHeight, sideWallHeight);
 
-        turtle.setPosition(Edges.getCorner(rect, dir.getOpposite()));
-
-        int len = 8;
-        aisle.addDoor(new WingDoor(dir, turtle.rect(-len + 2, 0, 3, 1), baseHeight, baseHeight + doorHeight));
-        aisle.addDoor(new WingDoor(dir, turtle.rect(-1, 0, 3, 1), baseHeight, baseHeight + doorHeight));
-        aisle.addDoor(new WingDoor(dir, turtle.rect(len - 4, 0, 3, 1), baseHeight, baseHeight + doorHeight));
+        aisle.addDetails(() -> {
+            turtle.setPosition(Edges.getCorner(rect, dir.getOpposite()));
 
+            int len = 8;
+            aisle.addDoor(new WingDoor(dir, turtle.rect(-len + 2, 0, 3, 1), baseHeight, baseHeight + doorHeight));
+            aisle.addDoor(new WingDoor(dir, turtle.rect(-1, 0, 3, 1), baseHeight, baseHeight + doorHeight));
+            aisle.addDoor(new WingDoor(dir, turtle.rect(len - 4, 0, 3, 1), baseHeight, baseHeight + doorHeight));
+        });
         return aisle;
     }
 
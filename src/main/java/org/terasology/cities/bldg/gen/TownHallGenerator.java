@@ -37,6 +37,17 @@
  */
 public class TownHallGenerator implements BuildingGenerator {
 
+    /**
+     * The inset on both sides plus two modules of 6 blocks in each direction
+     */
+    private static final int MIN_SIZE = 2 * 2 + 12;
+
+    @Override
+    public boolean canGenerate(Parcel parcel) {
+        Rect2i rc = parcel.getShape();
+        return Math.min(rc.width(), rc.height()) >= MIN_SIZE;
+    }
+
     public Building generate(Parcel parcel, HeightMap hm) {
 
         Orientation o = parcel.getOrientation();
@@ -46,7 +57,6 @@ public Building generate(Parcel parcel, HeightMap hm) {
 
         ImmutableVector2i doorDir = o.getOpposite().getDir();
         Vector2i doorPos = Edges.getCorner(rc, o.getOpposite());
-        Vector2i probePos = new Vector2i(doorPos.getX() + doorDir.getX(), doorPos.getY() + doorDir.getY());
 
         Turtle turtle = new Turtle(doorPos, o);
         turtle.move(0, 2);
@@ -57,7 +67,7 @@ public Building generate(Parcel parcel, HeightMap hm) {
         length -= length % 6;
 
         // we add +1, because the building starts at 1 block above the terrain
-        int floorHeight = TeraMath.floorToInt(hm.apply(probePos)) + 1;
+        int floorHeight = TeraMath.floorToInt(hm.apply(doorPos.getX() + doorDir.getX(), doorPos.getY() + doorDir.getY())) + 1;
         int wallHeight = 6;
 
         // Create entry hall
@@ -86,21 +96,25 @@ public Building generate(Parcel parcel, HeightMap hm) {
     private RectBuildingPart createHall(Rect2i rc, Orientation o, int floorHeight, int wallHeight) {
         Roof roof = new HipRoof(rc, rc.expand(1, 1), floorHeight + wallHeight, 1f);
         RectBuildingPart hall = new RectBuildingPart(rc, roof, floorHeight, wallHeight);
-        Vector2i doorPos = Edges.getCorner(rc, o.getOpposite());
-        hall.addDoor(new SimpleDoor(o, doorPos, floorHeight, floorHeight + 2));
-        hall.addWindow(new SimpleWindow(o.getRotated(90), Edges.getCorner(rc, o.getRotated(90)), floorHeight + 1));
-        hall.addWindow(new SimpleWindow(o.getRotated(270), Edges.getCorner(rc, o.getRotated(270)), floorHeight + 1));
-        hall.addWindow(new SimpleWindow(o, Edges.getCorner(rc, o), floorHeight + 1));
+        hall.addDetails(() -> {
+            Vector2i doorPos = Edges.getCorner(rc, o.getOpposite());
+            hall.addDoor(new SimpleDoor(o, doorPos, floorHeight, floorHeight + 2));
+            hall.addWindow(new SimpleWindow(o.getRotated(90), Edges.getCorner(rc, o.getRotated(90)), floorHeight + 1));
+            hall.addWindow(new SimpleWindow(o.getRotated(270), Edges.getCorner(rc, o.getRotated(270)), floorHeight + 1));
+            hall.addWindow(new SimpleWindow(o, Edges.getCorner(rc, o), floorHeight + 1));
+        });
         return hall;
     }
 
     private RectBuildingPart createHallway(Rect2i rc, Orientation o, int floorHeight, int wallHeight) {
         HipRoof roof = new HipRoof(rc, rc, floorHeight + wallHeight, 1f);
         RectBuildingPart hallway = new RectBuildingPart(rc, roof, floorHeight, wallHeight);
-        hallway.addDoor(new SimpleDoor(o, Edges.getCorner(rc, o.getOpposite()), floorHeight, floorHeight + 2));
-        hallway.addDoor(new SimpleDoor(o, Edges.getCorner(rc, o), floorHeight, floorHeight + 2));
-        hallway.addWindow(new SimpleWindow(o.getRotated(90), Edges.getCorner(rc, o.getRotated(90)), floorHeight + 1));
-        hallway.addWindow(new SimpleWindow(o.getRotated(270), Edges.getCorner(rc, o.getRotated(270)), floorHeight + 1));
+        hallway.addDetails(() -> {
+            hallway.addDoor(new SimpleDoor(o, Edges.getCorner(rc, o.getOpposite()), floorHeight, floorHeight + 2));
+            hallway.addDoor(new SimpleDoor(o, Edges.getCorner(rc, o), floorHeight, floorHeight + 2));
+            hallway.addWindow(new SimpleWindow(o.getRotated(90), Edges.getCorner(rc, o.getRotated(90)), floorHeight + 1));
+            hallway.addWindow(new SimpleWindow(o.getRotated(270), Edges.getCorner(rc, o.getRotated(270)), floorHeight + 1));
+        });
         return hallway;
     }
 
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.bldg.gen;
+
+import org.terasology.cities.bldg.Building;
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.commonworld.heightmap.HeightMap;
+
+/**
+ * Records a {@link Tracer} span in the "generator" category for every building that another generator creates.
+ * By default, the span is named after the class of the wrapped generator.
+ */
+public class TracingBuildingGenerator implements BuildingGenerator {
+
+    private final BuildingGenerator generator;
+    private final String name;
+
+    /**
+     * @param generator the generator to trace
+     */
+    public TracingBuildingGenerator(BuildingGenerator generator) {
+        this(generator, generator.getClass().getSimpleName());
+    }
+
+    /**
+     * @param generator the generator to trace
+     * @param name the name of the spans
+     */
+    public TracingBuildingGenerator(BuildingGenerator generator, String name) {
+        this.generator = generator;
+        this.name = name;
+    }
+
+    @Override
+    public Building generate(Parcel parcel, HeightMap hm) {
+        Tracer.Span span = Tracer.begin("generator", name);
+        try {
+            return generator.generate(parcel, hm);
+        } finally {
+            span.close();
+        }
+    }
+
+    @Override
+    public boolean canGenerate(Parcel parcel) {
+        return generator.canGenerate(parcel);
+    }
+}
@@ -16,7 +16,6 @@
 
 package org.terasology.cities.bldg.gen;
 
-import org.terasology.cities.common.Edges;
 import org.terasology.commonworld.Orientation;
 import org.terasology.math.geom.BaseVector2i;
 import org.terasology.math.geom.ImmutableVector2i;
@@ -29,18 +28,45 @@
  */
 public class Turtle {
     private Orientation orient;
-    private Vector2i pos;
+    private int dirX;
+    private int dirY;
+    private int x;
+    private int y;
 
     public Turtle(BaseVector2i pos, Orientation orientation) {
-        this.orient = orientation;
-        this.pos = new Vector2i(pos);
+        this(pos.getX(), pos.getY(), orientation);
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param orientation the orientation
+     */
+    public Turtle(int x, int y, Orientation orientation) {
+        this.x = x;
+        this.y = y;
+        setOrientation(orientation);
     }
 
     /**
      * @param other the turtle to copy
      */
     public Turtle(Turtle other) {
-        this(other.pos, other.orient);
+        set(other);
+    }
+
+    /**
+     * Copies position and orientation of another turtle
+     * @param other the turtle to copy
+     * @return this
+     */
+    public Turtle set(Turtle other) {
+        this.x = other.x;
+        this.y = other.y;
+        this.orient = other.orient;
+        this.dirX = other.dirX;
+        this.dirY = other.dirY;
+        return this;
     }
 
     /**
@@ -48,7 +74,7 @@ public Turtle(Turtle other) {
      * @return this
      */
     public Turtle rotate(int degrees) {
-        orient = orient.getRotated(degrees);
+        setOrientation(orient.getRotated(degrees));
         return this;
     }
 
@@ -63,12 +89,13 @@ public Turtle setPosition(BaseVector2i newPos) {
 
     /**
      * Sets the position independent of current position/location
-     * @param x the new x coordinate
-     * @param y the new y coordinate
+     * @param newX the new x coordinate
+     * @param newY the new y coordinate
      * @return this
      */
-    public Turtle setPosition(int x, int y) {
-        pos.set(x, y);
+    public Turtle setPosition(int newX, int newY) {
+        this.x = newX;
+        this.y = newY;
         return this;
     }
 
@@ -79,9 +106,8 @@ public Turtle setPosition(int x, int y) {
      * @return this
      */
     public Turtle move(int right, int forward) {
-        ImmutableVector2i dir = orient.getDir();
-        pos.addX(rotateX(dir, right, forward));
-        pos.addY(rotateY(dir, right, forward));
+        x += rotateX(right, forward);
+        y += rotateY(right, forward);
         return this;
     }
 
@@ -116,13 +142,12 @@ public int length(Rect2i rect) {
      * @return the rectangle
      */
     public Rect2i rect(int right, int forward, int width, int len) {
-        ImmutableVector2i dir = orient.getDir();
-        int minX = pos.getX() + rotateX(dir, right, forward);
-        int minY = pos.getY() + rotateY(dir, right, forward);
+        int x0 = x + rotateX(right, forward);
+        int y0 = y + rotateY(right, forward);
 
-        int maxX = pos.getX() + rotateX(dir, right + width - 1, forward + len - 1);
-        int maxY = pos.getY() + rotateY(dir, right + width - 1, forward + len - 1);
-        return Rect2i.createEncompassing(minX, minY, maxX, maxY);
+        int x1 = x + rotateX(right + width - 1, forward + len - 1);
+        int y1 = y + rotateY(right + width - 1, forward + len - 1);
+        return Rect2i.createFromMinAndMax(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1));
     }
 
     /**
@@ -150,17 +175,19 @@ public Rect2i rectCentered(int forward, int width, int len) {
      * @return a new rect with adjusted coordinates
      */
     public Rect2i adjustRect(Rect2i rc, int left, int back, int right, int forward) {
-        Orientation cd = orient.getRotated(45);
-        Vector2i max = Edges.getCorner(rc, cd);
-        Vector2i min = Edges.getCorner(rc, cd.getOpposite());
+        // the corners in front-right and back-left direction, see Edges.getCorner()
+        ImmutableVector2i cd = orient.getRotated(45).getDir();
+        int cornerX = rc.minX() + (rc.width() - 1) * (cd.getX() + 1) / 2;
+        int cornerY = rc.minY() + (rc.height() - 1) * (cd.getY() + 1) / 2;
+        int oppositeX = rc.minX() + (rc.width() - 1) * (1 - cd.getX()) / 2;
+        int oppositeY = rc.minY() + (rc.height() - 1) * (1 - cd.getY()) / 2;
 
-        ImmutableVector2i dir = orient.getDir();
-        int minX = min.getX() + rotateX(dir, left, back);
-        int minY = min.getY() + rotateY(dir, left, back);
-        int maxX = max.getX() + rotateX(dir, right, forward);
-        int maxY = max.getY() + rotateY(dir, right, forward);
+        int x0 = oppositeX + rotateX(left, back);
+        int y0 = oppositeY + rotateY(left, back);
+        int x1 = cornerX + rotateX(right, forward);
+        int y1 = cornerY + rotateY(right, forward);
 
-        return Rect2i.createEncompassing(minX, minY, maxX, maxY);
+        return Rect2i.createFromMinAndMax(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1));
     }
 
     /**
@@ -174,7 +201,29 @@ public Orientation getOrientation() {
      * @return a copy of the current cursor location
      */
     public ImmutableVector2i getPos() {
-        return new ImmutableVector2i(pos);
+        return new ImmutableVector2i(x, y);
+    }
+
+    /**
+     * @param out the vector to write the current cursor location to
+     * @return out
+     */
+    public Vector2i getPos(Vector2i out) {
+        return out.set(x, y);
+    }
+
+    /**
+     * @return the x coordinate of the current cursor location
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return the y coordinate of the current cursor location
+     */
+    public int getY() {
+        return y;
     }
 
     /**
@@ -184,20 +233,54 @@ public ImmutableVector2i getPos() {
      * @return the transformed translation
      */
     public Vector2i transform(int right, int forward) {
-        int x = pos.getX() + rotateX(orient.getDir(), right, forward);
-        int y = pos.getY() + rotateY(orient.getDir(), right, forward);
-        return new Vector2i(x, y);
+        return transform(right, forward, new Vector2i());
+    }
+
+    /**
+     * Apply the current position offset and rotation to the given translation vector
+     * @param right amount to the right
+     * @param forward amount forward
+     * @param out the vector to write the result to
+     * @return out
+     */
+    public Vector2i transform(int right, int forward, Vector2i out) {
+        return out.set(transformX(right, forward), transformY(right, forward));
+    }
+
+    /**
+     * @param right amount to the right
+     * @param forward amount forward
+     * @return the x coordinate of the transformed translation
+     */
+    public int transformX(int right, int forward) {
+        return x + rotateX(right, forward);
+    }
+
+    /**
+     * @param right amount to the right
+     * @param forward amount forward
+     * @return the y coordinate of the transformed translation
+     */
+    public int transformY(int right, int forward) {
+        return y + rotateY(right, forward);
+    }
+
+    private void setOrientation(Orientation orientation) {
+        ImmutableVector2i dir = orientation.getDir();
+        this.orient = orientation;
+        this.dirX = dir.getX();
+        this.dirY = dir.getY();
     }
 
     private boolean isHorz() {
         return (orient == Orientation.WEST) || (orient == Orientation.EAST);
     }
 
-    private static int rotateX(BaseVector2i dir, int dx, int dy) {
-        return -dx * dir.getY() + dy * dir.getX();
+    private int rotateX(int dx, int dy) {
+        return -dx * dirY + dy * dirX;
     }
 
-    private static int rotateY(BaseVector2i dir, int dx, int dy) {
-        return dx * dir.getX() + dy * dir.getY();
+    private int rotateY(int dx, int dy) {
+        return dx * dirX + dy * dirY;
     }
 }
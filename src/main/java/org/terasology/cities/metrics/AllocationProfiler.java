@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Records the number of bytes that the current thread allocates in a section of code, summed up per name
+ * (e.g. per building generator). The numbers come from the thread allocation counters of the JVM,
+ * which only some JVMs (e.g. HotSpot) provide. Profiling is disabled by default.
+ * <pre>
+ * long before = AllocationProfiler.getAllocatedBytes();
+ * ...
+ * AllocationProfiler.record("TownHallGenerator", AllocationProfiler.getAllocatedBytes() - before);
+ * </pre>
+ */
+public final class AllocationProfiler {
+
+    private static final com.sun.management.ThreadMXBean THREADS = findThreadBean();
+
+    private static final ConcurrentMap<String, Allocations> ALLOCATIONS = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled;
+
+    private AllocationProfiler() {
+        // no instances
+    }
+
+    private static com.sun.management.ThreadMXBean findThreadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the JVM can measure the allocations of a thread
+     */
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * @param enable true to record allocations
+     * @throws IllegalStateException if profiling is enabled, but not supported by the JVM
+     */
+    public static void setEnabled(boolean enable) {
+        Preconditions.checkState(!enable || isSupported(), "thread allocation measurement is not supported by this JVM");
+        if (enable) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+        enabled = enable;
+    }
+
+    /**
+     * @return true if allocations are recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the total number of bytes that the current thread has allocated so far or -1 if not supported
+     */
+    public static long getAllocatedBytes() {
+        return (THREADS != null) ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * @param name the name of the profiled code (e.g. the generator class)
+     * @param bytes the number of bytes that one call allocated
+     */
+    public static void record(String name, long bytes) {
+        Allocations allocs = ALLOCATIONS.computeIfAbsent(name, n -> new Allocations());
+        allocs.count.increment();
+        allocs.bytes.add(bytes);
+    }
+
+    /**
+     * @param name the name of the profiled code
+     * @return the number of recorded calls
+     */
+    public static long getCount(String name) {
+        Allocations allocs = ALLOCATIONS.get(name);
+        return (allocs != null) ? allocs.count.sum() : 0;
+    }
+
+    /**
+     * @param name the name of the profiled code
+     * @return the total number of bytes of all recorded calls
+     */
+    public static long getBytes(String name) {
+        Allocations allocs = ALLOCATIONS.get(name);
+        return (allocs != null) ? allocs.bytes.sum() : 0;
+    }
+
+    /**
+     * Removes all recorded allocations
+     */
+    public static void clear() {
+        ALLOCATIONS.clear();
+    }
+
+    /**
+     * @return the recorded calls, the total bytes and the bytes per call for every name as JSON document
+     */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        String sep = "";
+        for (Map.Entry<String, Allocations> entry : new TreeMap<>(ALLOCATIONS).entrySet()) {
+            long count = entry.getValue().count.sum();
+            long bytes = entry.getValue().bytes.sum();
+            sb.append(sep).append("\n  \"").append(entry.getKey().replace("\\", "\\\\").replace("\"", "\\\"")).append("\": ");
+            sb.append("{\"count\": ").append(count);
+            sb.append(", \"bytes\": ").append(bytes);
+            sb.append(", \"bytesPerCall\": ").append((count > 0) ? bytes / count : 0).append('}');
+            sep = ",";
+        }
+        sb.append("\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * @param file the file to write the JSON document to
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeJson(Path file) throws IOException {
+        Files.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class Allocations {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+    }
+}
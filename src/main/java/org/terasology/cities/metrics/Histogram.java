@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values with power-of-two bucket boundaries. Bucket <code>i</code>
+ * counts values in <code>[2^(i-1), 2^i)</code>, bucket zero counts zero. Thread-safe.
+ */
+public class Histogram {
+
+    private static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value the value to record (negative values are recorded as zero)
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(getBucket(v));
+        sum.add(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return the index of the bucket that contains the value
+     */
+    public static int getBucket(long value) {
+        return BUCKETS - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * @param bucket the bucket index
+     * @return the exclusive upper bound of the bucket
+     */
+    public static long getUpperBound(int bucket) {
+        return (bucket >= BUCKETS - 1) ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * @param bucket the bucket index
+     * @return the number of values in that bucket
+     */
+    public long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    /**
+     * @return the total number of values
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return the sum of all values
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return the largest value or zero if empty
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Appends the histogram as JSON object. Empty buckets are omitted.
+     * @param sb the string builder to append to
+     */
+    public void appendJson(StringBuilder sb) {
+        sb.append("{\"count\": ").append(getCount());
+        sb.append(", \"sum\": ").append(getSum());
+        sb.append(", \"max\": ").append(getMax());
+        sb.append(", \"buckets\": [");
+        boolean first = true;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                sb.append(first ? "" : ", ");
+                sb.append("{\"lt\": ").append(getUpperBound(i)).append(", \"count\": ").append(count).append('}');
+                first = false;
+            }
+        }
+        sb.append("]}");
+    }
+}
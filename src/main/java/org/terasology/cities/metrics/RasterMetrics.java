@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.terasology.cities.BlockType;
+
+/**
+ * Collects rasterization statistics of many chunks (or regions): the time per chunk,
+ * the number of written voxels per block type, overwrites, rejected writes outside the target
+ * and the cost per structure type. Thread-safe.
+ * <br><br>
+ * The values are usually recorded by a {@link org.terasology.cities.raster.MeteredRasterTarget}
+ * that collects the numbers of a single chunk and adds them in one go.
+ */
+public class RasterMetrics {
+
+    private final Histogram chunkMicros = new Histogram();
+    private final ConcurrentMap<BlockType, LongAdder> voxels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, StructureCost> structures = new ConcurrentHashMap<>();
+    private final LongAdder overwrites = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param nanos the time that was spent on a single chunk in nanoseconds
+     */
+    public void addChunk(long nanos) {
+        chunkMicros.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * @param type the block type
+     * @param count the number of written voxels of that type
+     */
+    public void addVoxels(BlockType type, long count) {
+        voxels.computeIfAbsent(type, t -> new LongAdder()).add(count);
+    }
+
+    /**
+     * @param count the number of voxels that were written more than once
+     */
+    public void addOverwrites(long count) {
+        overwrites.add(count);
+    }
+
+    /**
+     * @param count the number of writes outside the target region
+     */
+    public void addRejected(long count) {
+        rejected.add(count);
+    }
+
+    /**
+     * @param structure the structure type (e.g. "Road")
+     * @param count the number of times it was rasterized
+     * @param nanos the total time in nanoseconds
+     * @param voxelCount the total number of written voxels
+     */
+    public void addStructure(String structure, long count, long nanos, long voxelCount) {
+        StructureCost cost = structures.computeIfAbsent(structure, s -> new StructureCost());
+        cost.count.add(count);
+        cost.nanos.add(nanos);
+        cost.voxels.add(voxelCount);
+    }
+
+    /**
+     * @return the histogram of the time per chunk in microseconds
+     */
+    public Histogram getChunkTimes() {
+        return chunkMicros;
+    }
+
+    /**
+     * @param type the block type
+     * @return the number of written voxels of that type
+     */
+    public long getVoxels(BlockType type) {
+        LongAdder count = voxels.get(type);
+        return (count != null) ? count.sum() : 0;
+    }
+
+    /**
+     * @return the number of voxels that were written more than once
+     */
+    public long getOverwrites() {
+        return overwrites.sum();
+    }
+
+    /**
+     * @return the number of writes outside the target region
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @param structure the structure type
+     * @return the number of times that structure type was rasterized
+     */
+    public long getStructureCount(String structure) {
+        StructureCost cost = structures.get(structure);
+        return (cost != null) ? cost.count.sum() : 0;
+    }
+
+    /**
+     * @param structure the structure type
+     * @return the number of voxels that were written for that structure type
+     */
+    public long getStructureVoxels(String structure) {
+        StructureCost cost = structures.get(structure);
+        return (cost != null) ? cost.voxels.sum() : 0;
+    }
+
+    /**
+     * @param structure the structure type
+     * @return the total time that was spent on that structure type in nanoseconds
+     */
+    public long getStructureNanos(String structure) {
+        StructureCost cost = structures.get(structure);
+        return (cost != null) ? cost.nanos.sum() : 0;
+    }
+
+    /**
+     * @return the current values as JSON document
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"chunkMicros\": ");
+        chunkMicros.appendJson(sb);
+
+        sb.append(",\n  \"voxels\": {");
+        Map<String, Long> sortedVoxels = new TreeMap<>();
+        voxels.forEach((type, count) -> sortedVoxels.merge(type.toString(), count.sum(), Long::sum));
+        String sep = "";
+        for (Map.Entry<String, Long> entry : sortedVoxels.entrySet()) {
+            sb.append(sep).append("\n    ");
+            appendString(sb, entry.getKey());
+            sb.append(": ").append(entry.getValue());
+            sep = ",";
+        }
+        sb.append("\n  },\n  \"overwrites\": ").append(overwrites.sum());
+        sb.append(",\n  \"rejected\": ").append(rejected.sum());
+
+        sb.append(",\n  \"structures\": {");
+        sep = "";
+        for (Map.Entry<String, StructureCost> entry : new TreeMap<>(structures).entrySet()) {
+            StructureCost cost = entry.getValue();
+            sb.append(sep).append("\n    ");
+            appendString(sb, entry.getKey());
+            sb.append(": {\"count\": ").append(cost.count.sum());
+            sb.append(", \"micros\": ").append(TimeUnit.NANOSECONDS.toMicros(cost.nanos.sum()));
+            sb.append(", \"voxels\": ").append(cost.voxels.sum()).append('}');
+            sep = ",";
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * @param file the file to write the JSON document to
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(Path file) throws IOException {
+        Files.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendString(StringBuilder sb, String text) {
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static final class StructureCost {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder voxels = new LongAdder();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records nested timing spans per thread and writes them in the Chrome trace event format
+ * (open with <code>chrome://tracing</code> or any other flame chart viewer).
+ * Tracing is disabled by default. Then {@link #begin(String, String)} only returns a shared no-op span.
+ * <pre>
+ * Tracer.Span span = Tracer.begin("generator", "TownHallGenerator");
+ * try {
+ *     ...
+ * } finally {
+ *     span.close();
+ * }
+ * </pre>
+ */
+public final class Tracer {
+
+    /**
+     * The maximum number of recorded spans - later spans are dropped
+     */
+    public static final int MAX_EVENTS = 1 << 20;
+
+    private static final Span NO_OP = () -> { };
+
+    private static final long START_TIME = System.nanoTime();
+
+    private static final ThreadLocal<Deque<ActiveSpan>> STACK = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final Queue<Event> EVENTS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger EVENT_COUNT = new AtomicInteger();
+
+    private static volatile boolean enabled;
+
+    private Tracer() {
+        // no instances
+    }
+
+    /**
+     * A span that ends when closed. Closing never throws, so that it cannot mask an exception of the traced code.
+     */
+    @FunctionalInterface
+    public interface Span extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * @param enable true to record spans
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * @return true if spans are recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a new span on the current thread. Spans must be closed in reverse order.
+     * @param category the category (e.g. "generator", "part" or "roof")
+     * @param name the name of the span
+     * @return the span that must be closed by the same thread
+     */
+    public static Span begin(String category, String name) {
+        if (!enabled) {
+            return NO_OP;
+        }
+
+        Deque<ActiveSpan> stack = STACK.get();
+        ActiveSpan span = new ActiveSpan(category, name, stack);
+        stack.push(span);
+        return span;
+    }
+
+    /**
+     * @return the number of recorded spans
+     */
+    public static int getEventCount() {
+        return EVENT_COUNT.get();
+    }
+
+    /**
+     * Removes all recorded spans
+     */
+    public static void clear() {
+        EVENTS.clear();
+        EVENT_COUNT.set(0);
+    }
+
+    /**
+     * @param file the file to write the Chrome trace JSON document to
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeChromeTrace(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeChromeTrace(writer);
+        }
+    }
+
+    /**
+     * @param writer the writer to write the Chrome trace JSON document to
+     * @throws IOException if the document cannot be written
+     */
+    public static void writeChromeTrace(Appendable writer) throws IOException {
+        writer.append("{\"traceEvents\": [");
+        String sep = "\n";
+        for (Event event : EVENTS) {
+            writer.append(sep);
+            writer.append(String.format(Locale.ROOT, "{\"name\": \"%s\", \"cat\": \"%s\", \"ph\": \"X\", \"ts\": %.3f, \"dur\": %.3f, "
+                    + "\"pid\": 1, \"tid\": %d}",
+                    escape(event.name), escape(event.category), event.start / 1000.0, event.duration / 1000.0, event.thread));
+            sep = ",\n";
+        }
+        writer.append("\n], \"displayTimeUnit\": \"ms\"}\n");
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static final class ActiveSpan implements Span {
+        private final String category;
+        private final String name;
+        private final Deque<ActiveSpan> stack;
+        private final long start = System.nanoTime();
+
+        ActiveSpan(String category, String name, Deque<ActiveSpan> stack) {
+            this.category = category;
+            this.name = name;
+            this.stack = stack;
+        }
+
+        /**
+         * Spans that are closed out of order are still recorded. Closing a span twice has no effect.
+         */
+        @Override
+        public void close() {
+            long end = System.nanoTime();
+
+            // the innermost span is at the head, so closing in order is O(1)
+            if (!stack.remove(this)) {
+                return;
+            }
+
+            if (reserveEvent()) {
+                long thread = Thread.currentThread().getId();
+                EVENTS.add(new Event(category, name, start - START_TIME, end - start, thread));
+            }
+        }
+
+        /**
+         * Increments the event count unless it has reached the limit, so that the count can never overflow.
+         */
+        private static boolean reserveEvent() {
+            int count;
+            do {
+                count = EVENT_COUNT.get();
+                if (count >= MAX_EVENTS) {
+                    return false;
+                }
+            } while (!EVENT_COUNT.compareAndSet(count, count + 1));
+            return true;
+        }
+    }
+
+    private static final class Event {
+        private final String category;
+        private final String name;
+        private final long start;
+        private final long duration;
+        private final long thread;
+
+        Event(String category, String name, long start, long duration, long thread) {
+            this.category = category;
+            this.name = name;
+            this.start = start;
+            this.duration = duration;
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.parcels;
+
+import java.util.Objects;
+
+import org.terasology.commonworld.Orientation;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An immutable, rectangular {@link Parcel}.
+ */
+public class DefaultParcel implements Parcel {
+
+    private final Rect2i shape;
+    private final Orientation orientation;
+    private final Zone zone;
+
+    /**
+     * @param shape the layout shape
+     * @param orientation the orientation (the side that faces the road)
+     * @param zone the zone
+     */
+    public DefaultParcel(Rect2i shape, Orientation orientation, Zone zone) {
+        Preconditions.checkArgument(shape != null, "shape must not be null");
+        Preconditions.checkArgument(orientation != null, "orientation must not be null");
+        Preconditions.checkArgument(zone != null, "zone must not be null");
+
+        this.shape = shape;
+        this.orientation = orientation;
+        this.zone = zone;
+    }
+
+    @Override
+    public Rect2i getShape() {
+        return shape;
+    }
+
+    @Override
+    public Orientation getOrientation() {
+        return orientation;
+    }
+
+    @Override
+    public Zone getZone() {
+        return zone;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(shape, orientation, zone);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        DefaultParcel other = (DefaultParcel) obj;
+        return shape.equals(other.shape) && orientation == other.orientation && zone == other.zone;
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultParcel [" + shape + ", " + orientation + ", " + zone + "]";
+    }
+}
@@ -34,5 +34,8 @@ public interface Parcel {
      */
     Orientation getOrientation();
 
-
+    /**
+     * @return the zone of the parcel
+     */
+    Zone getZone();
 }
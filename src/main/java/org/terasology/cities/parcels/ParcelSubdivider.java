@@ -0,0 +1,443 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.parcels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.terasology.cities.roads.Road;
+import org.terasology.cities.roads.RoadNetwork;
+import org.terasology.cities.roads.RoadSegment;
+import org.terasology.commonworld.Orientation;
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Places rectangular lots along both sides of all roads of a settlement. Every lot faces the nearest road
+ * and gets a {@link Zone} that depends on its distance to the settlement center.
+ * <br><br>
+ * The lots of every road segment are computed from the segment alone (the random numbers are derived
+ * from the seed and the segment end points). Overlapping lots are resolved by a per-lot priority and a lot
+ * is only dropped in favor of a valid lot with higher priority. Thus, the result does not depend on the order
+ * in which areas are requested: the lots of two adjacent areas fit together seamlessly.
+ */
+public class ParcelSubdivider {
+
+    /**
+     * The maximum edge length of a lot
+     */
+    public static final int MAX_LOT_SIZE = 32;
+
+    private static final int SETBACK = 1;       // distance between road and lot
+    private static final int GAP = 2;           // distance between neighboring lots along a road
+
+    private static final float INNER_RADIUS = 0.2f;
+    private static final float MIDDLE_RADIUS = 0.5f;
+
+    private static final Comparator<Parcel> ORDER = Comparator
+            .comparingInt((Parcel p) -> p.getShape().minY())
+            .thenComparingInt(p -> p.getShape().minX());
+
+    private final RoadNetwork network;
+    private final ImmutableVector2i center;
+    private final int radius;
+    private final long seed;
+
+    /**
+     * @param network the road network of the settlement
+     * @param center the settlement center
+     * @param radius the settlement radius (lots further away are dropped)
+     * @param seed the random seed
+     */
+    public ParcelSubdivider(RoadNetwork network, BaseVector2i center, int radius, long seed) {
+        Preconditions.checkArgument(radius > 0, "radius must be positive");
+
+        this.network = network;
+        this.center = ImmutableVector2i.createOrUse(center);
+        this.radius = radius;
+        this.seed = seed;
+    }
+
+    /**
+     * @param area the area of interest
+     * @return all lots whose minimum corner is inside the area, sorted by z, then x
+     */
+    public List<Parcel> getParcels(Rect2i area) {
+        Rect2i candidateArea = area.expand(MAX_LOT_SIZE, MAX_LOT_SIZE);
+        int roadMargin = 2 * MAX_LOT_SIZE + SETBACK + 1;
+        List<Road> roads = network.getRoads(candidateArea.expand(roadMargin, roadMargin));
+
+        Segments segs = new Segments();
+        for (Road road : roads) {
+            for (RoadSegment seg : road.getSegments()) {
+                segs.add(seg);
+            }
+        }
+
+        // all candidates that could overlap a lot of the area
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < segs.count; i++) {
+            addCandidates(segs, i, 1, candidateArea, candidates);
+            addCandidates(segs, i, -1, candidateArea, candidates);
+        }
+
+        Map<Long, List<Candidate>> grid = new HashMap<>();
+        for (Candidate cand : candidates) {
+            cand.valid = isInside(cand.rect) && !segs.overlaps(cand.rect);
+            if (cand.valid) {
+                forEachCell(cand.rect, key -> grid.computeIfAbsent(key, k -> new ArrayList<>()).add(cand));
+            }
+        }
+
+        List<Parcel> result = new ArrayList<>();
+        for (Candidate cand : candidates) {
+            if (cand.valid && area.contains(cand.rect.minX(), cand.rect.minY()) && !isBlocked(cand, grid)) {
+                Orientation orient = segs.getOrientation(cand.rect);
+                result.add(new DefaultParcel(cand.rect, orient, cand.zone));
+            }
+        }
+
+        result.sort(ORDER);
+        return result;
+    }
+
+    private void addCandidates(Segments segs, int idx, int side, Rect2i area, List<Candidate> candidates) {
+        int i = idx * Segments.STRIDE;
+        float x0 = segs.data[i + 0];
+        float z0 = segs.data[i + 1];
+        float dx = segs.data[i + 2] - x0;
+        float dz = segs.data[i + 3] - z0;
+        float halfWidth = segs.data[i + 4];
+        float len = (float) Math.sqrt(dx * dx + dz * dz);
+        if (len < 1) {
+            return;
+        }
+
+        float reach = halfWidth + SETBACK + 2 * MAX_LOT_SIZE;
+        if (Math.max(x0, x0 + dx) + reach < area.minX() || Math.min(x0, x0 + dx) - reach > area.maxX()
+         || Math.max(z0, z0 + dz) + reach < area.minY() || Math.min(z0, z0 + dz) - reach > area.maxY()) {
+            return;
+        }
+
+        float ux = dx / len;
+        float uz = dz / len;
+        float nx = -uz * side;
+        float nz = ux * side;
+        boolean alongX = Math.abs(ux) >= Math.abs(uz);
+
+        long sideHash = mix(seed ^ mix(segs.keys[idx] + side));
+        float pos = GAP * 0.5f;
+        for (int lot = 0; ; lot++) {
+            long hash = mix(sideHash + lot);
+            Zone zone = getZone(x0 + ux * pos + nx * halfWidth, z0 + uz * pos + nz * halfWidth, hash);
+            int width = getLotWidth(zone, hash >>> 8);
+            int depth = getLotWidth(zone, hash >>> 24);
+            int sizeX = alongX ? width : depth;
+            int sizeZ = alongX ? depth : width;
+
+            float extent = Math.abs(ux) * sizeX + Math.abs(uz) * sizeZ;
+            if (pos + extent > len - GAP * 0.5f) {
+                break;
+            }
+
+            float mid = pos + extent * 0.5f;
+            float offset = halfWidth + SETBACK + (Math.abs(nx) * sizeX + Math.abs(nz) * sizeZ) * 0.5f;
+            int minX = Math.round(x0 + ux * mid + nx * offset - sizeX * 0.5f);
+            int minZ = Math.round(z0 + uz * mid + nz * offset - sizeZ * 0.5f);
+            Rect2i rect = Rect2i.createFromMinAndSize(minX, minZ, sizeX, sizeZ);
+            if (rect.overlaps(area)) {
+                candidates.add(new Candidate(rect, zone, mix(hash)));
+            }
+
+            pos += extent + GAP;
+        }
+    }
+
+    private Zone getZone(float x, float z, long hash) {
+        float dx = x - center.getX();
+        float dz = z - center.getY();
+        float dist = (float) Math.sqrt(dx * dx + dz * dz) / radius;
+        int roll = (int) Long.remainderUnsigned(hash, 100);
+
+        if (dist < INNER_RADIUS) {
+            if (roll < 15) {
+                return Zone.GOVERNMENTAL;
+            }
+            if (roll < 30) {
+                return Zone.CLERICAL;
+            }
+            return (roll < 80) ? Zone.COMMERCIAL : Zone.RESIDENTIAL;
+        }
+
+        if (dist < MIDDLE_RADIUS) {
+            if (roll < 5) {
+                return Zone.CLERICAL;
+            }
+            return (roll < 35) ? Zone.COMMERCIAL : Zone.RESIDENTIAL;
+        }
+
+        return Zone.RESIDENTIAL;
+    }
+
+    private static int getLotWidth(Zone zone, long hash) {
+        int roll = (int) (hash & 0xFF);
+        switch (zone) {
+            case GOVERNMENTAL:
+            case CLERICAL:
+                return 24 + roll % (MAX_LOT_SIZE - 24 + 1);
+            case COMMERCIAL:
+                return 20 + roll % 7;
+            default:
+                return 10 + roll % 7;
+        }
+    }
+
+    private boolean isInside(Rect2i rect) {
+        long dx = 2L * center.getX() - (rect.minX() + rect.maxX());
+        long dz = 2L * center.getY() - (rect.minY() + rect.maxY());
+        return dx * dx + dz * dz <= 4L * radius * radius;
+    }
+
+    private static boolean isBlocked(Candidate cand, Map<Long, List<Candidate>> grid) {
+        Rect2i rc = cand.rect;
+        for (int cz = Math.floorDiv(rc.minY(), MAX_LOT_SIZE); cz <= Math.floorDiv(rc.maxY(), MAX_LOT_SIZE); cz++) {
+            for (int cx = Math.floorDiv(rc.minX(), MAX_LOT_SIZE); cx <= Math.floorDiv(rc.maxX(), MAX_LOT_SIZE); cx++) {
+                List<Candidate> others = grid.get(cellKey(cx, cz));
+                if (others == null) {
+                    continue;
+                }
+                for (Candidate other : others) {
+                    if (other != cand && other.isBefore(cand) && other.rect.overlaps(rc)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void forEachCell(Rect2i rc, CellConsumer consumer) {
+        for (int cz = Math.floorDiv(rc.minY(), MAX_LOT_SIZE); cz <= Math.floorDiv(rc.maxY(), MAX_LOT_SIZE); cz++) {
+            for (int cx = Math.floorDiv(rc.minX(), MAX_LOT_SIZE); cx <= Math.floorDiv(rc.maxX(), MAX_LOT_SIZE); cx++) {
+                consumer.accept(cellKey(cx, cz));
+            }
+        }
+    }
+
+    private static long cellKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The finalizer of SplitMix64
+     */
+    private static long mix(long value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @FunctionalInterface
+    private interface CellConsumer {
+        void accept(long key);
+    }
+
+    private static final class Candidate {
+        private final Rect2i rect;
+        private final Zone zone;
+        private final long priority;
+        private boolean valid;
+
+        Candidate(Rect2i rect, Zone zone, long priority) {
+            this.rect = rect;
+            this.zone = zone;
+            this.priority = priority;
+        }
+
+        boolean isBefore(Candidate other) {
+            if (priority != other.priority) {
+                return priority < other.priority;
+            }
+            if (rect.minY() != other.rect.minY()) {
+                return rect.minY() < other.rect.minY();
+            }
+            return rect.minX() < other.rect.minX();
+        }
+    }
+
+    /**
+     * The road segments around an area in primitive arrays.
+     */
+    private static final class Segments {
+        static final int STRIDE = 5;    // x0, z0, x1, z1, halfWidth
+
+        private float[] data = new float[16 * STRIDE];
+        private long[] keys = new long[16];
+        private int count;
+
+        void add(RoadSegment seg) {
+            if (count == keys.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+
+            ImmutableVector2i p0 = seg.getStart();
+            ImmutableVector2i p1 = seg.getEnd();
+            int i = count * STRIDE;
+            data[i + 0] = p0.getX();
+            data[i + 1] = p0.getY();
+            data[i + 2] = p1.getX();
+            data[i + 3] = p1.getY();
+            data[i + 4] = seg.getWidth() * 0.5f;
+
+            long key = mix(p0.getX());
+            key = mix(key ^ p0.getY());
+            key = mix(key ^ p1.getX());
+            key = mix(key ^ p1.getY());
+            keys[count] = mix(key ^ Float.floatToIntBits(seg.getWidth()));
+            count++;
+        }
+
+        /**
+         * @param rc the rectangle
+         * @return true if the rectangle is closer than half the road width to any segment
+         */
+        boolean overlaps(Rect2i rc) {
+            for (int s = 0; s < count; s++) {
+                int i = s * STRIDE;
+                float halfWidth = data[i + 4];
+                if (Math.max(data[i + 0], data[i + 2]) + halfWidth < rc.minX()
+                 || Math.min(data[i + 0], data[i + 2]) - halfWidth > rc.maxX()
+                 || Math.max(data[i + 1], data[i + 3]) + halfWidth < rc.minY()
+                 || Math.min(data[i + 1], data[i + 3]) - halfWidth > rc.maxY()) {
+                    continue;
+                }
+                if (distanceSq(s, rc) < halfWidth * halfWidth) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param rc the rectangle
+         * @return the direction from the rectangle center to the nearest segment
+         */
+        Orientation getOrientation(Rect2i rc) {
+            float cx = (rc.minX() + rc.maxX()) * 0.5f;
+            float cz = (rc.minY() + rc.maxY()) * 0.5f;
+            float best = Float.MAX_VALUE;
+            float dirX = 0;
+            float dirZ = 1;
+            for (int s = 0; s < count; s++) {
+                int i = s * STRIDE;
+                float x0 = data[i + 0];
+                float z0 = data[i + 1];
+                float dx = data[i + 2] - x0;
+                float dz = data[i + 3] - z0;
+                float lenSq = dx * dx + dz * dz;
+                float t = (lenSq > 0) ? ((cx - x0) * dx + (cz - z0) * dz) / lenSq : 0;
+                t = Math.max(0, Math.min(1, t));
+                float px = x0 + t * dx - cx;
+                float pz = z0 + t * dz - cz;
+                float distSq = px * px + pz * pz;
+                if (distSq < best) {
+                    best = distSq;
+                    dirX = px;
+                    dirZ = pz;
+                }
+            }
+
+            if (Math.abs(dirX) >= Math.abs(dirZ)) {
+                return (dirX > 0) ? Orientation.EAST : Orientation.WEST;
+            }
+            return (dirZ > 0) ? Orientation.SOUTH : Orientation.NORTH;
+        }
+
+        private float distanceSq(int s, Rect2i rc) {
+            int i = s * STRIDE;
+            float x0 = data[i + 0];
+            float z0 = data[i + 1];
+            float x1 = data[i + 2];
+            float z1 = data[i + 3];
+
+            if (intersects(x0, z0, x1, z1, rc)) {
+                return 0;
+            }
+
+            float best = pointRectDistSq(x0, z0, rc);
+            best = Math.min(best, pointRectDistSq(x1, z1, rc));
+            best = Math.min(best, pointSegDistSq(rc.minX(), rc.minY(), x0, z0, x1, z1));
+            best = Math.min(best, pointSegDistSq(rc.maxX(), rc.minY(), x0, z0, x1, z1));
+            best = Math.min(best, pointSegDistSq(rc.minX(), rc.maxY(), x0, z0, x1, z1));
+            best = Math.min(best, pointSegDistSq(rc.maxX(), rc.maxY(), x0, z0, x1, z1));
+            return best;
+        }
+
+        /**
+         * Liang-Barsky clipping test
+         */
+        private static boolean intersects(float x0, float z0, float x1, float z1, Rect2i rc) {
+            float dx = x1 - x0;
+            float dz = z1 - z0;
+            float[] p = {-dx, dx, -dz, dz};
+            float[] q = {x0 - rc.minX(), rc.maxX() - x0, z0 - rc.minY(), rc.maxY() - z0};
+            float t0 = 0;
+            float t1 = 1;
+            for (int k = 0; k < 4; k++) {
+                if (p[k] == 0) {
+                    if (q[k] < 0) {
+                        return false;
+                    }
+                } else {
+                    float t = q[k] / p[k];
+                    if (p[k] < 0) {
+                        t0 = Math.max(t0, t);
+                    } else {
+                        t1 = Math.min(t1, t);
+                    }
+                }
+            }
+            return t0 <= t1;
+        }
+
+        private static float pointRectDistSq(float x, float z, Rect2i rc) {
+            float dx = Math.max(0, Math.max(rc.minX() - x, x - rc.maxX()));
+            float dz = Math.max(0, Math.max(rc.minY() - z, z - rc.maxY()));
+            return dx * dx + dz * dz;
+        }
+
+        private static float pointSegDistSq(float x, float z, float x0, float z0, float x1, float z1) {
+            float dx = x1 - x0;
+            float dz = z1 - z0;
+            float lenSq = dx * dx + dz * dz;
+            float t = (lenSq > 0) ? ((x - x0) * dx + (z - z0) * dz) / lenSq : 0;
+            t = Math.max(0, Math.min(1, t));
+            float px = x0 + t * dx - x;
+            float pz = z0 + t * dz - z;
+            return px * px + pz * pz;
+        }
+    }
+}
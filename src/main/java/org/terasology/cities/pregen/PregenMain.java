@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.pregen;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.terasology.cities.bldg.gen.BuildingGeneratorRegistry;
+import org.terasology.cities.metrics.AllocationProfiler;
+import org.terasology.cities.metrics.RasterMetrics;
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.raster.Rasterizer;
+import org.terasology.cities.raster.SectorRasterizer;
+import org.terasology.cities.sectors.SectorPlanner;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.world.chunks.ChunkConstants;
+
+/**
+ * Headless entry point that pre-generates settlements for a world area. The optional files receive the
+ * rasterization metrics, a Chrome trace and the bytes that every building generator allocates per building.
+ * <pre>
+ * Usage: PregenMain &lt;seed&gt; &lt;minX&gt; &lt;minZ&gt; &lt;maxX&gt; &lt;maxZ&gt; &lt;outputDir&gt; [threads] [chunksPerRegion] [minY] [metricsFile] [traceFile] [allocationFile]
+ * </pre>
+ */
+public final class PregenMain {
+
+    private static final int TERRAIN_HEIGHT = 8;        // above minY
+    private static final int MAX_CACHED_SECTORS = 1024;
+
+    private PregenMain() {
+        // no instances
+    }
+
+    /**
+     * @param args the command line arguments
+     * @throws IOException if the output cannot be written
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 6) {
+            System.err.println("Usage: PregenMain <seed> <minX> <minZ> <maxX> <maxZ> <outputDir> [threads] [chunksPerRegion] [minY] [metricsFile] [traceFile] [allocationFile]");
+            System.exit(1);
+        }
+
+        long seed = Long.parseLong(args[0]);
+        Rect2i area = Rect2i.createFromMinAndMax(
+                Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+        Path outputDir = Paths.get(args[5]);
+        int threads = (args.length > 6) ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        int chunksPerRegion = (args.length > 7) ? Integer.parseInt(args[7]) : 1;
+        int minY = (args.length > 8) ? Integer.parseInt(args[8]) : 0;
+        Path metricsFile = (args.length > 9) ? Paths.get(args[9]) : null;
+        Path traceFile = (args.length > 10) ? Paths.get(args[10]) : null;
+        Path allocationFile = (args.length > 11) ? Paths.get(args[11]) : null;
+
+        if (allocationFile != null && !AllocationProfiler.isSupported()) {
+            System.err.println("Allocation profiling is not supported by this JVM");
+            System.exit(1);
+        }
+
+        RasterMetrics metrics = (metricsFile != null) ? new RasterMetrics() : null;
+        Tracer.setEnabled(traceFile != null);
+        AllocationProfiler.setEnabled(allocationFile != null);
+        SectorPlanner planner = new SectorPlanner(seed, MAX_CACHED_SECTORS);
+        planSectors(planner, area, threads);
+
+        Pregenerator pregen = new Pregenerator(createPipeline(planner, seed, minY), outputDir, threads, chunksPerRegion, metrics);
+        PregenProgress progress = pregen.run(area, minY, ChunkConstants.SIZE_Y);
+
+        if (metrics != null) {
+            metrics.writeJson(metricsFile);
+        }
+        if (traceFile != null) {
+            Tracer.writeChromeTrace(traceFile);
+        }
+        if (allocationFile != null) {
+            AllocationProfiler.writeJson(allocationFile);
+        }
+
+        if (progress.getFailed() > 0) {
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Plans all sectors of the area in parallel, if they fit into the cache. Otherwise, they are planned
+     * on demand by the workers that rasterize them.
+     */
+    private static void planSectors(SectorPlanner planner, Rect2i area, int threads) {
+        ImmutableVector2i min = SectorPlanner.getSectorCoord(area.minX(), area.minY());
+        ImmutableVector2i max = SectorPlanner.getSectorCoord(area.maxX(), area.maxY());
+        Rect2i sectors = Rect2i.createFromMinAndMax(min.getX(), min.getY(), max.getX(), max.getY());
+        if (sectors.area() > MAX_CACHED_SECTORS) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            planner.planAll(sectors, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Rasterizer> createPipeline(SectorPlanner planner, long seed, int minY) {
+        // there is no terrain generator in this module, so the settlements are placed on flat ground
+        HeightMap terrain = HeightMaps.constant(minY + TERRAIN_HEIGHT);
+
+        List<Rasterizer> pipeline = new ArrayList<>();
+        pipeline.add(new SectorRasterizer(planner, BuildingGeneratorRegistry.createDefault(seed), terrain));
+        return pipeline;
+    }
+}
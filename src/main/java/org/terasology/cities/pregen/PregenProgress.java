@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.pregen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the progress and throughput of a pre-generation run. Thread-safe.
+ */
+public class PregenProgress {
+
+    private static final Logger logger = LoggerFactory.getLogger(PregenProgress.class);
+
+    private final int total;
+    private final long reportInterval;
+    private final long startTime;
+
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong lastReport;
+
+    /**
+     * @param total the total number of regions
+     * @param reportInterval the minimum time between two log reports
+     * @param unit the time unit of the report interval
+     */
+    public PregenProgress(int total, long reportInterval, TimeUnit unit) {
+        this.total = total;
+        this.reportInterval = unit.toNanos(reportInterval);
+        this.startTime = System.nanoTime();
+        this.lastReport = new AtomicLong(startTime);
+    }
+
+    /**
+     * @param dataSize the number of bytes that were written
+     */
+    public void regionDone(long dataSize) {
+        done.incrementAndGet();
+        bytes.addAndGet(dataSize);
+        reportIfDue();
+    }
+
+    /**
+     * Marks a region as failed
+     */
+    public void regionFailed() {
+        failed.incrementAndGet();
+        reportIfDue();
+    }
+
+    /**
+     * @return the number of completed regions
+     */
+    public int getDone() {
+        return done.get();
+    }
+
+    /**
+     * @return the number of failed regions
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the total number of regions
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of completed regions per second
+     */
+    public double getRegionsPerSecond() {
+        return done.get() / getElapsedSeconds();
+    }
+
+    /**
+     * Logs the current state
+     */
+    public void report() {
+        double secs = getElapsedSeconds();
+        int finished = done.get() + failed.get();
+        logger.info("{}/{} regions ({} failed) after {}s - {} regions/s, {} MB/s",
+                finished, total, failed.get(),
+                String.format("%.1f", secs),
+                String.format("%.1f", done.get() / secs),
+                String.format("%.1f", bytes.get() / secs / (1024 * 1024)));
+    }
+
+    private void reportIfDue() {
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (now - last >= reportInterval && lastReport.compareAndSet(last, now)) {
+            report();
+        }
+    }
+
+    private double getElapsedSeconds() {
+        return Math.max(1, System.nanoTime() - startTime) / 1e9;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.pregen;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.cities.metrics.RasterMetrics;
+import org.terasology.cities.raster.MeteredRasterTarget;
+import org.terasology.cities.raster.Rasterizer;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector3i;
+import org.terasology.world.chunks.ChunkConstants;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Runs a rasterization pipeline for a world area and writes the results into {@link RegionFile}s.
+ * The area is split into regions that are aligned with the chunk grid and processed by a pool of workers.
+ */
+public class Pregenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(Pregenerator.class);
+
+    private final List<Rasterizer> pipeline;
+    private final Path outputDir;
+    private final int threads;
+    private final int chunksPerRegion;
+    private final RasterMetrics metrics;
+
+    /**
+     * @param pipeline the rasterizers that are applied to every region (in this order)
+     * @param outputDir the directory for the region files
+     * @param threads the number of worker threads
+     * @param chunksPerRegion the edge length of a region in chunks
+     */
+    public Pregenerator(List<? extends Rasterizer> pipeline, Path outputDir, int threads, int chunksPerRegion) {
+        this(pipeline, outputDir, threads, chunksPerRegion, null);
+    }
+
+    /**
+     * @param pipeline the rasterizers that are applied to every region (in this order)
+     * @param outputDir the directory for the region files
+     * @param threads the number of worker threads
+     * @param chunksPerRegion the edge length of a region in chunks
+     * @param metrics the metrics to record for every region or <code>null</code> to disable them
+     */
+    public Pregenerator(List<? extends Rasterizer> pipeline, Path outputDir, int threads, int chunksPerRegion,
+                        RasterMetrics metrics) {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        Preconditions.checkArgument(chunksPerRegion > 0, "chunksPerRegion must be positive");
+
+        this.pipeline = ImmutableList.copyOf(pipeline);
+        this.outputDir = outputDir;
+        this.threads = threads;
+        this.chunksPerRegion = chunksPerRegion;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Blocks until all regions are written.
+     * @param worldArea the world area to generate (will be extended to region borders)
+     * @param minY the lowest block layer
+     * @param height the number of block layers
+     * @return the final progress information
+     * @throws IOException if the output directory cannot be created
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public PregenProgress run(Rect2i worldArea, int minY, int height) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+
+        int sizeX = ChunkConstants.SIZE_X * chunksPerRegion;
+        int sizeZ = ChunkConstants.SIZE_Z * chunksPerRegion;
+
+        int minRx = Math.floorDiv(worldArea.minX(), sizeX);
+        int maxRx = Math.floorDiv(worldArea.maxX(), sizeX);
+        int minRz = Math.floorDiv(worldArea.minY(), sizeZ);
+        int maxRz = Math.floorDiv(worldArea.maxY(), sizeZ);
+
+        List<Runnable> tasks = new ArrayList<>();
+        int total = (maxRx - minRx + 1) * (maxRz - minRz + 1);
+        PregenProgress progress = new PregenProgress(total, 5, TimeUnit.SECONDS);
+
+        for (int rz = minRz; rz <= maxRz; rz++) {
+            for (int rx = minRx; rx <= maxRx; rx++) {
+                Vector3i min = new Vector3i(rx * sizeX, minY, rz * sizeZ);
+                Region3i region = Region3i.createFromMinAndSize(min, new Vector3i(sizeX, height, sizeZ));
+                Path file = outputDir.resolve(String.format("region.%d.%d.ctr", rx, rz));
+                tasks.add(() -> generate(file, region, progress));
+            }
+        }
+
+        logger.info("Generating {} regions of {}x{}x{} blocks using {} threads", total, sizeX, height, sizeZ, threads);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            tasks.forEach(pool::execute);
+        } finally {
+            pool.shutdown();
+        }
+
+        while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+            progress.report();
+        }
+
+        progress.report();
+        return progress;
+    }
+
+    private void generate(Path file, Region3i region, PregenProgress progress) {
+        try {
+            long dataSize;
+            try (RegionFile regionFile = new RegionFile(file, region)) {
+                if (metrics != null) {
+                    MeteredRasterTarget metered = new MeteredRasterTarget(regionFile.getTarget(), metrics);
+                    metered.raster(pipeline);
+                    metered.finish();
+                } else {
+                    for (Rasterizer rasterizer : pipeline) {
+                        rasterizer.raster(regionFile.getTarget());
+                    }
+                }
+                dataSize = regionFile.getDataSize();
+            }
+            progress.regionDone(dataSize);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not generate {}", file, e);
+            progress.regionFailed();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.pregen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.terasology.cities.BlockType;
+import org.terasology.cities.raster.BufferRasterTarget;
+import org.terasology.math.Region3i;
+
+/**
+ * A file-backed voxel region. The block data is memory-mapped, so rasterization writes
+ * directly into the page cache. The file layout is:
+ * <pre>
+ * int      magic ("CTRG")
+ * int      version
+ * int[3]   region min (x, y, z)
+ * int[3]   region size (x, y, z)
+ * short[]  block ids (x first, then z, then y)
+ * int      palette size
+ * (short length, utf-8 bytes)[]   block type names, indexed by block id
+ * </pre>
+ * All values are little endian. The palette is written when the file is closed.
+ */
+public class RegionFile implements Closeable {
+
+    /**
+     * The file magic number
+     */
+    public static final int MAGIC = 0x43545247;
+
+    /**
+     * The current file format version
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final BufferRasterTarget target;
+    private final long dataSize;
+
+    /**
+     * Creates a new region file. Existing files will be overwritten.
+     * @param file the file to create
+     * @param region the region to cover
+     * @throws IOException if the file cannot be created
+     */
+    public RegionFile(Path file, Region3i region) throws IOException {
+        this.dataSize = BufferRasterTarget.getRequiredCapacity(region);
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(region.minX()).putInt(region.minY()).putInt(region.minZ());
+            header.putInt(region.sizeX()).putInt(region.sizeY()).putInt(region.sizeZ());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            this.data = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, dataSize);
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            this.target = new BufferRasterTarget(region, data);
+        } catch (IOException | RuntimeException e) {
+            // the caller never gets an instance to close
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the raster target that writes into this file
+     */
+    public BufferRasterTarget getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the size of the block data in bytes
+     */
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * Flushes the block data, writes the palette and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            List<BlockType> palette = target.getPalette();
+            int size = Integer.BYTES;
+            byte[][] names = new byte[palette.size()][];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = palette.get(i).toString().getBytes(StandardCharsets.UTF_8);
+                size += Short.BYTES + names[i].length;
+            }
+
+            ByteBuffer trailer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt(names.length);
+            for (byte[] name : names) {
+                trailer.putShort((short) name.length);
+                trailer.put(name);
+            }
+            trailer.flip();
+
+            long pos = HEADER_SIZE + dataSize;
+            while (trailer.hasRemaining()) {
+                pos += channel.write(trailer, pos);
+            }
+
+            // the mapped pages are not covered by channel.force()
+            data.force();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
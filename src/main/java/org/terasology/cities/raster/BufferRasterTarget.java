@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.cities.BlockType;
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.math.Region3i;
+import org.terasology.math.Side;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Converts model elements into 16-bit block ids that are stored in a {@link ByteBuffer}.
+ * The buffer can be direct or memory-mapped, so that the block data does not live on the Java heap.
+ * The data layout is x first, then z, then y - the same as in a chunk.
+ * <br><br>
+ * Block ids refer to the palette (see {@link #getPalette()}). Id zero is always {@link DefaultBlockType#AIR}.
+ */
+public class BufferRasterTarget implements RasterTarget {
+
+    private static final Logger logger = LoggerFactory.getLogger(BufferRasterTarget.class);
+
+    private static final int MAX_PALETTE_SIZE = 1 << Short.SIZE;
+
+    private final Region3i region;
+    private final Rect2i area;
+    private final ShortBuffer data;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+
+    private final List<BlockType> palette = new ArrayList<>();
+    private final Map<BlockType, Integer> ids = new HashMap<>();
+
+    // consecutive writes usually share the block type
+    private BlockType lastType = DefaultBlockType.AIR;
+    private short lastId;
+
+    /**
+     * @param region the region that is covered by the buffer
+     * @param buffer the buffer to write to (at least {@link #getRequiredCapacity(Region3i)} bytes remaining)
+     */
+    public BufferRasterTarget(Region3i region, ByteBuffer buffer) {
+        int capacity = getRequiredCapacity(region);
+        Preconditions.checkArgument(buffer.remaining() >= capacity,
+                "Buffer has %s bytes remaining, but %s are required", buffer.remaining(), capacity);
+
+        this.region = region;
+        this.area = Rect2i.createFromMinAndSize(region.minX(), region.minZ(), region.sizeX(), region.sizeZ());
+        this.data = buffer.asShortBuffer();
+
+        this.minX = region.minX();
+        this.minY = region.minY();
+        this.minZ = region.minZ();
+        this.sizeX = region.sizeX();
+        this.sizeY = region.sizeY();
+        this.sizeZ = region.sizeZ();
+
+        addToPalette(DefaultBlockType.AIR); // map AIR to index zero
+    }
+
+    /**
+     * @param region the region to cover
+     * @return a new instance that is backed by a direct (off-heap) buffer
+     */
+    public static BufferRasterTarget allocateDirect(Region3i region) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(getRequiredCapacity(region));
+        buffer.order(ByteOrder.nativeOrder());
+        return new BufferRasterTarget(region, buffer);
+    }
+
+    /**
+     * @param region the region to cover
+     * @return the required buffer size in bytes
+     */
+    public static int getRequiredCapacity(Region3i region) {
+        long size = (long) region.sizeX() * region.sizeY() * region.sizeZ() * Short.BYTES;
+        Preconditions.checkArgument(size <= Integer.MAX_VALUE, "Region is too large for a single buffer");
+        return (int) size;
+    }
+
+    @Override
+    public Rect2i getAffectedArea() {
+        return area;
+    }
+
+    @Override
+    public Region3i getAffectedRegion() {
+        return region;
+    }
+
+    @Override
+    public TraversalOrder getTraversalOrder() {
+        return TraversalOrder.LAYERS;   // the buffer is stored layer by layer
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return minY + sizeY - 1;
+    }
+
+    @Override
+    public int getMinHeight() {
+        return minY;
+    }
+
+    /**
+     * @param x x in world coords
+     * @param y y in world coords
+     * @param z z in world coords
+     * @param type the block type
+     */
+    @Override
+    public void setBlock(int x, int y, int z, BlockType type) {
+        int index = indexOf(x, y, z);
+        if (index < 0) {
+            logger.warn("Position {}/{}/{} not in region {}", x, y, z, region);
+            return;
+        }
+
+        if (type != lastType) {
+            Integer id = ids.get(type);
+            if (id == null) {
+                id = addToPalette(type);
+            }
+            lastType = type;
+            lastId = (short) id.intValue();
+        }
+
+        data.put(index, lastId);
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockType type, Set<Side> side) {
+        setBlock(x, y, z, type); // ignore side flags
+    }
+
+    /**
+     * @param x x in world coords
+     * @param y y in world coords
+     * @param z z in world coords
+     * @return the block id at the given position (see {@link #getPalette()})
+     */
+    public int getBlockId(int x, int y, int z) {
+        int index = indexOf(x, y, z);
+        Preconditions.checkArgument(index >= 0, "Position %s/%s/%s not in region", x, y, z);
+        return Short.toUnsignedInt(data.get(index));
+    }
+
+    /**
+     * @param x x in world coords
+     * @param y y in world coords
+     * @param z z in world coords
+     * @return the block type at the given position
+     */
+    public BlockType getBlockType(int x, int y, int z) {
+        return palette.get(getBlockId(x, y, z));
+    }
+
+    /**
+     * @return an unmodifiable view on the mapping from block id to block type
+     */
+    public List<BlockType> getPalette() {
+        return Collections.unmodifiableList(palette);
+    }
+
+    /**
+     * @return a read-only view on the block data
+     */
+    public ShortBuffer getData() {
+        ShortBuffer view = data.asReadOnlyBuffer();
+        view.clear();
+        return view;
+    }
+
+    private int addToPalette(BlockType type) {
+        int id = palette.size();
+        Preconditions.checkState(id < MAX_PALETTE_SIZE, "No more than %s block types supported", MAX_PALETTE_SIZE);
+        palette.add(type);
+        ids.put(type, id);
+        return id;
+    }
+
+    private int indexOf(int x, int y, int z) {
+        int lx = x - minX;
+        int ly = y - minY;
+        int lz = z - minZ;
+
+        if (lx < 0 || lx >= sizeX || ly < 0 || ly >= sizeY || lz < 0 || lz >= sizeZ) {
+            return -1;
+        }
+
+        return (ly * sizeZ + lz) * sizeX + lx;
+    }
+}
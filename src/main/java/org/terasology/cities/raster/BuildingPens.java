@@ -18,6 +18,7 @@
 
 import org.terasology.cities.BlockType;
 import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.surface.RowHeightMap;
 import org.terasology.commonworld.heightmap.HeightMap;
 
 /**
@@ -34,45 +35,131 @@ private BuildingPens() {
      * @param terrainHeightMap the terrain height map
      * @param baseHeight the floor level
      * @param floor the floor block type
-     * @return a new instance
+     * @return a new instance that reads the terrain heights of a span or rectangle in one batch (not thread-safe)
      */
     public static Pen floorPen(RasterTarget target, HeightMap terrainHeightMap, int baseHeight, BlockType floor) {
 
-        return new AbstractPen(target.getAffectedArea()) {
+        return Pens.sampled(target, new AbstractPen(target.getAffectedArea()) {
 
             @Override
             public void draw(int x, int z) {
-                int terrain = terrainHeightMap.apply(x, z);
-                int floorLevel = baseHeight - 1;
-                int y = Math.max(target.getMinHeight(), terrain);
-                if (y > target.getMaxHeight()) {
-                    return;
+                drawFloor(target, target.getMinHeight(), target.getMaxHeight(), terrainHeightMap.apply(x, z), baseHeight, floor, x, z);
+            }
+
+            private int[] row = new int[0];
+            private int[] terrain = new int[0];
+
+            @Override
+            public void drawSpan(int x0, int x1, int z) {
+                drawSpans(x0, x1, z, z);
+            }
+
+            @Override
+            public void drawSpans(int x0, int x1, int z0, int z1) {
+                int width = x1 - x0 + 1;
+                int count = width * (z1 - z0 + 1);
+                if (terrain.length < count) {
+                    terrain = new int[count];
+                }
+                if (row.length < width) {
+                    row = new int[width];
                 }
 
-                // put foundation material below between terrain and floor level
-                while (y < floorLevel) {
-                    target.setBlock(x, y, z, DefaultBlockType.BUILDING_FOUNDATION);
-                    y++;
-                    if (y > target.getMaxHeight()) {
-                        return;
-                    }
+                for (int z = z0; z <= z1; z++) {
+                    RowHeightMap.readRow(terrainHeightMap, x0, x1, z, row);
+                    System.arraycopy(row, 0, terrain, (z - z0) * width, width);
                 }
 
-                // y can be larger than baseHeight here
-                if (floorLevel < target.getMinHeight()) { // if the minY is fully above, we need to exit now
-                    return;
+                int minHeight = target.getMinHeight();
+                int maxHeight = target.getMaxHeight();
+                if (target.getTraversalOrder() == TraversalOrder.LAYERS) {
+                    drawLayers(x0, x1, z0, z1, minHeight, maxHeight);
+                } else {
+                    int i = 0;
+                    for (int z = z0; z <= z1; z++) {
+                        for (int x = x0; x <= x1; x++, i++) {
+                            drawFloor(target, minHeight, maxHeight, terrain[i], baseHeight, floor, x, z);
+                        }
+                    }
                 }
+            }
 
-                // lay floor level
-                target.setBlock(x, floorLevel, z, floor);
-                y = floorLevel + 1;
+            /**
+             * Writes the same blocks as {@link #drawFloor}, but one layer after the other
+             */
+            private void drawLayers(int x0, int x1, int z0, int z1, int minHeight, int maxHeight) {
+                int floorLevel = baseHeight - 1;
+                int count = (x1 - x0 + 1) * (z1 - z0 + 1);
+                int lowest = floorLevel;
+                int highest = floorLevel;
+                for (int i = 0; i < count; i++) {
+                    lowest = Math.min(lowest, terrain[i]);
+                    highest = Math.max(highest, terrain[i]);
+                }
 
-                // clear area above floor level
-                while (y <= target.getMaxHeight() && y <= terrain) {
-                    target.setBlock(x, y, z, DefaultBlockType.AIR);
-                    y++;
+                for (int y = Math.max(minHeight, lowest); y <= Math.min(maxHeight, highest); y++) {
+                    int i = 0;
+                    for (int z = z0; z <= z1; z++) {
+                        for (int x = x0; x <= x1; x++, i++) {
+                            BlockType type = getFloorBlock(minHeight, maxHeight, terrain[i], floorLevel, floor, y);
+                            if (type != null) {
+                                target.setBlock(x, y, z, type);
+                            }
+                        }
+                    }
                 }
             }
-        };
+        });
+    }
+
+    /**
+     * @return the block that {@link #drawFloor} writes at the given height or <code>null</code> if none
+     */
+    private static BlockType getFloorBlock(int minHeight, int maxHeight, int terrain, int floorLevel, BlockType floor, int y) {
+        if (Math.max(minHeight, terrain) > maxHeight) {
+            return null;
+        }
+        if (y < floorLevel) {
+            return (y >= terrain) ? DefaultBlockType.BUILDING_FOUNDATION : null;
+        }
+        if (floorLevel < minHeight) {
+            return null;
+        }
+        if (y == floorLevel) {
+            return floor;
+        }
+        return (y <= terrain) ? DefaultBlockType.AIR : null;
+    }
+
+    private static void drawFloor(RasterTarget target, int minHeight, int maxHeight, int terrain, int baseHeight, BlockType floor, int x, int z) {
+        int floorLevel = baseHeight - 1;
+        int y = Math.max(minHeight, terrain);
+        if (y > maxHeight) {
+            return;
+        }
+
+        // put foundation material below between terrain and floor level
+        while (y < floorLevel) {
+            target.setBlock(x, y, z, DefaultBlockType.BUILDING_FOUNDATION);
+            y++;
+            if (y > maxHeight) {
+                return;
+            }
+        }
+
+        // y can be larger than baseHeight here
+        if (floorLevel < minHeight) { // if the minY is fully above, we need to exit now
+            return;
+        }
+
+        // lay floor level
+        target.setBlock(x, floorLevel, z, floor);
+        y = floorLevel + 1;
+
+        // clear area above floor level
+        while (y <= maxHeight && y <= terrain) {
+            target.setBlock(x, y, z, DefaultBlockType.AIR);
+            y++;
+        }
     }
 }
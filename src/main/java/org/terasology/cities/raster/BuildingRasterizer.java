@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.bldg.Building;
+import org.terasology.cities.bldg.BuildingPart;
+import org.terasology.cities.bldg.HollowBuildingPart;
+import org.terasology.cities.bldg.RoundBuildingPart;
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.model.roof.RectangularRoof;
+import org.terasology.cities.model.roof.Roof;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.TeraMath;
+import org.terasology.math.geom.Circle;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Shape;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Rasterizes the parts of a set of buildings: floors, walls and roofs. The footprints of the parts and roofs of a building
+ * are merged in a {@link SpanUnion}, so that overlapping parts write every column only once. Taller parts are added
+ * first, so they claim shared walls. Every part is rasterized together with its roof in one {@link Tracer} span. Windows, doors and decorations
+ * are rasterized only for {@link RasterTarget#isDetailed() detailed} targets, so that coarse targets
+ * never run the detail generators of the parts. The bounding box of every building is computed once, so that rasterizing a chunk
+ * only touches the buildings that overlap it. Instances are thread-safe.
+ */
+public class BuildingRasterizer implements Rasterizer {
+
+    private final List<Building> buildings;
+    private final List<Rect2i> bounds;
+    private final List<Footprint> footprints;
+    private final HeightMap heightMap;
+
+    private final HollowBuildingPartRasterizer hollowRasterizer = new HollowBuildingPartRasterizer();
+    private final RoundBuildingPartRasterizer roundRasterizer = new RoundBuildingPartRasterizer();
+    private final RoofRasterizer roofRasterizer = new RoofRasterizer();
+    private final DetailRasterizer detailRasterizer = new DetailRasterizer();
+
+    /**
+     * @param buildings the buildings to rasterize
+     * @param heightMap the terrain height
+     */
+    public BuildingRasterizer(Collection<? extends Building> buildings, HeightMap heightMap) {
+        this.buildings = ImmutableList.copyOf(buildings);
+        this.heightMap = heightMap;
+
+        List<Rect2i> list = new ArrayList<>(buildings.size());
+        List<Footprint> fps = new ArrayList<>(buildings.size());
+        for (Building building : this.buildings) {
+            list.add(getBounds(building));
+            fps.add(new Footprint(building));
+        }
+        this.bounds = list;
+        this.footprints = fps;
+    }
+
+    @Override
+    public void raster(RasterTarget target) {
+        Rect2i area = target.getAffectedArea();
+        for (int i = 0; i < buildings.size(); i++) {
+            if (bounds.get(i).overlaps(area)) {
+                raster(target, buildings.get(i), footprints.get(i));
+            }
+        }
+    }
+
+    /**
+     * @param target the target to write to
+     * @param building the building to rasterize
+     */
+    public void raster(RasterTarget target, Building building) {
+        raster(target, building, new Footprint(building));
+    }
+
+    private void raster(RasterTarget target, Building building, Footprint footprint) {
+        MeteredRasterTarget.beginStructure(target, "Building");
+        try {
+            List<BuildingPart> parts = footprint.parts;
+            for (int i = 0; i < parts.size(); i++) {
+                BuildingPart part = parts.get(i);
+                int id = i;
+                UnaryOperator<Pen> clip = pen -> footprint.union.clip(pen, id);
+                if (part instanceof HollowBuildingPart) {
+                    hollowRasterizer.raster(target, (HollowBuildingPart) part, heightMap, clip);
+                } else if (part instanceof RoundBuildingPart) {
+                    roundRasterizer.raster(target, (RoundBuildingPart) part, heightMap, clip);
+                } else if (part.getShape() instanceof Rect2i) {
+                    rasterRect(target, part, (Rect2i) part.getShape(), clip);
+                } else {
+                    throw new IllegalArgumentException("Unsupported shape: " + part.getShape());
+                }
+            }
+
+            if (target.isDetailed()) {
+                for (BuildingPart part : building.getParts()) {
+                    Tracer.Span span = Tracer.begin("part", part.getClass().getSimpleName());
+                    try {
+                        detailRasterizer.raster(target, part);
+                    } finally {
+                        span.close();
+                    }
+                }
+            }
+        } finally {
+            MeteredRasterTarget.endStructure(target);
+        }
+    }
+
+    private void rasterRect(RasterTarget target, BuildingPart part, Rect2i rc, UnaryOperator<Pen> clip) {
+        Tracer.Span span = Tracer.begin("part", part.getClass().getSimpleName());
+        try {
+            // the eaves of the roof can reach into the target area even if the walls do not
+            if (rc.overlaps(target.getAffectedArea())) {
+                Pen floorPen = BuildingPens.floorPen(target, heightMap, part.getBaseHeight(), DefaultBlockType.BUILDING_FLOOR);
+                RasterUtil.fillRect(clip.apply(floorPen), rc);
+
+                Pen wallPen = Pens.fill(target, part.getBaseHeight(), part.getTopHeight(), DefaultBlockType.BUILDING_WALL);
+                RasterUtil.drawRect(clip.apply(wallPen), rc);
+            }
+            if (part.getRoof() instanceof RectangularRoof) {
+                roofRasterizer.raster(target, (RectangularRoof) part.getRoof(), clip);
+            }
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * @return the area that contains all parts and roofs of the building
+     */
+    private static Rect2i getBounds(Building building) {
+        int minX = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (BuildingPart part : building.getParts()) {
+            List<Shape> shapes = new ArrayList<>(2);
+            shapes.add(part.getShape());
+            if (part.getRoof() != null) {
+                shapes.add(part.getRoof().getArea());
+            }
+            for (Shape shape : shapes) {
+                Rect2i rc = getBounds(shape);
+                minX = Math.min(minX, rc.minX());
+                minZ = Math.min(minZ, rc.minY());
+                maxX = Math.max(maxX, rc.maxX());
+                maxZ = Math.max(maxZ, rc.maxY());
+            }
+        }
+        if (minX > maxX) {
+            return Rect2i.EMPTY;
+        }
+        return Rect2i.createFromMinAndMax(minX, minZ, maxX, maxZ);
+    }
+
+    private static Rect2i getBounds(Shape shape) {
+        if (shape instanceof Rect2i) {
+            return (Rect2i) shape;
+        }
+        if (shape instanceof Circle) {
+            Circle circle = (Circle) shape;
+            int cx = TeraMath.floorToInt(circle.getCenter().getX());
+            int cz = TeraMath.floorToInt(circle.getCenter().getY());
+            int rad = TeraMath.floorToInt(circle.getRadius());
+            return Rect2i.createFromMinAndMax(cx - rad, cz - rad, cx + rad, cz + rad);
+        }
+        throw new IllegalArgumentException("Unsupported shape: " + shape);
+    }
+
+    /**
+     * The parts of a building, sorted by descending top height, and their merged footprints including the roofs.
+     * The id of a footprint is the index of the part in the sorted list.
+     */
+    private static final class Footprint {
+        private final List<BuildingPart> parts;
+        private final SpanUnion union = new SpanUnion();
+
+        Footprint(Building building) {
+            List<BuildingPart> sorted = new ArrayList<>(building.getParts());
+            sorted.sort(Comparator.comparingInt(BuildingPart::getTopHeight).reversed());   // stable
+            for (int i = 0; i < sorted.size(); i++) {
+                union.add(sorted.get(i), i);
+            }
+
+            // the eaves claim only columns that are not covered by any part
+            for (int i = 0; i < sorted.size(); i++) {
+                Roof roof = sorted.get(i).getRoof();
+                if (roof != null) {
+                    union.add(roof.getArea(), i);
+                }
+            }
+            this.parts = sorted;
+        }
+    }
+}
@@ -39,6 +39,30 @@ public void draw(int x, int z) {
         }
     }
 
+    @Override
+    public void drawSpan(int x0, int x1, int z) {
+        Rect2i area = pen.getTargetArea();
+        if (z >= area.minY() && z <= area.maxY()) {
+            int minX = Math.max(x0, area.minX());
+            int maxX = Math.min(x1, area.maxX());
+            if (minX <= maxX) {
+                pen.drawSpan(minX, maxX, z);
+            }
+        }
+    }
+
+    @Override
+    public void drawSpans(int x0, int x1, int z0, int z1) {
+        Rect2i area = pen.getTargetArea();
+        int minX = Math.max(x0, area.minX());
+        int maxX = Math.min(x1, area.maxX());
+        int minZ = Math.max(z0, area.minY());
+        int maxZ = Math.min(z1, area.maxY());
+        if (minX <= maxX && minZ <= maxZ) {
+            pen.drawSpans(minX, maxX, minZ, maxZ);
+        }
+    }
+
     @Override
     public Rect2i getTargetArea() {
         return pen.getTargetArea();
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.cities.BlockTheme;
+import org.terasology.cities.metrics.RasterMetrics;
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.world.chunks.CoreChunk;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Rasterizes chunks in the order of their distance to the nearest player.
+ * Requests for chunks that are too far away from all players are cancelled.
+ */
+public class ChunkRasterScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkRasterScheduler.class);
+
+    private final List<Rasterizer> pipeline;
+    private final BlockTheme blockTheme;
+    private final long cancelDistSq;
+    private final RasterMetrics metrics;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final PriorityQueue<Request> queue = new PriorityQueue<>(
+            Comparator.comparingLong((Request r) -> r.priority).thenComparingLong(r -> r.seq));
+
+    private final ExecutorService workers;
+
+    private List<ImmutableVector2i> players = ImmutableList.of();
+    private long nextSeq;
+    private boolean shutdown;
+
+    /**
+     * @param pipeline the rasterizers that are applied to every chunk (in this order)
+     * @param blockTheme the block theme to use
+     * @param threads the number of worker threads
+     * @param cancelDistance requests that are further away from all players are cancelled
+     */
+    public ChunkRasterScheduler(List<? extends Rasterizer> pipeline, BlockTheme blockTheme, int threads, int cancelDistance) {
+        this(pipeline, blockTheme, threads, cancelDistance, null);
+    }
+
+    /**
+     * @param pipeline the rasterizers that are applied to every chunk (in this order)
+     * @param blockTheme the block theme to use
+     * @param threads the number of worker threads
+     * @param cancelDistance requests that are further away from all players are cancelled
+     * @param metrics the metrics to record for every chunk or <code>null</code> to disable them
+     */
+    public ChunkRasterScheduler(List<? extends Rasterizer> pipeline, BlockTheme blockTheme, int threads, int cancelDistance,
+                                RasterMetrics metrics) {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+
+        this.pipeline = ImmutableList.copyOf(pipeline);
+        this.blockTheme = blockTheme;
+        this.cancelDistSq = (long) cancelDistance * cancelDistance;
+        this.metrics = metrics;
+
+        ThreadFactoryBuilder factory = new ThreadFactoryBuilder().setNameFormat("chunk-raster-%d").setDaemon(true);
+        this.workers = Executors.newFixedThreadPool(threads, factory.build());
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * @param chunk the chunk to rasterize
+     * @return a future that completes when the chunk is rasterized. It is cancelled if the request becomes stale.
+     */
+    public CompletableFuture<CoreChunk> submit(CoreChunk chunk) {
+        lock.lock();
+        try {
+            Preconditions.checkState(!shutdown, "Scheduler is shut down");
+            Request request = new Request(chunk, nextSeq++);
+            request.priority = getPriority(request);
+            if (!players.isEmpty() && request.priority > cancelDistSq) {
+                request.future.cancel(false);
+            } else {
+                queue.add(request);
+                notEmpty.signal();
+            }
+            return request.future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Updates the player positions. All pending requests are re-ordered and stale requests are cancelled.
+     * @param positions the player positions in world coordinates (XZ)
+     */
+    public void setPlayerPositions(Collection<? extends BaseVector2i> positions) {
+        List<ImmutableVector2i> copy = new ArrayList<>(positions.size());
+        for (BaseVector2i pos : positions) {
+            copy.add(ImmutableVector2i.createOrUse(pos));
+        }
+
+        List<Request> stale = new ArrayList<>();
+        lock.lock();
+        try {
+            players = copy;
+            List<Request> pending = new ArrayList<>(queue);
+            queue.clear();
+            for (Request request : pending) {
+                request.priority = getPriority(request);
+                if (request.future.isCancelled()) {
+                    continue;
+                }
+                if (!players.isEmpty() && request.priority > cancelDistSq) {
+                    stale.add(request);
+                } else {
+                    queue.add(request);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (Request request : stale) {
+            request.future.cancel(false);
+        }
+    }
+
+    /**
+     * @return the number of pending requests
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels all pending requests and stops the workers. Running requests are completed.
+     */
+    public void shutdown() {
+        List<Request> pending;
+        lock.lock();
+        try {
+            shutdown = true;
+            pending = new ArrayList<>(queue);
+            queue.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Request request : pending) {
+            request.future.cancel(false);
+        }
+        workers.shutdown();
+    }
+
+    private void work() {
+        while (true) {
+            Request request;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !shutdown) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (shutdown) {
+                    return;
+                }
+                request = queue.poll();
+            } finally {
+                lock.unlock();
+            }
+
+            if (request.future.isCancelled()) {
+                continue;
+            }
+
+            try {
+                RasterTarget target = new ChunkRasterTarget(request.chunk, blockTheme);
+                if (metrics != null) {
+                    MeteredRasterTarget metered = new MeteredRasterTarget(target, metrics);
+                    metered.raster(pipeline);
+                    metered.finish();
+                } else {
+                    for (Rasterizer rasterizer : pipeline) {
+                        rasterizer.raster(target);
+                    }
+                }
+                request.future.complete(request.chunk);
+            } catch (RuntimeException e) {
+                logger.error("Could not rasterize chunk {}", request.chunk.getPosition(), e);
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock.
+     * @param request the request
+     * @return the squared distance to the nearest player or zero if there are no players
+     */
+    private long getPriority(Request request) {
+        long best = players.isEmpty() ? 0 : Long.MAX_VALUE;
+        for (ImmutableVector2i player : players) {
+            long dx = request.centerX - player.getX();
+            long dz = request.centerZ - player.getY();
+            best = Math.min(best, dx * dx + dz * dz);
+        }
+        return best;
+    }
+
+    private static final class Request {
+        private final CoreChunk chunk;
+        private final long seq;
+        private final int centerX;
+        private final int centerZ;
+        private final CompletableFuture<CoreChunk> future = new CompletableFuture<>();
+        private long priority;
+
+        Request(CoreChunk chunk, long seq) {
+            this.chunk = chunk;
+            this.seq = seq;
+            this.centerX = chunk.getChunkWorldOffsetX() + chunk.getChunkSizeX() / 2;
+            this.centerZ = chunk.getChunkWorldOffsetZ() + chunk.getChunkSizeZ() / 2;
+        }
+    }
+}
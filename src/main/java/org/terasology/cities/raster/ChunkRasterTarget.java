@@ -64,6 +64,11 @@ public Region3i getAffectedRegion() {
         return chunk.getRegion();
     }
 
+    @Override
+    public TraversalOrder getTraversalOrder() {
+        return TraversalOrder.LAYERS;   // chunk data is stored layer by layer
+    }
+
     @Override
     public int getMaxHeight() {
         return chunk.chunkToWorldPositionY(0) + chunk.getChunkSizeY() - 1;
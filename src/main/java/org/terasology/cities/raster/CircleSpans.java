@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Draws discs and rings as horizontal spans. The half width of every row is precomputed per radius.
+ * A column at distance (dx, dz) from the center belongs to a disc of radius r
+ * if <code>dx^2 + dz^2 &lt;= (r + 0.5)^2</code>.
+ */
+public final class CircleSpans {
+
+    private static final Map<Integer, int[]> HALF_WIDTHS = new ConcurrentHashMap<>();
+
+    private CircleSpans() {
+        // no instances
+    }
+
+    /**
+     * @param rad the radius
+     * @param dz the row offset from the center
+     * @return the half width of the row or -1 if the row is outside the disc
+     */
+    public static int getHalfWidth(int rad, int dz) {
+        if (rad < 0 || dz < -rad || dz > rad) {
+            return -1;
+        }
+        return getHalfWidths(rad)[Math.abs(dz)];
+    }
+
+    /**
+     * @param pen the pen to use
+     * @param cx the center x
+     * @param cz the center z
+     * @param rad the radius
+     */
+    public static void fillDisc(Pen pen, int cx, int cz, int rad) {
+        if (rad < 0) {
+            return;
+        }
+
+        int[] halfWidths = getHalfWidths(rad);
+        Rect2i area = pen.getTargetArea();
+        int minDz = Math.max(-rad, area.minY() - cz);
+        int maxDz = Math.min(rad, area.maxY() - cz);
+        for (int dz = minDz; dz <= maxDz; dz++) {
+            int half = halfWidths[Math.abs(dz)];
+            RasterUtil.drawLineX(pen, cx - half, cx + half, cz + dz);
+        }
+    }
+
+    /**
+     * Draws the columns that are inside the disc of the given radius, but not inside the disc of
+     * radius <code>rad - thickness</code>.
+     * @param pen the pen to use
+     * @param cx the center x
+     * @param cz the center z
+     * @param rad the outer radius
+     * @param thickness the ring thickness (at least 1)
+     */
+    public static void drawRing(Pen pen, int cx, int cz, int rad, int thickness) {
+        Preconditions.checkArgument(thickness > 0, "thickness must be positive");
+
+        int innerRad = rad - thickness;
+        if (innerRad < 0) {
+            fillDisc(pen, cx, cz, rad);
+            return;
+        }
+
+        int[] outer = getHalfWidths(rad);
+        int[] inner = getHalfWidths(innerRad);
+        Rect2i area = pen.getTargetArea();
+        int minDz = Math.max(-rad, area.minY() - cz);
+        int maxDz = Math.min(rad, area.maxY() - cz);
+        for (int dz = minDz; dz <= maxDz; dz++) {
+            int abs = Math.abs(dz);
+            int half = outer[abs];
+            if (abs > innerRad) {
+                RasterUtil.drawLineX(pen, cx - half, cx + half, cz + dz);
+            } else {
+                int hole = inner[abs];
+                RasterUtil.drawLineX(pen, cx - half, cx - hole - 1, cz + dz);
+                RasterUtil.drawLineX(pen, cx + hole + 1, cx + half, cz + dz);
+            }
+        }
+    }
+
+    private static int[] getHalfWidths(int rad) {
+        return HALF_WIDTHS.computeIfAbsent(rad, r -> {
+            int[] halfWidths = new int[r + 1];
+            double radSq = (r + 0.5) * (r + 0.5);
+            for (int dz = 0; dz <= r; dz++) {
+                int half = (int) Math.sqrt(radSq - dz * dz);
+                // guard against rounding errors of sqrt
+                while ((half + 1) * (half + 1) + dz * dz <= radSq) {
+                    half++;
+                }
+                while (half * half + dz * dz > radSq) {
+                    half--;
+                }
+                halfWidths[dz] = half;
+            }
+            return halfWidths;
+        });
+    }
+}
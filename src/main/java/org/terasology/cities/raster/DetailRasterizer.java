@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.terasology.cities.BlockType;
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.bldg.BuildingPart;
+import org.terasology.cities.deco.ColumnDecoration;
+import org.terasology.cities.deco.Decoration;
+import org.terasology.cities.deco.SingleBlockDecoration;
+import org.terasology.cities.door.Door;
+import org.terasology.cities.door.SimpleDoor;
+import org.terasology.cities.door.WingDoor;
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.window.RectWindow;
+import org.terasology.cities.window.SimpleWindow;
+import org.terasology.cities.window.Window;
+import org.terasology.math.Side;
+import org.terasology.math.geom.ImmutableVector3i;
+import org.terasology.math.geom.Rect2i;
+
+/**
+ * Rasterizes the windows, doors and decorations of a building part. Reading them runs the detail
+ * generators of the part, so this must only be called for targets that are {@link RasterTarget#isDetailed() detailed}.
+ * Every window, door and decoration is rasterized in its own {@link Tracer} span.
+ */
+public class DetailRasterizer {
+
+    /**
+     * @param target the target to write to
+     * @param part the building part
+     */
+    public void raster(RasterTarget target, BuildingPart part) {
+        for (Window window : part.getWindows()) {
+            Tracer.Span span = Tracer.begin("window", window.getClass().getSimpleName());
+            try {
+                raster(target, window);
+            } finally {
+                span.close();
+            }
+        }
+
+        for (Door door : part.getDoors()) {
+            Tracer.Span span = Tracer.begin("door", door.getClass().getSimpleName());
+            try {
+                raster(target, door);
+            } finally {
+                span.close();
+            }
+        }
+
+        for (Decoration decoration : part.getDecorations()) {
+            Tracer.Span span = Tracer.begin("decoration", decoration.getClass().getSimpleName());
+            try {
+                raster(target, decoration);
+            } finally {
+                span.close();
+            }
+        }
+    }
+
+    private static void raster(RasterTarget target, Window window) {
+        if (window instanceof SimpleWindow) {
+            SimpleWindow wnd = (SimpleWindow) window;
+            setBlock(target, wnd.getPos().getX(), wnd.getHeight(), wnd.getPos().getY(), DefaultBlockType.WINDOW_GLASS, null);
+        } else if (window instanceof RectWindow) {
+            RectWindow wnd = (RectWindow) window;
+            Pen pen = Pens.fill(target, wnd.getBaseHeight(), wnd.getTopHeight(), wnd.getBlockType());
+            RasterUtil.fillRect(pen, wnd.getArea());
+        }
+    }
+
+    private static void raster(RasterTarget target, Door door) {
+        if (door instanceof SimpleDoor) {
+            SimpleDoor simpleDoor = (SimpleDoor) door;
+            Rect2i rc = Rect2i.createFromMinAndSize(simpleDoor.getPos().getX(), simpleDoor.getPos().getY(), 1, 1);
+            Pen pen = Pens.fill(target, simpleDoor.getBaseHeight(), simpleDoor.getTopHeight(), DefaultBlockType.SIMPLE_DOOR);
+            RasterUtil.fillRect(pen, rc);
+        } else if (door instanceof WingDoor) {
+            WingDoor wingDoor = (WingDoor) door;
+            Pen pen = Pens.fill(target, wingDoor.getBaseHeight(), wingDoor.getTopHeight(), DefaultBlockType.WING_DOOR);
+            RasterUtil.fillRect(pen, wingDoor.getArea());
+        }
+    }
+
+    private static void raster(RasterTarget target, Decoration decoration) {
+        if (decoration instanceof SingleBlockDecoration) {
+            SingleBlockDecoration deco = (SingleBlockDecoration) decoration;
+            ImmutableVector3i pos = deco.getPos();
+            setBlock(target, pos.getX(), pos.getY(), pos.getZ(), deco.getType(), deco.getSide());
+        } else if (decoration instanceof ColumnDecoration) {
+            ColumnDecoration deco = (ColumnDecoration) decoration;
+            ImmutableVector3i pos = deco.getBasePos();
+            List<BlockType> types = deco.getBlockTypes();
+            List<Side> sides = deco.getSides();
+            for (int i = 0; i < deco.getHeight(); i++) {
+                setBlock(target, pos.getX(), pos.getY() + i, pos.getZ(), types.get(i), sides.get(i));
+            }
+        }
+    }
+
+    private static void setBlock(RasterTarget target, int x, int y, int z, BlockType type, Side side) {
+        if (!target.getAffectedArea().contains(x, z) || y < target.getMinHeight() || y > target.getMaxHeight()) {
+            return;
+        }
+
+        if (side != null) {
+            target.setBlock(x, y, z, type, EnumSet.of(side));
+        } else {
+            target.setBlock(x, y, z, type);
+        }
+    }
+}
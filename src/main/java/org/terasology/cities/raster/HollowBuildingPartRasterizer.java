@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.bldg.HollowBuildingPart;
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.model.roof.RectangularRoof;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Rasterizes {@link HollowBuildingPart}s: a floor, four walls that are opened by a row of arches and a {@link RectangularRoof}.
+ * The arcade profile of a wall depends only on its length, the arc radius and the wall height.
+ * It is computed once as a lookup table of opening heights. Neighbouring wall columns with the same
+ * opening height are drawn as one span with a {@link Pens#fill fill pen}.
+ */
+public class HollowBuildingPartRasterizer {
+
+    private static final int MAX_PROFILE_VALUE = (1 << 21) - 1;
+
+    private final Map<Long, int[]> profiles = new ConcurrentHashMap<>();
+    private final RoofRasterizer roofRasterizer = new RoofRasterizer();
+
+    /**
+     * @param target the target to write to
+     * @param part the building part
+     * @param terrainHeightMap the terrain height
+     */
+    public void raster(RasterTarget target, HollowBuildingPart part, HeightMap terrainHeightMap) {
+        raster(target, part, terrainHeightMap, UnaryOperator.identity());
+    }
+
+    /**
+     * @param target the target to write to
+     * @param part the building part
+     * @param terrainHeightMap the terrain height
+     * @param clip restricts the floor, wall and roof pens, e.g. to the part's share of a {@link SpanUnion}
+     */
+    public void raster(RasterTarget target, HollowBuildingPart part, HeightMap terrainHeightMap, UnaryOperator<Pen> clip) {
+        Rect2i rc = part.getShape();
+        Tracer.Span span = Tracer.begin("part", "HollowBuildingPart");
+        try {
+            // the eaves of the roof can reach into the target area even if the walls do not
+            if (rc.overlaps(target.getAffectedArea())) {
+                rasterWalls(target, part, terrainHeightMap, clip);
+            }
+            if (part.getRoof() instanceof RectangularRoof) {
+                roofRasterizer.raster(target, (RectangularRoof) part.getRoof(), clip);
+            }
+        } finally {
+            span.close();
+        }
+    }
+
+    private void rasterWalls(RasterTarget target, HollowBuildingPart part, HeightMap terrainHeightMap, UnaryOperator<Pen> clip) {
+        Rect2i rc = part.getShape();
+        Pen floorPen = clip.apply(BuildingPens.floorPen(target, terrainHeightMap, part.getBaseHeight(), DefaultBlockType.BUILDING_FLOOR));
+        RasterUtil.fillRect(floorPen, rc);
+
+        int base = part.getBaseHeight();
+        int wallHeight = part.getWallHeight();
+        int radius = part.getArcRadius();
+
+        int[] alongX = getProfile(rc.width(), radius, wallHeight);
+        Pen[] pens = new Pen[Math.max(1, wallHeight)];
+        forEachRun(alongX, 0, rc.width(), (i0, i1, open) -> {
+            Pen pen = getPen(pens, target, clip, base, open, wallHeight);
+            RasterUtil.drawLineX(pen, rc.minX() + i0, rc.minX() + i1, rc.minY());
+            RasterUtil.drawLineX(pen, rc.minX() + i0, rc.minX() + i1, rc.maxY());
+        });
+
+        // the corners are part of the walls along the x axis
+        int[] alongZ = getProfile(rc.height(), radius, wallHeight);
+        forEachRun(alongZ, 1, rc.height() - 1, (i0, i1, open) -> {
+            Pen pen = getPen(pens, target, clip, base, open, wallHeight);
+            RasterUtil.drawLineZ(pen, rc.minX(), rc.minY() + i0, rc.minY() + i1);
+            RasterUtil.drawLineZ(pen, rc.maxX(), rc.minY() + i0, rc.minY() + i1);
+        });
+    }
+
+    /**
+     * The wall is divided into arches of width <code>2 * radius + 1</code>, separated by pillars.
+     * The arches are centered along the wall and both ends are pillars. Every arch has straight jambs
+     * and a semicircular top that leaves the topmost block row of the wall closed.
+     * @param length the length of the wall
+     * @param radius the arc radius
+     * @param wallHeight the height of the wall
+     * @return the number of open blocks above the base height for every position along the wall (shared, do not modify)
+     */
+    int[] getProfile(int length, int radius, int wallHeight) {
+        // the key packs three 21 bit values
+        Preconditions.checkArgument(length >= 0 && length <= MAX_PROFILE_VALUE, "Invalid wall length: %s", length);
+        Preconditions.checkArgument(radius >= 0 && radius <= MAX_PROFILE_VALUE, "Invalid arc radius: %s", radius);
+        Preconditions.checkArgument(wallHeight >= 0 && wallHeight <= MAX_PROFILE_VALUE, "Invalid wall height: %s", wallHeight);
+        long key = ((long) length << 42) | ((long) radius << 21) | wallHeight;
+        return profiles.computeIfAbsent(key, k -> computeProfile(length, radius, wallHeight));
+    }
+
+    private static int[] computeProfile(int length, int radius, int wallHeight) {
+        int[] profile = new int[length];
+        int period = 2 * radius + 2;
+        int jamb = Math.max(0, wallHeight - radius - 2);
+        int offset = ((length - 1) % period) / 2;
+
+        for (int i = 1; i < length - 1; i++) {
+            int pos = Math.floorMod(i - offset, period);
+            int prevPillar = i - pos;
+            if (pos == 0 || prevPillar < 0 || prevPillar + period > length - 1) {
+                continue;   // pillar or remaining wall next to the corners
+            }
+
+            float center = prevPillar + period * 0.5f;
+            float dist = Math.abs(i - center);
+            float arc = radius * radius - dist * dist;
+            int open = jamb + 1 + (arc > 0 ? (int) Math.sqrt(arc) : 0);
+            profile[i] = Math.min(open, wallHeight - 1);
+        }
+        return profile;
+    }
+
+    private static Pen getPen(Pen[] pens, RasterTarget target, UnaryOperator<Pen> clip, int base, int open, int wallHeight) {
+        if (pens[open] == null) {
+            pens[open] = clip.apply(Pens.fill(target, base + open, base + wallHeight, DefaultBlockType.BUILDING_WALL));
+        }
+        return pens[open];
+    }
+
+    /**
+     * Calls the consumer for every run of equal values in the profile.
+     * @param profile the profile
+     * @param from the first index (inclusive)
+     * @param to the last index (exclusive)
+     * @param consumer receives the first and last index (inclusive) and the value of the run
+     */
+    private static void forEachRun(int[] profile, int from, int to, RunConsumer consumer) {
+        int start = from;
+        for (int i = from + 1; i <= to; i++) {
+            if (i == to || profile[i] != profile[start]) {
+                consumer.accept(start, i - 1, profile[start]);
+                start = i;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RunConsumer {
+        void accept(int i0, int i1, int value);
+    }
+}
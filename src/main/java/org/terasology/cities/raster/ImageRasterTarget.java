@@ -85,6 +85,14 @@ public Region3i getAffectedRegion() {
         return region;
     }
 
+    /**
+     * @return false, because details are hardly visible in a top-down view
+     */
+    @Override
+    public boolean isDetailed() {
+        return false;
+    }
+
     /**
      * @param x x in world coords
      * @param y y in world coords
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.terasology.cities.BlockType;
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.math.Region3i;
+import org.terasology.math.Side;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A level-of-detail {@link RasterTarget} that accepts blocks in world coordinates, but
+ * resolves them to cells of <code>scale x scale x scale</code> blocks. Only the center column
+ * of every cell is sampled (see {@link #getSampleStride()}), so the pens visit only one in
+ * <code>scale^2</code> columns. The final type of every block in a sampled column is stored
+ * and each cell resolves to the most frequent type among its sampled blocks.
+ * Blocks that were never written count as AIR.
+ * <br><br>
+ * Details (windows, doors, decorations) are not rasterized.
+ */
+public class LodRasterTarget implements RasterTarget {
+
+    private static final int MAX_PALETTE_SIZE = 1 << Short.SIZE;
+
+    private final Region3i region;
+    private final Rect2i area;
+    private final int scale;
+    private final int shift;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeY;
+    private final int cellsX;
+    private final int cellsY;
+    private final int cellsZ;
+
+    private final List<BlockType> palette = new ArrayList<>();
+    private final Map<BlockType, Integer> ids = new HashMap<>();
+    private final short[] samples;  // the block ids of the sampled columns, layer by layer
+
+    /**
+     * @param region the region in world coordinates (x and z must be aligned to the cell size)
+     * @param scale the edge length of a cell in blocks (2, 4 or 8)
+     */
+    public LodRasterTarget(Region3i region, int scale) {
+        Preconditions.checkArgument(scale == 2 || scale == 4 || scale == 8, "scale must be 2, 4 or 8");
+        Preconditions.checkArgument(Math.floorMod(region.minX(), scale) == 0 && Math.floorMod(region.minZ(), scale) == 0
+                && region.sizeX() % scale == 0 && region.sizeZ() % scale == 0, "region must be aligned to the cells");
+
+        this.region = region;
+        this.area = Rect2i.createFromMinAndSize(region.minX(), region.minZ(), region.sizeX(), region.sizeZ());
+        this.scale = scale;
+        this.shift = Integer.numberOfTrailingZeros(scale);
+
+        this.minX = region.minX();
+        this.minY = region.minY();
+        this.minZ = region.minZ();
+        this.sizeY = region.sizeY();
+        this.cellsX = region.sizeX() >> shift;
+        this.cellsY = (region.sizeY() + scale - 1) >> shift;
+        this.cellsZ = region.sizeZ() >> shift;
+        this.samples = new short[cellsX * cellsZ * sizeY];
+
+        palette.add(DefaultBlockType.AIR);  // map AIR to index zero
+        ids.put(DefaultBlockType.AIR, 0);
+    }
+
+    @Override
+    public Rect2i getAffectedArea() {
+        return area;
+    }
+
+    @Override
+    public Region3i getAffectedRegion() {
+        return region;
+    }
+
+    @Override
+    public TraversalOrder getTraversalOrder() {
+        return TraversalOrder.LAYERS;   // samples are stored layer by layer
+    }
+
+    @Override
+    public boolean isDetailed() {
+        return false;
+    }
+
+    @Override
+    public int getSampleStride() {
+        return scale;
+    }
+
+    /**
+     * Writes that do not hit a sampled column are ignored.
+     * @param x x in world coords
+     * @param y y in world coords
+     * @param z z in world coords
+     * @param type the block type
+     */
+    @Override
+    public void setBlock(int x, int y, int z, BlockType type) {
+        int lx = x - minX;
+        int ly = y - minY;
+        int lz = z - minZ;
+        int half = scale >> 1;
+
+        if (lx < 0 || ly < 0 || lz < 0 || ly >= sizeY || (lx & (scale - 1)) != half || (lz & (scale - 1)) != half) {
+            return;
+        }
+
+        int cx = lx >> shift;
+        int cz = lz >> shift;
+        if (cx >= cellsX || cz >= cellsZ) {
+            return;
+        }
+
+        Integer id = ids.get(type);
+        if (id == null) {
+            id = palette.size();
+            Preconditions.checkState(id < MAX_PALETTE_SIZE, "No more than %s block types supported", MAX_PALETTE_SIZE);
+            palette.add(type);
+            ids.put(type, id);
+        }
+
+        samples[(ly * cellsZ + cz) * cellsX + cx] = (short) id.intValue();
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockType type, Set<Side> side) {
+        setBlock(x, y, z, type); // ignore side flags
+    }
+
+    /**
+     * @param cx the cell x index
+     * @param cy the cell y index
+     * @param cz the cell z index
+     * @return the most frequent block type among the sampled blocks of the cell. Ties are broken in favor of the lower block.
+     */
+    public BlockType getBlockType(int cx, int cy, int cz) {
+        Preconditions.checkElementIndex(cx, cellsX, "cx");
+        Preconditions.checkElementIndex(cy, cellsY, "cy");
+        Preconditions.checkElementIndex(cz, cellsZ, "cz");
+
+        int bottom = cy << shift;
+        int top = Math.min(sizeY, bottom + scale);
+        int layer = cellsX * cellsZ;
+        int offset = cz * cellsX + cx;
+
+        int best = 0;
+        int bestCount = 0;
+        for (int y = bottom; y < top; y++) {
+            int id = samples[y * layer + offset];
+            int count = 0;
+            for (int other = y; other < top; other++) {
+                if (samples[other * layer + offset] == id) {
+                    count++;
+                }
+            }
+            if (count > bestCount) {
+                bestCount = count;
+                best = id;
+            }
+        }
+        return palette.get(Short.toUnsignedInt((short) best));
+    }
+
+    /**
+     * @return the edge length of a cell in blocks
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the number of cells along the x axis
+     */
+    public int getCellsX() {
+        return cellsX;
+    }
+
+    /**
+     * @return the number of cells along the y axis
+     */
+    public int getCellsY() {
+        return cellsY;
+    }
+
+    /**
+     * @return the number of cells along the z axis
+     */
+    public int getCellsZ() {
+        return cellsZ;
+    }
+
+    /**
+     * @return an unmodifiable view on all block types that were written (and AIR)
+     */
+    public List<BlockType> getBlockTypes() {
+        return Collections.unmodifiableList(palette);
+    }
+}
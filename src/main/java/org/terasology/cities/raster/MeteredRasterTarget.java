@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.terasology.cities.BlockType;
+import org.terasology.cities.metrics.RasterMetrics;
+import org.terasology.math.Region3i;
+import org.terasology.math.Side;
+import org.terasology.math.geom.Rect2i;
+
+/**
+ * Forwards all writes inside the target region to another {@link RasterTarget} and counts them.
+ * Writes outside the region are rejected (counted, but not forwarded). The numbers are collected locally
+ * and added to a {@link RasterMetrics} instance in {@link #finish()}. Not thread-safe, use one instance per chunk.
+ * <br><br>
+ * Overwrites are detected with one bit per block. The bits are allocated per layer on the first write,
+ * so only the layers that are actually written to take up memory.
+ * <br><br>
+ * Rasterizers can attribute their writes and time to a structure type through
+ * {@link #beginStructure(RasterTarget, String)} and {@link #endStructure(RasterTarget)}.
+ * Both are no-ops for targets that are not metered.
+ */
+public class MeteredRasterTarget implements RasterTarget {
+
+    private final RasterTarget base;
+    private final RasterMetrics metrics;
+    private final long startTime;
+
+    private final Region3i region;
+    private final long[][] written;     // one bit per block, allocated per layer on demand
+
+    private final Map<BlockType, long[]> voxels = new IdentityHashMap<>();
+    private final Map<String, long[]> structures = new HashMap<>();  // count, nanos, voxels
+    private final Deque<Scope> scopes = new ArrayDeque<>();
+
+    private BlockType lastType;
+    private long[] lastCount;
+
+    private long writes;
+    private long overwrites;
+    private long rejected;
+
+    /**
+     * @param base the target to forward to
+     * @param metrics the metrics to add to when finished
+     */
+    public MeteredRasterTarget(RasterTarget base, RasterMetrics metrics) {
+        this.base = base;
+        this.metrics = metrics;
+        this.region = base.getAffectedRegion();
+        this.written = new long[region.sizeY()][];
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Attributes all following writes to the given structure type until {@link #endStructure(RasterTarget)} is called.
+     * Structures can be nested; the writes are then counted for all of them.
+     * @param target the raster target (ignored if not metered)
+     * @param structure the structure type
+     */
+    public static void beginStructure(RasterTarget target, String structure) {
+        if (target instanceof MeteredRasterTarget) {
+            ((MeteredRasterTarget) target).beginStructure(structure);
+        }
+    }
+
+    /**
+     * Ends the structure that was most recently started
+     * @param target the raster target (ignored if not metered)
+     */
+    public static void endStructure(RasterTarget target) {
+        if (target instanceof MeteredRasterTarget) {
+            ((MeteredRasterTarget) target).endStructure();
+        }
+    }
+
+    /**
+     * @param structure the structure type
+     */
+    public void beginStructure(String structure) {
+        scopes.push(new Scope(structure, System.nanoTime(), writes));
+    }
+
+    /**
+     * Ends the structure that was most recently started
+     */
+    public void endStructure() {
+        Scope scope = scopes.pop();
+        long[] cost = structures.computeIfAbsent(scope.structure, s -> new long[3]);
+        cost[0]++;
+        cost[1] += System.nanoTime() - scope.startTime;
+        cost[2] += writes - scope.startWrites;
+    }
+
+    /**
+     * Applies all rasterizers to this target. Every rasterizer counts as a separate structure
+     * (see {@link #rasterStructure(RasterTarget, Rasterizer)}).
+     * @param pipeline the rasterizers to apply (in this order)
+     */
+    public void raster(List<? extends Rasterizer> pipeline) {
+        for (Rasterizer rasterizer : pipeline) {
+            rasterStructure(this, rasterizer);
+        }
+    }
+
+    /**
+     * Applies the rasterizer and attributes its writes to a structure that is named after its class
+     * (without the "Rasterizer" suffix). A {@link BuildingRasterizer} opens one structure per building instead.
+     * @param target the target to write to (not necessarily metered)
+     * @param rasterizer the rasterizer to apply
+     */
+    public static void rasterStructure(RasterTarget target, Rasterizer rasterizer) {
+        if (rasterizer instanceof BuildingRasterizer) {
+            rasterizer.raster(target);
+            return;
+        }
+
+        beginStructure(target, getStructureName(rasterizer));
+        try {
+            rasterizer.raster(target);
+        } finally {
+            endStructure(target);
+        }
+    }
+
+    /**
+     * Adds all collected numbers and the time since construction to the metrics.
+     */
+    public void finish() {
+        metrics.addChunk(System.nanoTime() - startTime);
+        voxels.forEach((type, count) -> metrics.addVoxels(type, count[0]));
+        structures.forEach((structure, cost) -> metrics.addStructure(structure, cost[0], cost[1], cost[2]));
+        metrics.addOverwrites(overwrites);
+        metrics.addRejected(rejected);
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockType type) {
+        if (count(x, y, z, type)) {
+            base.setBlock(x, y, z, type);
+        }
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockType type, Set<Side> side) {
+        if (count(x, y, z, type)) {
+            base.setBlock(x, y, z, type, side);
+        }
+    }
+
+    private static String getStructureName(Rasterizer rasterizer) {
+        Class<?> clazz = rasterizer.getClass();
+        String name = clazz.getSimpleName();
+        if (clazz.isSynthetic() || name.isEmpty()) {
+            return "Other";
+        }
+        String suffix = Rasterizer.class.getSimpleName();
+        return name.endsWith(suffix) && name.length() > suffix.length()
+                ? name.substring(0, name.length() - suffix.length()) : name;
+    }
+
+    /**
+     * @return true if the block is inside the region and the write should be forwarded
+     */
+    private boolean count(int x, int y, int z, BlockType type) {
+        int lx = x - region.minX();
+        int ly = y - region.minY();
+        int lz = z - region.minZ();
+        if (lx < 0 || lx >= region.sizeX() || ly < 0 || ly >= region.sizeY() || lz < 0 || lz >= region.sizeZ()) {
+            rejected++;
+            return false;
+        }
+
+        long[] layer = written[ly];
+        if (layer == null) {
+            layer = new long[(region.sizeX() * region.sizeZ() + 63) / 64];
+            written[ly] = layer;
+        }
+        int index = lz * region.sizeX() + lx;
+        long mask = 1L << index;        // the shift uses the lowest 6 bits only
+        if ((layer[index >>> 6] & mask) != 0) {
+            overwrites++;
+        } else {
+            layer[index >>> 6] |= mask;
+        }
+
+        if (type != lastType) {
+            lastType = type;
+            lastCount = voxels.computeIfAbsent(type, t -> new long[1]);
+        }
+        lastCount[0]++;
+        writes++;
+        return true;
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return base.getMaxHeight();
+    }
+
+    @Override
+    public int getMinHeight() {
+        return base.getMinHeight();
+    }
+
+    @Override
+    public boolean isDetailed() {
+        return base.isDetailed();
+    }
+
+    @Override
+    public int getSampleStride() {
+        return base.getSampleStride();
+    }
+
+    @Override
+    public TraversalOrder getTraversalOrder() {
+        return base.getTraversalOrder();
+    }
+
+    @Override
+    public Rect2i getAffectedArea() {
+        return base.getAffectedArea();
+    }
+
+    @Override
+    public Region3i getAffectedRegion() {
+        return region;
+    }
+
+    private static final class Scope {
+        private final String structure;
+        private final long startTime;
+        private final long startWrites;
+
+        Scope(String structure, long startTime, long startWrites) {
+            this.structure = structure;
+            this.startTime = startTime;
+            this.startWrites = startWrites;
+        }
+    }
+}
@@ -34,6 +34,33 @@ default void draw(BaseVector2i p) {
         draw(p.getX(), p.getY());
     }
 
+    /**
+     * Draws a horizontal span of columns. Implementations should override this to move
+     * per-row computations out of the inner loop.
+     * @param x0 the first x coordinate (inclusive)
+     * @param x1 the last x coordinate (inclusive)
+     * @param z the z coordinate
+     */
+    default void drawSpan(int x0, int x1, int z) {
+        for (int x = x0; x <= x1; x++) {
+            draw(x, z);
+        }
+    }
+
+    /**
+     * Draws the same span for a range of rows. Implementations can override this to
+     * write the blocks in the preferred {@link TraversalOrder} of their target.
+     * @param x0 the first x coordinate (inclusive)
+     * @param x1 the last x coordinate (inclusive)
+     * @param z0 the first z coordinate (inclusive)
+     * @param z1 the last z coordinate (inclusive)
+     */
+    default void drawSpans(int x0, int x1, int z0, int z1) {
+        for (int z = z0; z <= z1; z++) {
+            drawSpan(x0, x1, z);
+        }
+    }
+
     /**
      * @return the valid target area
      */
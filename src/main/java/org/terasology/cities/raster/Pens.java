@@ -17,6 +17,7 @@
 package org.terasology.cities.raster;
 
 import org.terasology.cities.BlockType;
+import org.terasology.cities.surface.RowHeightMap;
 import org.terasology.commonworld.heightmap.HeightMap;
 
 /**
@@ -38,7 +39,7 @@ private Pens() {
     public static Pen fill(RasterTarget target, int bottomHeight, int topHeight, BlockType type) {
         int bot = Math.max(target.getMinHeight(), bottomHeight);
         int top = Math.min(target.getMaxHeight(), topHeight - 1);  // top layer is exclusive
-        return new AbstractPen(target.getAffectedArea()) {
+        return sampled(target, new AbstractPen(target.getAffectedArea()) {
 
             @Override
             public void draw(int x, int z) {
@@ -46,7 +47,31 @@ public void draw(int x, int z) {
                     target.setBlock(x, y, z, type);
                 }
             }
-        };
+
+            @Override
+            public void drawSpan(int x0, int x1, int z) {
+                drawSpans(x0, x1, z, z);
+            }
+
+            @Override
+            public void drawSpans(int x0, int x1, int z0, int z1) {
+                if (target.getTraversalOrder() == TraversalOrder.LAYERS) {
+                    for (int y = bot; y <= top; y++) {
+                        for (int z = z0; z <= z1; z++) {
+                            for (int x = x0; x <= x1; x++) {
+                                target.setBlock(x, y, z, type);
+                            }
+                        }
+                    }
+                } else {
+                    for (int z = z0; z <= z1; z++) {
+                        for (int x = x0; x <= x1; x++) {
+                            draw(x, z);
+                        }
+                    }
+                }
+            }
+        });
     }
 
     /**
@@ -54,10 +79,10 @@ public void draw(int x, int z) {
      * @param hmBottom the bottom height map (inclusive)
      * @param hmTop the top height map (exclusive)
      * @param type the block type
-     * @return a new instance
+     * @return a new instance that reads the heights of a span or rectangle in one batch (not thread-safe)
      */
     public static Pen fill(RasterTarget target, HeightMap hmBottom, HeightMap hmTop, BlockType type) {
-        return new AbstractPen(target.getAffectedArea()) {
+        return sampled(target, new AbstractPen(target.getAffectedArea()) {
 
             @Override
             public void draw(int x, int z) {
@@ -67,7 +92,70 @@ public void draw(int x, int z) {
                     target.setBlock(x, y, z, type);
                 }
             }
-        };
+
+            private int[] row = new int[0];
+            private int[] bottoms = new int[0];
+            private int[] tops = new int[0];
+
+            @Override
+            public void drawSpan(int x0, int x1, int z) {
+                drawSpans(x0, x1, z, z);
+            }
+
+            @Override
+            public void drawSpans(int x0, int x1, int z0, int z1) {
+                int width = x1 - x0 + 1;
+                int count = width * (z1 - z0 + 1);
+                if (bottoms.length < count) {
+                    bottoms = new int[count];
+                    tops = new int[count];
+                }
+                if (row.length < width) {
+                    row = new int[width];
+                }
+
+                for (int z = z0; z <= z1; z++) {
+                    int offset = (z - z0) * width;
+                    RowHeightMap.readRow(hmBottom, x0, x1, z, row);
+                    System.arraycopy(row, 0, bottoms, offset, width);
+                    RowHeightMap.readRow(hmTop, x0, x1, z, row);
+                    System.arraycopy(row, 0, tops, offset, width);
+                }
+
+                int minHeight = target.getMinHeight();
+                int maxHeight = target.getMaxHeight();
+                int lowest = Integer.MAX_VALUE;
+                int highest = Integer.MIN_VALUE;
+                for (int i = 0; i < count; i++) {
+                    bottoms[i] = Math.max(minHeight, bottoms[i]);
+                    tops[i] = Math.min(maxHeight, tops[i] - 1);  // top layer is exclusive
+                    lowest = Math.min(lowest, bottoms[i]);
+                    highest = Math.max(highest, tops[i]);
+                }
+
+                if (target.getTraversalOrder() == TraversalOrder.LAYERS) {
+                    for (int y = lowest; y <= highest; y++) {
+                        int i = 0;
+                        for (int z = z0; z <= z1; z++) {
+                            for (int x = x0; x <= x1; x++, i++) {
+                                if (y >= bottoms[i] && y <= tops[i]) {
+                                    target.setBlock(x, y, z, type);
+                                }
+                            }
+                        }
+                    }
+                } else {
+                    int i = 0;
+                    for (int z = z0; z <= z1; z++) {
+                        for (int x = x0; x <= x1; x++, i++) {
+                            for (int y = bottoms[i]; y <= tops[i]; y++) {
+                                target.setBlock(x, y, z, type);
+                            }
+                        }
+                    }
+                }
+            }
+        });
     }
 
     /**
@@ -77,7 +165,7 @@ public void draw(int x, int z) {
      * @return a new instance
      */
     public static Pen singleLayer(RasterTarget target, HeightMap hm, BlockType type) {
-        return new AbstractPen(target.getAffectedArea()) {
+        return sampled(target, new AbstractPen(target.getAffectedArea()) {
 
             @Override
             public void draw(int x, int z) {
@@ -86,6 +174,28 @@ public void draw(int x, int z) {
                     target.setBlock(x, y, z, type);
                 }
             }
-        };
+
+            @Override
+            public void drawSpan(int x0, int x1, int z) {
+                int minHeight = target.getMinHeight();
+                int maxHeight = target.getMaxHeight();
+                for (int x = x0; x <= x1; x++) {
+                    int y = hm.apply(x, z);
+                    if (y >= minHeight && y <= maxHeight) {
+                        target.setBlock(x, y, z, type);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @param target the target that the pen writes to
+     * @param pen the pen
+     * @return the pen itself or a {@link SampledPen} if the target samples only some of the columns
+     */
+    public static Pen sampled(RasterTarget target, Pen pen) {
+        int stride = target.getSampleStride();
+        return (stride > 1) ? new SampledPen(pen, stride) : pen;
     }
 }
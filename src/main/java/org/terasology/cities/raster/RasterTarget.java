@@ -77,6 +77,32 @@ default int getMinHeight() {
         return getAffectedRegion().minY();
     }
 
+    /**
+     * Coarse targets (maps, distant level-of-detail chunks) return false, so that
+     * windows, doors and decorations are neither generated nor rasterized for them.
+     * @return true if details should be rasterized
+     */
+    default boolean isDetailed() {
+        return true;
+    }
+
+    /**
+     * Coarse targets can ask the pens to draw only a subset of all columns: those with
+     * <code>floorMod(x, stride) == stride / 2</code> and <code>floorMod(z, stride) == stride / 2</code>.
+     * @return the distance between two sampled columns (1 means that all columns are drawn)
+     */
+    default int getSampleStride() {
+        return 1;
+    }
+
+    /**
+     * Pens that fill volumes use this to write blocks in the order of the underlying storage.
+     * @return the preferred order of writes
+     */
+    default TraversalOrder getTraversalOrder() {
+        return TraversalOrder.COLUMNS;
+    }
+
     /**
      * @return the XZ area that is drawn by this raster target
      */
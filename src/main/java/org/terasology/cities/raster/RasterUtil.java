@@ -19,13 +19,17 @@
 import org.terasology.math.TeraMath;
 import org.terasology.math.geom.LineSegment;
 import org.terasology.math.geom.Rect2i;
-import org.terasology.math.geom.Vector2f;
 
 /**
  * Converts model elements into blocks
  */
 public abstract class RasterUtil {
 
+    private static final int OUT_LEFT = 1;
+    private static final int OUT_RIGHT = 2;
+    private static final int OUT_BOTTOM = 4;
+    private static final int OUT_TOP = 8;
+
 //    /**
 //     * @param shape the shape to fill
 //     * @param hmBottom the bottom height map (inclusive)
@@ -68,8 +72,8 @@ public static void drawLineX(Pen pen, int x1, int x2, int z) {
         if (z >= rc.minY() && z <= rc.maxY()) {
             int minX = Math.max(x1, rc.minX());
             int maxX = Math.min(x2, rc.maxX());
-            for (int x = minX; x <= maxX; x++) {
-                pen.draw(x, z);
+            if (minX <= maxX) {
+                pen.drawSpan(minX, maxX, z);
             }
         }
     }
@@ -104,11 +108,7 @@ public static void fillRect(Pen pen, Rect2i rect) {
             return;
         }
 
-        for (int z = rc.minY(); z <= rc.maxY(); z++) {
-            for (int x = rc.minX(); x <= rc.maxX(); x++) {
-                pen.draw(x, z);
-            }
-        }
+        pen.drawSpans(rc.minX(), rc.maxX(), rc.minY(), rc.maxY());
     }
 
     /**
@@ -134,22 +134,92 @@ public static void drawRect(Pen pen, Rect2i rc) {
      * @param line the line to draw
      */
     public static void drawLine(Pen pen, LineSegment line) {
+        Rect2i rc = pen.getTargetArea();
+        float x0 = line.getStart().getX();
+        float z0 = line.getStart().getY();
+
+        // Cohen-Sutherland clipping against the target area (the blocks cover [min..max + 1]) without temporary objects.
+        // It uses the same steps as LineSegment.getClipped() so that the rounded endpoints do not change.
+        float minX = rc.minX();
+        float minZ = rc.minY();
+        float maxX = rc.maxX() + 1;
+        float maxZ = rc.maxY() + 1;
+        float x1 = line.getEnd().getX();
+        float z1 = line.getEnd().getY();
+
+        int code0 = outCode(x0, z0, minX, minZ, maxX, maxZ);
+        int code1 = outCode(x1, z1, minX, minZ, maxX, maxZ);
+        while ((code0 | code1) != 0) {
+            if ((code0 & code1) != 0) {
+                return;
+            }
+
+            int code = (code0 != 0) ? code0 : code1;
+            float x;
+            float z;
+            if ((code & OUT_TOP) != 0) {
+                x = x0 + (x1 - x0) * (maxZ - z0) / (z1 - z0);
+                z = maxZ;
+            } else if ((code & OUT_BOTTOM) != 0) {
+                x = x0 + (x1 - x0) * (minZ - z0) / (z1 - z0);
+                z = minZ;
+            } else if ((code & OUT_RIGHT) != 0) {
+                z = z0 + (z1 - z0) * (maxX - x0) / (x1 - x0);
+                x = maxX;
+            } else {
+                z = z0 + (z1 - z0) * (minX - x0) / (x1 - x0);
+                x = minX;
+            }
+
+            if (code == code0) {
+                x0 = x;
+                z0 = z;
+                code0 = outCode(x0, z0, minX, minZ, maxX, maxZ);
+            } else {
+                x1 = x;
+                z1 = z;
+                code1 = outCode(x1, z1, minX, minZ, maxX, maxZ);
+            }
+        }
 
-        Rect2i outerBox = pen.getTargetArea();
+        drawLine(pen, TeraMath.floorToInt(x0), TeraMath.floorToInt(z0), TeraMath.floorToInt(x1), TeraMath.floorToInt(z1));
+    }
 
-        Vector2f p0 = new Vector2f();
-        Vector2f p1 = new Vector2f();
-        if (line.getClipped(outerBox, p0, p1)) {
-            int cx1 = TeraMath.floorToInt(p0.getX());
-            int cy1 = TeraMath.floorToInt(p0.getY());
-            int cx2 = TeraMath.floorToInt(p1.getX());
-            int cy2 = TeraMath.floorToInt(p1.getY());
-            drawClippedLine(pen, cx1, cy1, cx2, cy2);
+    private static int outCode(float x, float z, float minX, float minZ, float maxX, float maxZ) {
+        int code = 0;
+        if (x < minX) {
+            code |= OUT_LEFT;
+        } else if (x > maxX) {
+            code |= OUT_RIGHT;
+        }
+        if (z < minZ) {
+            code |= OUT_BOTTOM;
+        } else if (z > maxZ) {
+            code |= OUT_TOP;
         }
+        return code;
     }
 
+    /**
+     * Draws a line between two points. Points outside the target area are skipped without calling
+     * the pen. Since the line is monotonic in x and z, drawing stops as soon as it leaves the area.
+     * Nothing is allocated.
+     * @param pen the pen to use
+     * @param x1 the start x
+     * @param z1 the start z
+     * @param x2 the end x
+     * @param z2 the end z
+     */
+    public static void drawLine(Pen pen, int x1, int z1, int x2, int z2) {
+        Rect2i rc = pen.getTargetArea();
+        int minX = rc.minX();
+        int maxX = rc.maxX();
+        int minZ = rc.minY();
+        int maxZ = rc.maxY();
 
-    private static void drawClippedLine(Pen pen, int x1, int z1, int x2, int z2) {
+        if (Math.max(x1, x2) < minX || Math.min(x1, x2) > maxX || Math.max(z1, z2) < minZ || Math.min(z1, z2) > maxZ) {
+            return;
+        }
 
         int dx = Math.abs(x2 - x1);
         int dy = Math.abs(z2 - z1);
@@ -161,9 +231,15 @@ private static void drawClippedLine(Pen pen, int x1, int z1, int x2, int z2) {
 
         int x = x1;
         int z = z1;
+        boolean entered = false;
 
         while (true) {
-            pen.draw(x, z);
+            if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+                pen.draw(x, z);
+                entered = true;
+            } else if (entered) {
+                break;  // the line cannot re-enter the area
+            }
 
             if (x == x2 && z == z2) {
                 break;
@@ -186,26 +262,46 @@ private static void drawClippedLine(Pen pen, int x1, int z1, int x2, int z2) {
 
     /**
      * Draws a circle based on Horn's algorithm (see B. K. P. Horn: Circle Generators for Display Devices.
-     * Computer Graphics and Image Processing 5, 2 - June 1976)
+     * Computer Graphics and Image Processing 5, 2 - June 1976). Circles outside the target area are skipped
+     * and points are only checked against the area if the circle is not fully inside.
      * @param cx the center x
      * @param cy the center y
      * @param rad the radius
-     * @param checkedPen the receiving instance. Must be checked, because iterator could draw outside.
+     * @param pen the receiving instance
      */
-    public static void drawCircle(CheckedPen checkedPen, int cx, int cy, int rad) {
+    public static void drawCircle(Pen pen, int cx, int cy, int rad) {
+        Rect2i rc = pen.getTargetArea();
+        if (cx + rad < rc.minX() || cx - rad > rc.maxX() || cy + rad < rc.minY() || cy - rad > rc.maxY()) {
+            return;
+        }
+
+        boolean inside = cx - rad >= rc.minX() && cx + rad <= rc.maxX() && cy - rad >= rc.minY() && cy + rad <= rc.maxY();
+
         int d = -rad;
         int x = rad;
         int y = 0;
         while (y <= x) {
-            checkedPen.draw(cx + x, cy + y);
-            checkedPen.draw(cx - x, cy + y);
-            checkedPen.draw(cx - x, cy - y);
-            checkedPen.draw(cx + x, cy - y);
+            if (inside) {
+                pen.draw(cx + x, cy + y);
+                pen.draw(cx - x, cy + y);
+                pen.draw(cx - x, cy - y);
+                pen.draw(cx + x, cy - y);
 
-            checkedPen.draw(cx + y, cy + x);
-            checkedPen.draw(cx - y, cy + x);
-            checkedPen.draw(cx - y, cy - x);
-            checkedPen.draw(cx + y, cy - x);
+                pen.draw(cx + y, cy + x);
+                pen.draw(cx - y, cy + x);
+                pen.draw(cx - y, cy - x);
+                pen.draw(cx + y, cy - x);
+            } else {
+                drawClipped(pen, rc, cx + x, cy + y);
+                drawClipped(pen, rc, cx - x, cy + y);
+                drawClipped(pen, rc, cx - x, cy - y);
+                drawClipped(pen, rc, cx + x, cy - y);
+
+                drawClipped(pen, rc, cx + y, cy + x);
+                drawClipped(pen, rc, cx - y, cy + x);
+                drawClipped(pen, rc, cx - y, cy - x);
+                drawClipped(pen, rc, cx + y, cy - x);
+            }
 
             d = d + 2 * y + 1;
             y = y + 1;
@@ -216,20 +312,30 @@ public static void drawCircle(CheckedPen checkedPen, int cx, int cy, int rad) {
         }
     }
 
+    private static void drawClipped(Pen pen, Rect2i rc, int x, int z) {
+        if (x >= rc.minX() && x <= rc.maxX() && z >= rc.minY() && z <= rc.maxY()) {
+            pen.draw(x, z);
+        }
+    }
+
     /**
+     * Fills a circle row by row, using the precomputed spans of {@link CircleSpans}.
+     * The spans are clipped against the target area.
      * @param cx the center x
      * @param cy the center y
      * @param rad the radius
      * @param pen the pen to draw
      */
-    public static void fillCircle(CheckedPen pen, int cx, int cy, int rad) {
-        for (int y = 0; y <= rad; y++) {
-            for (int x = 0; x * x + y * y <= (rad + 0.5) * (rad + 0.5); x++) {
-                pen.draw(cx + x, cy + y);
-                pen.draw(cx - x, cy + y);
-                pen.draw(cx - x, cy - y);
-                pen.draw(cx + x, cy - y);
-            }
-        }
+    public static void fillCircle(Pen pen, int cx, int cy, int rad) {
+        CircleSpans.fillDisc(pen, cx, cy, rad);
+    }
+
+    /**
+     * @param v the first x or z coordinate
+     * @param stride the distance between two sampled columns (see {@link RasterTarget#getSampleStride()})
+     * @return the smallest sampled coordinate that is not smaller than <code>v</code>
+     */
+    public static int firstSample(int v, int stride) {
+        return v + Math.floorMod(stride / 2 - v, stride);
     }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+/**
+ * Converts a set of model elements into blocks of a {@link RasterTarget}.
+ * Implementations must only write inside the target's affected region
+ * and must be safe to use from several threads with different targets.
+ */
+@FunctionalInterface
+public interface Rasterizer {
+
+    /**
+     * @param target the target to write to
+     */
+    void raster(RasterTarget target);
+}
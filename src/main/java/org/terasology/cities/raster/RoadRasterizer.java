@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.roads.Road;
+import org.terasology.cities.roads.RoadCoverage;
+import org.terasology.cities.roads.RoadNetwork;
+import org.terasology.cities.roads.RoadSegment;
+import org.terasology.cities.surface.RoadGrading;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+
+/**
+ * Rasterizes roads of arbitrary width in a single pass over the columns of the target area.
+ * A column belongs to a road if its distance to the nearest road segment is at most half the road width.
+ * The union of these capsules produces smooth joins at the road vertices.
+ * <br><br>
+ * Only segments that are listed in the road's {@link RoadCoverage} for the cells of the target area are considered,
+ * so long roads do not need to be tested segment by segment. To keep the per-column cost low, the target area
+ * is divided into a grid of small cells and only the segments that can reach a cell are tested for its columns.
+ * <br><br>
+ * If a {@link RoadGrading} is given, the road surface height is graded once per target area.
+ */
+public class RoadRasterizer implements Rasterizer {
+
+    private static final int CELL_SIZE = 8;
+
+    private final RoadNetwork network;
+    private final HeightMap terrainHeightMap;
+    private final HeightMap heightMap;
+    private final RoadGrading grading;
+    private final int fillDepth;
+
+    /**
+     * @param network the road network
+     * @param heightMap the height of the road surface
+     * @param fillDepth the number of fill blocks below the road surface
+     */
+    public RoadRasterizer(RoadNetwork network, HeightMap heightMap, int fillDepth) {
+        this(network, heightMap, heightMap, fillDepth);
+    }
+
+    /**
+     * If the road surface is above the terrain, the space in between is filled (embankment).
+     * If it is below the terrain, the blocks above the road are cleared (cutting).
+     * @param network the road network
+     * @param terrainHeightMap the terrain height
+     * @param heightMap the height of the road surface (e.g. graded)
+     * @param fillDepth the minimum number of fill blocks below the road surface
+     */
+    public RoadRasterizer(RoadNetwork network, HeightMap terrainHeightMap, HeightMap heightMap, int fillDepth) {
+        this.network = network;
+        this.terrainHeightMap = terrainHeightMap;
+        this.heightMap = heightMap;
+        this.grading = null;
+        this.fillDepth = fillDepth;
+    }
+
+    /**
+     * Grades the road surface per target area and fills embankments or clears cuttings like
+     * {@link #RoadRasterizer(RoadNetwork, HeightMap, HeightMap, int)}.
+     * @param grading the grading of the road network
+     * @param terrainHeightMap the terrain height
+     * @param fillDepth the minimum number of fill blocks below the road surface
+     */
+    public RoadRasterizer(RoadGrading grading, HeightMap terrainHeightMap, int fillDepth) {
+        this.network = grading.getNetwork();
+        this.terrainHeightMap = terrainHeightMap;
+        this.heightMap = null;
+        this.grading = grading;
+        this.fillDepth = fillDepth;
+    }
+
+    @Override
+    public void raster(RasterTarget target) {
+        Rect2i area = target.getAffectedArea();
+        List<Road> roads = network.getRoads(area);
+        if (roads.isEmpty()) {
+            return;
+        }
+
+        int cellSize = network.getCellSize();
+        int minCx = Math.floorDiv(area.minX(), cellSize);
+        int minCz = Math.floorDiv(area.minY(), cellSize);
+        int maxCx = Math.floorDiv(area.maxX(), cellSize);
+        int maxCz = Math.floorDiv(area.maxY(), cellSize);
+
+        Segments segs = new Segments();
+        BitSet added = new BitSet();
+        for (Road road : roads) {
+            float halfWidth = road.getWidth() * 0.5f;
+            List<RoadSegment> roadSegs = road.getSegments();
+            RoadCoverage coverage = network.getCoverage(road);
+            added.clear();
+            for (int cz = minCz; cz <= maxCz; cz++) {
+                for (int cx = minCx; cx <= maxCx; cx++) {
+                    coverage.forEachSegment(cx, cz, idx -> {
+                        if (!added.get(idx)) {
+                            added.set(idx);
+                            RoadSegment seg = roadSegs.get(idx);
+                            segs.add(seg.getStart(), seg.getEnd(), halfWidth, area);
+                        }
+                    });
+                }
+            }
+        }
+
+        if (segs.count == 0) {
+            return;
+        }
+
+        int cellsX = (area.width() + CELL_SIZE - 1) / CELL_SIZE;
+        int cellsZ = (area.height() + CELL_SIZE - 1) / CELL_SIZE;
+        int[][] grid = segs.buildGrid(area, cellsX, cellsZ);
+        int stride = target.getSampleStride();
+        HeightMap surfaceHeightMap = (grading != null) ? grading.createHeightMap(area) : heightMap;
+
+        for (int cz = 0; cz < cellsZ; cz++) {
+            for (int cx = 0; cx < cellsX; cx++) {
+                int[] cellSegs = grid[cz * cellsX + cx];
+                if (cellSegs.length == 0) {
+                    continue;
+                }
+
+                int minX = area.minX() + cx * CELL_SIZE;
+                int minZ = area.minY() + cz * CELL_SIZE;
+                int maxX = Math.min(minX + CELL_SIZE - 1, area.maxX());
+                int maxZ = Math.min(minZ + CELL_SIZE - 1, area.maxY());
+                for (int z = RasterUtil.firstSample(minZ, stride); z <= maxZ; z += stride) {
+                    for (int x = RasterUtil.firstSample(minX, stride); x <= maxX; x += stride) {
+                        if (segs.covers(cellSegs, x, z)) {
+                            drawColumn(target, surfaceHeightMap, x, z);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void drawColumn(RasterTarget target, HeightMap surfaceHeightMap, int x, int z) {
+        int surface = surfaceHeightMap.apply(x, z);
+        int terrain = (terrainHeightMap == surfaceHeightMap) ? surface : terrainHeightMap.apply(x, z);
+        int bot = Math.max(target.getMinHeight(), Math.min(terrain, surface - fillDepth));
+        int top = Math.min(target.getMaxHeight(), surface - 1);
+
+        for (int y = bot; y <= top; y++) {
+            target.setBlock(x, y, z, DefaultBlockType.ROAD_FILL);
+        }
+
+        if (surface >= target.getMinHeight() && surface <= target.getMaxHeight()) {
+            target.setBlock(x, surface, z, DefaultBlockType.ROAD_SURFACE);
+        }
+
+        // clear the cutting above the road
+        int clearTop = Math.min(target.getMaxHeight(), terrain);
+        for (int y = Math.max(target.getMinHeight(), surface + 1); y <= clearTop; y++) {
+            target.setBlock(x, y, z, DefaultBlockType.AIR);
+        }
+    }
+
+    /**
+     * The segments relevant for one target area in primitive arrays.
+     */
+    private static final class Segments {
+        private float[] data = new float[16 * 6];    // x0, z0, dx, dz, 1 / len^2, halfWidth^2
+        private int[] bounds = new int[16 * 4];      // minX, minZ, maxX, maxZ (incl. half width)
+        private int count;
+
+        void add(ImmutableVector2i p0, ImmutableVector2i p1, float halfWidth, Rect2i area) {
+            int reach = (int) Math.ceil(halfWidth);
+            int minX = Math.min(p0.getX(), p1.getX()) - reach;
+            int minZ = Math.min(p0.getY(), p1.getY()) - reach;
+            int maxX = Math.max(p0.getX(), p1.getX()) + reach;
+            int maxZ = Math.max(p0.getY(), p1.getY()) + reach;
+
+            if (maxX < area.minX() || minX > area.maxX() || maxZ < area.minY() || minZ > area.maxY()) {
+                return;
+            }
+
+            if (count * 6 == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+
+            float dx = p1.getX() - p0.getX();
+            float dz = p1.getY() - p0.getY();
+            float lenSq = dx * dx + dz * dz;
+
+            int i = count * 6;
+            data[i + 0] = p0.getX();
+            data[i + 1] = p0.getY();
+            data[i + 2] = dx;
+            data[i + 3] = dz;
+            data[i + 4] = (lenSq > 0) ? 1f / lenSq : 0f;
+            data[i + 5] = halfWidth * halfWidth;
+
+            int j = count * 4;
+            bounds[j + 0] = minX;
+            bounds[j + 1] = minZ;
+            bounds[j + 2] = maxX;
+            bounds[j + 3] = maxZ;
+            count++;
+        }
+
+        int[][] buildGrid(Rect2i area, int cellsX, int cellsZ) {
+            int[] sizes = new int[cellsX * cellsZ];
+            forEachCell(area, cellsX, cellsZ, (cell, seg) -> sizes[cell]++);
+
+            int[][] grid = new int[sizes.length][];
+            for (int i = 0; i < sizes.length; i++) {
+                grid[i] = new int[sizes[i]];
+            }
+
+            int[] fill = new int[sizes.length];
+            forEachCell(area, cellsX, cellsZ, (cell, seg) -> grid[cell][fill[cell]++] = seg);
+            return grid;
+        }
+
+        boolean covers(int[] segs, int x, int z) {
+            for (int seg : segs) {
+                int i = seg * 6;
+                float px = x - data[i + 0];
+                float pz = z - data[i + 1];
+                float dx = data[i + 2];
+                float dz = data[i + 3];
+
+                // projection onto the segment, clamped to [0..1]
+                float t = (px * dx + pz * dz) * data[i + 4];
+                t = Math.max(0f, Math.min(1f, t));
+
+                float ex = px - t * dx;
+                float ez = pz - t * dz;
+                if (ex * ex + ez * ez <= data[i + 5]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void forEachCell(Rect2i area, int cellsX, int cellsZ, CellConsumer consumer) {
+            for (int seg = 0; seg < count; seg++) {
+                int j = seg * 4;
+                int minCx = Math.max(0, (bounds[j + 0] - area.minX()) / CELL_SIZE);
+                int minCz = Math.max(0, (bounds[j + 1] - area.minY()) / CELL_SIZE);
+                int maxCx = Math.min(cellsX - 1, (bounds[j + 2] - area.minX()) / CELL_SIZE);
+                int maxCz = Math.min(cellsZ - 1, (bounds[j + 3] - area.minY()) / CELL_SIZE);
+                for (int cz = minCz; cz <= maxCz; cz++) {
+                    for (int cx = minCx; cx <= maxCx; cx++) {
+                        consumer.accept(cz * cellsX + cx, seg);
+                    }
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface CellConsumer {
+        void accept(int cell, int seg);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.function.UnaryOperator;
+
+import org.terasology.cities.BlockType;
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.model.roof.DomeRoof;
+import org.terasology.cities.model.roof.FlatRoof;
+import org.terasology.cities.model.roof.HipRoof;
+import org.terasology.cities.model.roof.PentRoof;
+import org.terasology.cities.model.roof.RectangularRoof;
+import org.terasology.cities.model.roof.SaddleRoof;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.Rect2i;
+
+/**
+ * Rasterizes {@link RectangularRoof}s as a solid volume between the roof base and the roof surface.
+ * The surface height of a column is computed from its distance to the edges of the roof area.
+ * Flat roofs are a single layer with a border of {@link FlatRoof#getBorderHeight(int, int)} blocks.
+ */
+public class RoofRasterizer {
+
+    /**
+     * @param target the target to write to
+     * @param roof the roof
+     */
+    public void raster(RasterTarget target, RectangularRoof roof) {
+        raster(target, roof, UnaryOperator.identity());
+    }
+
+    /**
+     * @param target the target to write to
+     * @param roof the roof
+     * @param clip restricts the roof pens, e.g. to the roof's share of a {@link SpanUnion}
+     */
+    public void raster(RasterTarget target, RectangularRoof roof, UnaryOperator<Pen> clip) {
+        Rect2i area = roof.getArea();
+        if (!area.overlaps(target.getAffectedArea())) {
+            return;
+        }
+
+        Tracer.Span span = Tracer.begin("roof", roof.getClass().getSimpleName());
+        try {
+            int base = roof.getBaseHeight();
+            if (roof instanceof FlatRoof) {
+                raster(target, (FlatRoof) roof, clip);
+            } else if (roof instanceof HipRoof) {
+                HipRoof hipRoof = (HipRoof) roof;
+                int max = hipRoof.getMaxHeight();
+                double pitch = hipRoof.getPitch();
+                fill(target, clip, area, base, DefaultBlockType.ROOF_HIP, (x, z) -> {
+                    int dist = Math.min(Math.min(x - area.minX(), area.maxX() - x), Math.min(z - area.minY(), area.maxY() - z));
+                    return Math.min(max, base + (int) (dist * pitch)) + 1;
+                });
+            } else if (roof instanceof SaddleRoof) {
+                SaddleRoof saddleRoof = (SaddleRoof) roof;
+                double pitch = saddleRoof.getPitch();
+                // the ridge runs along the orientation
+                boolean ridgeAlongZ = saddleRoof.getOrientation().getDir().getX() == 0;
+                fill(target, clip, area, base, DefaultBlockType.ROOF_SADDLE, (x, z) -> {
+                    int dist = ridgeAlongZ
+                            ? Math.min(x - area.minX(), area.maxX() - x)
+                            : Math.min(z - area.minY(), area.maxY() - z);
+                    return base + (int) (dist * pitch) + 1;
+                });
+            } else if (roof instanceof PentRoof) {
+                PentRoof pentRoof = (PentRoof) roof;
+                double pitch = pentRoof.getPitch();
+                Orientation top = pentRoof.getOrientation();
+                fill(target, clip, area, base, DefaultBlockType.ROOF_HIP, (x, z) -> {
+                    // distance from the low edge, i.e. the edge opposite to the top edge
+                    int dist = 0;
+                    dist += (top.getDir().getX() > 0) ? x - area.minX() : (top.getDir().getX() < 0) ? area.maxX() - x : 0;
+                    dist += (top.getDir().getY() > 0) ? z - area.minY() : (top.getDir().getY() < 0) ? area.maxY() - z : 0;
+                    return base + (int) (dist * pitch) + 1;
+                });
+            } else if (roof instanceof DomeRoof) {
+                int height = ((DomeRoof) roof).getHeight();
+                float cx = (area.minX() + area.maxX()) * 0.5f;
+                float cz = (area.minY() + area.maxY()) * 0.5f;
+                float rx = area.width() * 0.5f;
+                float rz = area.height() * 0.5f;
+                fill(target, clip, area, base, DefaultBlockType.ROOF_DOME, (x, z) -> {
+                    float dx = (x - cx) / rx;
+                    float dz = (z - cz) / rz;
+                    float sq = 1 - dx * dx - dz * dz;
+                    return base + (sq > 0 ? (int) (height * Math.sqrt(sq)) : 0) + 1;
+                });
+            } else {
+                fill(target, clip, area, base, DefaultBlockType.ROOF_FLAT, (x, z) -> base + 1);
+            }
+        } finally {
+            span.close();
+        }
+    }
+
+    private void raster(RasterTarget target, FlatRoof roof, UnaryOperator<Pen> clip) {
+        Rect2i area = roof.getArea();
+        int base = roof.getBaseHeight();
+
+        Pen pen = Pens.fill(target, base, base + 1, DefaultBlockType.ROOF_FLAT);
+        RasterUtil.fillRect(clip.apply(pen), area);
+
+        HeightMap border = new Surface((x, z) -> base + 1 + roof.getBorderHeight(x - area.minX(), z - area.minY()));
+        Pen borderPen = Pens.fill(target, HeightMaps.constant(base + 1), border, DefaultBlockType.ROOF_FLAT);
+        RasterUtil.drawRect(clip.apply(borderPen), area);
+    }
+
+    private static void fill(RasterTarget target, UnaryOperator<Pen> clip, Rect2i area, int base, BlockType type, SurfaceFunction top) {
+        Pen pen = Pens.fill(target, HeightMaps.constant(base), new Surface(top), type);
+        RasterUtil.fillRect(clip.apply(pen), area);
+    }
+
+    /**
+     * @return the exclusive top height of the roof at the given column
+     */
+    @FunctionalInterface
+    private interface SurfaceFunction {
+        int apply(int x, int z);
+    }
+
+    /**
+     * Adapts a {@link SurfaceFunction} to the {@link HeightMap} interface.
+     */
+    private static final class Surface implements HeightMap {
+
+        private final SurfaceFunction function;
+
+        Surface(SurfaceFunction function) {
+            this.function = function;
+        }
+
+        @Override
+        public int apply(BaseVector2i pos) {
+            return apply(pos.getX(), pos.getY());
+        }
+
+        @Override
+        public int apply(int x, int z) {
+            return function.apply(x, z);
+        }
+    }
+}
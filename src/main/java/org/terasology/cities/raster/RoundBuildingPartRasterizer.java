@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.function.UnaryOperator;
+
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.bldg.RoundBuildingPart;
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.model.roof.ConicRoof;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.TeraMath;
+import org.terasology.math.geom.Circle;
+
+/**
+ * Rasterizes {@link RoundBuildingPart}s (floor and a one block thick wall) and {@link ConicRoof}s
+ * as horizontal spans from {@link CircleSpans}.
+ */
+public class RoundBuildingPartRasterizer {
+
+    /**
+     * @param target the target to write to
+     * @param part the building part
+     * @param terrainHeightMap the terrain height
+     */
+    public void raster(RasterTarget target, RoundBuildingPart part, HeightMap terrainHeightMap) {
+        raster(target, part, terrainHeightMap, UnaryOperator.identity());
+    }
+
+    /**
+     * @param target the target to write to
+     * @param part the building part
+     * @param terrainHeightMap the terrain height
+     * @param clip restricts the floor, wall and roof pens, e.g. to the part's share of a {@link SpanUnion}
+     */
+    public void raster(RasterTarget target, RoundBuildingPart part, HeightMap terrainHeightMap, UnaryOperator<Pen> clip) {
+        Tracer.Span span = Tracer.begin("part", "RoundBuildingPart");
+        try {
+            Circle circle = part.getShape();
+            int cx = TeraMath.floorToInt(circle.getCenter().getX());
+            int cz = TeraMath.floorToInt(circle.getCenter().getY());
+            int rad = TeraMath.floorToInt(circle.getRadius());
+
+            Pen floorPen = clip.apply(BuildingPens.floorPen(target, terrainHeightMap, part.getBaseHeight(), DefaultBlockType.BUILDING_FLOOR));
+            CircleSpans.fillDisc(floorPen, cx, cz, rad);
+
+            Pen wallPen = clip.apply(Pens.fill(target, part.getBaseHeight(), part.getTopHeight(), DefaultBlockType.BUILDING_WALL));
+            CircleSpans.drawRing(wallPen, cx, cz, rad, 1);
+
+            if (part.getRoof() instanceof ConicRoof) {
+                raster(target, (ConicRoof) part.getRoof(), clip);
+            }
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * The roof is a stack of rings. Every ring is one block narrower than the one below
+     * and <code>pitch</code> blocks high.
+     * @param target the target to write to
+     * @param roof the roof
+     */
+    public void raster(RasterTarget target, ConicRoof roof) {
+        raster(target, roof, UnaryOperator.identity());
+    }
+
+    /**
+     * @param target the target to write to
+     * @param roof the roof
+     * @param clip restricts the roof pens, e.g. to the roof's share of a {@link SpanUnion}
+     */
+    public void raster(RasterTarget target, ConicRoof roof, UnaryOperator<Pen> clip) {
+        Tracer.Span span = Tracer.begin("roof", "ConicRoof");
+        try {
+            Circle circle = roof.getArea();
+            int cx = TeraMath.floorToInt(circle.getCenter().getX());
+            int cz = TeraMath.floorToInt(circle.getCenter().getY());
+            int rad = TeraMath.floorToInt(circle.getRadius());
+            int pitch = Math.max(1, roof.getPitch());
+
+            for (int r = rad; r >= 0; r--) {
+                int bottom = roof.getBaseHeight() + (rad - r) * pitch;
+                if (bottom > target.getMaxHeight()) {
+                    break;
+                }
+                Pen pen = Pens.fill(target, bottom, bottom + pitch, DefaultBlockType.ROOF_HIP);
+                CircleSpans.drawRing(clip.apply(pen), cx, cz, r, 1);
+            }
+        } finally {
+            span.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link Pen} that forwards only the sampled columns of a coarse target to the delegate
+ * (see {@link RasterTarget#getSampleStride()}). All other columns are skipped without being visited.
+ */
+public class SampledPen implements Pen {
+
+    private final Pen pen;
+    private final int stride;
+    private final int phase;
+
+    /**
+     * @param pen the underlying instance
+     * @param stride the distance between two sampled columns
+     */
+    public SampledPen(Pen pen, int stride) {
+        Preconditions.checkArgument(stride > 0, "stride must be positive");
+
+        this.pen = pen;
+        this.stride = stride;
+        this.phase = stride / 2;
+    }
+
+    @Override
+    public void draw(int x, int z) {
+        if (isSampled(x) && isSampled(z)) {
+            pen.draw(x, z);
+        }
+    }
+
+    @Override
+    public void drawSpan(int x0, int x1, int z) {
+        if (isSampled(z)) {
+            for (int x = firstSample(x0); x <= x1; x += stride) {
+                pen.draw(x, z);
+            }
+        }
+    }
+
+    @Override
+    public void drawSpans(int x0, int x1, int z0, int z1) {
+        for (int z = firstSample(z0); z <= z1; z += stride) {
+            for (int x = firstSample(x0); x <= x1; x += stride) {
+                pen.draw(x, z);
+            }
+        }
+    }
+
+    @Override
+    public Rect2i getTargetArea() {
+        return pen.getTargetArea();
+    }
+
+    private boolean isSampled(int v) {
+        return Math.floorMod(v, stride) == phase;
+    }
+
+    private int firstSample(int v) {
+        return RasterUtil.firstSample(v, stride);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.terasology.cities.bldg.Building;
+import org.terasology.cities.bldg.gen.BuildingGeneratorRegistry;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.sectors.SectorPlan;
+import org.terasology.cities.sectors.SectorPlanner;
+import org.terasology.cities.surface.InfiniteSurfaceHeightFacet;
+import org.terasology.cities.surface.RoadGrading;
+import org.terasology.cities.walls.TownWall;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.world.chunks.ChunkConstants;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Rasterizes the roads, buildings and town walls of all sectors that overlap the target area.
+ * The roads are graded along the terrain. The plans are provided by a {@link SectorPlanner}. The buildings on the parcels of a plan are
+ * generated through a {@link BuildingGeneratorRegistry}. The rasterizers of a plan are created once
+ * and are dropped together with the plan when it is evicted from the planner's cache.
+ * Metered targets report the cost of every road network, building and town wall separately.
+ */
+public class SectorRasterizer implements Rasterizer {
+
+    private static final int ROAD_FILL_DEPTH = 2;
+    private static final int ROAD_BLEND_DISTANCE = 4;
+    private static final int ROAD_SAMPLE_RADIUS = 2;
+
+    private final SectorPlanner planner;
+    private final BuildingGeneratorRegistry registry;
+    private final HeightMap heightMap;
+    private final InfiniteSurfaceHeightFacet surface;
+
+    // weak keys compare by identity, which is fine as long as the planner caches the plans
+    private final LoadingCache<SectorPlan, List<Rasterizer>> rasterizers = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(this::createRasterizers));
+
+    /**
+     * @param planner the planner that provides the sector plans
+     * @param registry the generators for the buildings on the parcels
+     * @param heightMap the terrain height
+     */
+    public SectorRasterizer(SectorPlanner planner, BuildingGeneratorRegistry registry, HeightMap heightMap) {
+        this.planner = planner;
+        this.registry = registry;
+        this.heightMap = heightMap;
+        this.surface = heightMap::apply;
+    }
+
+    @Override
+    public void raster(RasterTarget target) {
+        for (SectorPlan plan : planner.getPlans(target.getAffectedArea())) {
+            for (Rasterizer rasterizer : rasterizers.getUnchecked(plan)) {
+                MeteredRasterTarget.rasterStructure(target, rasterizer);
+            }
+        }
+    }
+
+    private List<Rasterizer> createRasterizers(SectorPlan plan) {
+        List<Rasterizer> list = new ArrayList<>();
+        RoadGrading grading = new RoadGrading(plan.getRoads(), surface, ROAD_BLEND_DISTANCE, ROAD_SAMPLE_RADIUS);
+        list.add(new RoadRasterizer(grading, heightMap, ROAD_FILL_DEPTH));
+
+        List<Building> buildings = new ArrayList<>();
+        for (Parcel parcel : plan.getParcels()) {
+            Building building = registry.generate(parcel, heightMap);
+            if (building != null) {
+                buildings.add(building);
+            }
+        }
+        list.add(new BuildingRasterizer(buildings, heightMap));
+
+        for (TownWall wall : plan.getWalls()) {
+            list.add(new TownWallRasterizer(wall, heightMap, ChunkConstants.SIZE_X));
+        }
+        return list;
+    }
+}
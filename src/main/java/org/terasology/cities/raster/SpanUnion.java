@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.terasology.cities.bldg.BuildingPart;
+import org.terasology.math.TeraMath;
+import org.terasology.math.geom.Circle;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Shape;
+
+/**
+ * Merges overlapping footprints into disjoint horizontal spans. Every span carries the id of the
+ * footprint that claimed it first, i.e. footprints that are added earlier have priority.
+ * Rasterizing the resulting spans writes every column exactly once.
+ */
+public class SpanUnion {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<Integer, int[]> rows = new TreeMap<>();  // z -> x0, x1, id (sorted, disjoint)
+
+    /**
+     * Receives disjoint spans.
+     */
+    @FunctionalInterface
+    public interface SpanVisitor {
+
+        /**
+         * @param z the row
+         * @param x0 the first column (inclusive)
+         * @param x1 the last column (inclusive)
+         * @param id the id of the footprint
+         */
+        void visit(int z, int x0, int x1, int id);
+    }
+
+    /**
+     * Adds the parts of the span that are not yet covered.
+     * @param z the row
+     * @param x0 the first column (inclusive)
+     * @param x1 the last column (inclusive)
+     * @param id the id of the footprint
+     */
+    public void add(int z, int x0, int x1, int id) {
+        if (x0 > x1) {
+            return;
+        }
+
+        int[] row = rows.getOrDefault(z, EMPTY);
+        int[] next = new int[row.length + 3 * (row.length / 3 + 1)];
+        int count = 0;
+        int x = x0;
+        for (int i = 0; i < row.length; i += 3) {
+            // fill the gap before the existing span
+            if (x <= x1 && row[i] > x) {
+                int end = Math.min(x1, row[i] - 1);
+                count = put(next, count, x, end, id);
+                x = end + 1;
+            }
+            count = put(next, count, row[i], row[i + 1], row[i + 2]);
+            if (row[i + 1] >= x) {
+                x = row[i + 1] + 1;
+            }
+        }
+        if (x <= x1) {
+            count = put(next, count, x, x1, id);
+        }
+
+        rows.put(z, Arrays.copyOf(next, count));
+    }
+
+    /**
+     * @param rect the rectangle to add
+     * @param id the id of the footprint
+     */
+    public void add(Rect2i rect, int id) {
+        for (int z = rect.minY(); z <= rect.maxY(); z++) {
+            add(z, rect.minX(), rect.maxX(), id);
+        }
+    }
+
+    /**
+     * Adds a disc that covers the same columns as {@link CircleSpans#fillDisc}.
+     * @param cx the center x
+     * @param cz the center z
+     * @param rad the radius
+     * @param id the id of the footprint
+     */
+    public void addDisc(int cx, int cz, int rad, int id) {
+        for (int dz = -rad; dz <= rad; dz++) {
+            int half = CircleSpans.getHalfWidth(rad, dz);
+            add(cz + dz, cx - half, cx + half, id);
+        }
+    }
+
+    /**
+     * @param part a building part with a rectangular or circular shape
+     * @param id the id of the footprint
+     */
+    public void add(BuildingPart part, int id) {
+        add(part.getShape(), id);
+    }
+
+    /**
+     * @param shape a rectangle or a circle
+     * @param id the id of the footprint
+     */
+    public void add(Shape shape, int id) {
+        if (shape instanceof Rect2i) {
+            add((Rect2i) shape, id);
+        } else if (shape instanceof Circle) {
+            Circle circle = (Circle) shape;
+            int cx = TeraMath.floorToInt(circle.getCenter().getX());
+            int cz = TeraMath.floorToInt(circle.getCenter().getY());
+            addDisc(cx, cz, TeraMath.floorToInt(circle.getRadius()), id);
+        } else {
+            throw new IllegalArgumentException("Unsupported shape: " + shape);
+        }
+    }
+
+    /**
+     * @param x the column
+     * @param z the row
+     * @return the id of the footprint that covers the column or -1 if it is not covered
+     */
+    public int getId(int x, int z) {
+        int[] row = rows.getOrDefault(z, EMPTY);
+        for (int i = 0; i < row.length && row[i] <= x; i += 3) {
+            if (x <= row[i + 1]) {
+                return row[i + 2];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param pen the pen to restrict
+     * @param id the id of the footprint
+     * @return a pen that forwards only the columns that are claimed by the footprint with the given id
+     */
+    public Pen clip(Pen pen, int id) {
+        return new AbstractPen(pen.getTargetArea()) {
+
+            @Override
+            public void draw(int x, int z) {
+                if (getId(x, z) == id) {
+                    pen.draw(x, z);
+                }
+            }
+
+            @Override
+            public void drawSpan(int x0, int x1, int z) {
+                int[] row = rows.getOrDefault(z, EMPTY);
+                for (int i = 0; i < row.length && row[i] <= x1; i += 3) {
+                    if (row[i + 2] == id && row[i + 1] >= x0) {
+                        pen.drawSpan(Math.max(x0, row[i]), Math.min(x1, row[i + 1]), z);
+                    }
+                }
+            }
+
+            @Override
+            public void drawSpans(int x0, int x1, int z0, int z1) {
+                // rows that the footprint covers completely are passed on as one block, so the pen can choose the traversal order
+                int start = z0;
+                for (int z = z0; z <= z1; z++) {
+                    if (!covers(z, x0, x1, id)) {
+                        if (start < z) {
+                            pen.drawSpans(x0, x1, start, z - 1);
+                        }
+                        drawSpan(x0, x1, z);
+                        start = z + 1;
+                    }
+                }
+                if (start <= z1) {
+                    pen.drawSpans(x0, x1, start, z1);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return true if a single span of the footprint with the given id contains [x0..x1] in the given row
+     */
+    private boolean covers(int z, int x0, int x1, int id) {
+        int[] row = rows.getOrDefault(z, EMPTY);
+        for (int i = 0; i < row.length && row[i] <= x0; i += 3) {
+            if (row[i + 1] >= x1) {
+                return row[i + 2] == id;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits all spans, sorted by row and then by column.
+     * @param visitor the visitor
+     */
+    public void forEach(SpanVisitor visitor) {
+        for (Map.Entry<Integer, int[]> entry : rows.entrySet()) {
+            int z = entry.getKey();
+            int[] row = entry.getValue();
+            for (int i = 0; i < row.length; i += 3) {
+                visitor.visit(z, row[i], row[i + 1], row[i + 2]);
+            }
+        }
+    }
+
+    private static int put(int[] data, int count, int x0, int x1, int id) {
+        data[count] = x0;
+        data[count + 1] = x1;
+        data[count + 2] = id;
+        return count + 3;
+    }
+}
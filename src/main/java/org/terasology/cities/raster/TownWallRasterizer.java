@@ -0,0 +1,284 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.bldg.BuildingPart;
+import org.terasology.cities.bldg.Tower;
+import org.terasology.cities.surface.RowHeightMap;
+import org.terasology.cities.walls.GateWallSegment;
+import org.terasology.cities.walls.SolidWallSegment;
+import org.terasology.cities.walls.TownWall;
+import org.terasology.cities.walls.WallSegment;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.TeraMath;
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Rasterizes the wall segments of a {@link TownWall}. The footprint of every segment (an oriented
+ * rectangle of the wall thickness) is converted into row spans once. The footprints are merged in a
+ * {@link SpanUnion}, so that overlapping segments are written only once. Tower footprints and gates
+ * are cut out of the solid walls and only the part of a gate above the passage is built.
+ * The spans are then sorted into cells, so that rasterizing a chunk only touches the spans of the cells it overlaps.
+ * <br><br>
+ * The walls follow the terrain, i.e. every span is filled relative to the height map.
+ * The towers are buildings and are rasterized by a {@link BuildingRasterizer} inside their footprints.
+ */
+public class TownWallRasterizer implements Rasterizer {
+
+    /**
+     * The height of the passage through a gate
+     */
+    public static final int GATE_PASSAGE_HEIGHT = 4;
+
+    private static final int SPAN_SIZE = 5;        // z, x0, x1, bottom offset, top offset
+
+    private final HeightMap heightMap;
+    private final int cellSize;
+    private final BuildingRasterizer towers;
+
+    private final Map<Long, int[]> cells = new HashMap<>();
+
+    /**
+     * @param townWall the town wall
+     * @param heightMap the terrain height
+     * @param cellSize the edge length of the cells that store the spans (e.g. the chunk size)
+     */
+    public TownWallRasterizer(TownWall townWall, HeightMap heightMap, int cellSize) {
+        Preconditions.checkArgument(cellSize > 0, "cellSize must be positive");
+
+        this.heightMap = heightMap;
+        this.cellSize = cellSize;
+        this.towers = new BuildingRasterizer(townWall.getTowers(), heightMap);
+
+        // towers and gates are added first, so that they take priority over the solid walls
+        SpanUnion union = new SpanUnion();
+        List<int[]> heights = new ArrayList<>();  // bottom and top offset per footprint id
+        for (Tower tower : townWall.getTowers()) {
+            for (BuildingPart part : tower.getParts()) {
+                union.add(part, heights.size());
+                heights.add(new int[] {0, 0});      // the towers are rasterized by the building rasterizer
+            }
+        }
+
+        for (WallSegment seg : townWall.getWalls()) {
+            if (seg instanceof GateWallSegment) {
+                int id = heights.size();
+                forEachRow(seg, (z, x0, x1) -> union.add(z, x0, x1, id));
+                heights.add(new int[] {GATE_PASSAGE_HEIGHT, ((GateWallSegment) seg).getWallHeight()});
+            }
+        }
+
+        for (WallSegment seg : townWall.getWalls()) {
+            if (seg instanceof SolidWallSegment) {
+                int id = heights.size();
+                forEachRow(seg, (z, x0, x1) -> union.add(z, x0, x1, id));
+                heights.add(new int[] {0, ((SolidWallSegment) seg).getWallHeight()});
+            }
+        }
+
+        Map<Long, SpanList> tmpCells = new HashMap<>();
+        union.forEach((z, x0, x1, id) -> {
+            int[] range = heights.get(id);
+            if (range[0] < range[1]) {
+                addSpan(tmpCells, z, x0, x1, range[0], range[1]);
+            }
+        });
+
+        for (Map.Entry<Long, SpanList> entry : tmpCells.entrySet()) {
+            cells.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    @Override
+    public void raster(RasterTarget target) {
+        Rect2i area = target.getAffectedArea();
+        Map<Long, Pen> pens = new HashMap<>();
+
+        for (int cz = Math.floorDiv(area.minY(), cellSize); cz <= Math.floorDiv(area.maxY(), cellSize); cz++) {
+            for (int cx = Math.floorDiv(area.minX(), cellSize); cx <= Math.floorDiv(area.maxX(), cellSize); cx++) {
+                int[] spans = cells.get(key(cx, cz));
+                if (spans == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < spans.length; i += SPAN_SIZE) {
+                    int z = spans[i];
+                    int x0 = Math.max(spans[i + 1], area.minX());
+                    int x1 = Math.min(spans[i + 2], area.maxX());
+                    if (z < area.minY() || z > area.maxY() || x0 > x1) {
+                        continue;
+                    }
+
+                    int bottom = spans[i + 3];
+                    int top = spans[i + 4];
+                    Pen pen = pens.computeIfAbsent(((long) bottom << 32) | (top & 0xFFFFFFFFL), k -> createPen(target, bottom, top));
+                    RasterUtil.drawLineX(pen, x0, x1, z);
+                }
+            }
+        }
+
+        towers.raster(target);
+    }
+
+    private Pen createPen(RasterTarget target, int bottom, int top) {
+        HeightMap hmBottom = new OffsetHeightMap(heightMap, bottom);
+        HeightMap hmTop = new OffsetHeightMap(heightMap, top);
+        return Pens.fill(target, hmBottom, hmTop, DefaultBlockType.TOWER_WALL);
+    }
+
+    private void addSpan(Map<Long, SpanList> tmpCells, int z, int x0, int x1, int bottom, int top) {
+        int cz = Math.floorDiv(z, cellSize);
+        for (int cx = Math.floorDiv(x0, cellSize); cx <= Math.floorDiv(x1, cellSize); cx++) {
+            int minX = Math.max(x0, cx * cellSize);
+            int maxX = Math.min(x1, cx * cellSize + cellSize - 1);
+            tmpCells.computeIfAbsent(key(cx, cz), k -> new SpanList()).add(z, minX, maxX, bottom, top);
+        }
+    }
+
+    /**
+     * Computes the footprint of a wall segment row by row. The footprint is a rectangle around the segment
+     * that is as wide as the wall and extends half the wall thickness beyond the end points, so that
+     * adjacent segments join without gaps.
+     */
+    private static void forEachRow(WallSegment seg, RowConsumer consumer) {
+        BaseVector2i p0 = seg.getStart();
+        BaseVector2i p1 = seg.getEnd();
+        float half = seg.getWallThickness() * 0.5f;
+
+        float dx = p1.getX() - p0.getX();
+        float dz = p1.getY() - p0.getY();
+        float len = (float) Math.sqrt(dx * dx + dz * dz);
+        float ux = (len > 0) ? dx / len : 1;
+        float uz = (len > 0) ? dz / len : 0;
+
+        // direction and normal, scaled by half the thickness
+        float ax = ux * half;
+        float az = uz * half;
+        float nx = -az;
+        float nz = ax;
+
+        float[] xs = {
+            p0.getX() - ax + nx, p1.getX() + ax + nx, p1.getX() + ax - nx, p0.getX() - ax - nx};
+        float[] zs = {
+            p0.getY() - az + nz, p1.getY() + az + nz, p1.getY() + az - nz, p0.getY() - az - nz};
+
+        float minZ = Math.min(Math.min(zs[0], zs[1]), Math.min(zs[2], zs[3]));
+        float maxZ = Math.max(Math.max(zs[0], zs[1]), Math.max(zs[2], zs[3]));
+
+        // the footprint is half-open, so that a wall of thickness n covers n blocks
+        for (int z = TeraMath.ceilToInt(minZ); z < TeraMath.ceilToInt(maxZ); z++) {
+            float left = Float.POSITIVE_INFINITY;
+            float right = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < 4; i++) {
+                int j = (i + 1) % 4;
+                float za = zs[i];
+                float zb = zs[j];
+                if (za == zb) {
+                    if (za == z) {
+                        left = Math.min(left, Math.min(xs[i], xs[j]));
+                        right = Math.max(right, Math.max(xs[i], xs[j]));
+                    }
+                } else if ((z >= za && z <= zb) || (z >= zb && z <= za)) {
+                    float x = xs[i] + (z - za) * (xs[j] - xs[i]) / (zb - za);
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                }
+            }
+
+            int x0 = TeraMath.ceilToInt(left);
+            int x1 = TeraMath.ceilToInt(right) - 1;
+            if (x0 <= x1) {
+                consumer.accept(z, x0, x1);
+            }
+        }
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    @FunctionalInterface
+    private interface RowConsumer {
+        void accept(int z, int x0, int x1);
+    }
+
+    /**
+     * A list of spans that grows geometrically while the cells are built.
+     */
+    private static final class SpanList {
+        private int[] data = new int[4 * SPAN_SIZE];
+        private int size;
+
+        void add(int z, int x0, int x1, int bottom, int top) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size + 0] = z;
+            data[size + 1] = x0;
+            data[size + 2] = x1;
+            data[size + 3] = bottom;
+            data[size + 4] = top;
+            size += SPAN_SIZE;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * Adds a constant offset to another height map.
+     */
+    private static final class OffsetHeightMap implements RowHeightMap {
+
+        private final HeightMap base;
+        private final int offset;
+
+        OffsetHeightMap(HeightMap base, int offset) {
+            this.base = base;
+            this.offset = offset;
+        }
+
+        @Override
+        public int apply(BaseVector2i pos) {
+            return apply(pos.getX(), pos.getY());
+        }
+
+        @Override
+        public int apply(int x, int z) {
+            return base.apply(x, z) + offset;
+        }
+
+        @Override
+        public void readRow(int x0, int x1, int z, int[] buffer) {
+            RowHeightMap.readRow(base, x0, x1, z, buffer);
+            for (int i = 0; i <= x1 - x0; i++) {
+                buffer[i] += offset;
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+/**
+ * The order in which a {@link RasterTarget} prefers to receive blocks.
+ */
+public enum TraversalOrder {
+
+    /**
+     * Column by column: x and z in the outer loops, y in the inner loop
+     */
+    COLUMNS,
+
+    /**
+     * Layer by layer: y in the outer loop, then z, then x in the inner loop.
+     * This matches storage that is indexed by <code>(y * sizeZ + z) * sizeX + x</code>.
+     */
+    LAYERS
+}
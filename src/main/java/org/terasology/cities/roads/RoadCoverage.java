@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.roads;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import org.terasology.math.TeraMath;
+import org.terasology.math.geom.ImmutableVector2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Precomputes which segments of a {@link Road} are relevant for which chunk, i.e. which segments
+ * intersect the chunk area (expanded by a margin, e.g. half the road width).
+ * Looking up the segments of a chunk is O(1).
+ */
+public class RoadCoverage {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Road road;
+    private final int chunkSizeX;
+    private final int chunkSizeZ;
+    private final int margin;
+
+    private final Map<Long, int[]> chunks = new HashMap<>();
+
+    // the z range of the last clipped segment (written by clip() while the coverage is built)
+    private float clipMinZ;
+    private float clipMaxZ;
+
+    /**
+     * @param road the road
+     * @param chunkSizeX the chunk size along the x axis
+     * @param chunkSizeZ the chunk size along the z axis
+     * @param margin the distance around a chunk that is considered relevant
+     */
+    public RoadCoverage(Road road, int chunkSizeX, int chunkSizeZ, int margin) {
+        Preconditions.checkArgument(margin >= 0, "margin must not be negative");
+
+        this.road = road;
+        this.chunkSizeX = chunkSizeX;
+        this.chunkSizeZ = chunkSizeZ;
+        this.margin = margin;
+
+        Map<Long, IndexList> lists = new HashMap<>();
+        int index = 0;
+        for (RoadSegment seg : road.getSegments()) {
+            addSegment(lists, index++, seg.getStart(), seg.getEnd());
+        }
+
+        for (Map.Entry<Long, IndexList> entry : lists.entrySet()) {
+            chunks.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    /**
+     * @return the road
+     */
+    public Road getRoad() {
+        return road;
+    }
+
+    /**
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return true if at least one segment is relevant for the chunk
+     */
+    public boolean covers(int chunkX, int chunkZ) {
+        return chunks.containsKey(key(chunkX, chunkZ));
+    }
+
+    /**
+     * Calls the consumer for every segment that is relevant for the given chunk in ascending segment order.
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @param consumer receives the index of the segment in the road
+     */
+    public void forEachSegment(int chunkX, int chunkZ, IntConsumer consumer) {
+        int[] entries = chunks.getOrDefault(key(chunkX, chunkZ), EMPTY);
+        for (int index : entries) {
+            consumer.accept(index);
+        }
+    }
+
+    private void addSegment(Map<Long, IndexList> lists, int index, ImmutableVector2i p0, ImmutableVector2i p1) {
+        int minCx = Math.floorDiv(Math.min(p0.getX(), p1.getX()) - margin, chunkSizeX);
+        int maxCx = Math.floorDiv(Math.max(p0.getX(), p1.getX()) + margin, chunkSizeX);
+
+        // walk along the vertical chunk strips, so that only touched chunks are visited
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            float minX = cx * chunkSizeX - margin;
+            float maxX = (cx + 1) * chunkSizeX - 1 + margin;
+            if (!clip(p0, p1, minX, -Float.MAX_VALUE, maxX, Float.MAX_VALUE)) {
+                continue;
+            }
+
+            // the chunks of the strip that the clipped part can reach
+            int minCz = Math.floorDiv(TeraMath.floorToInt(clipMinZ) - margin, chunkSizeZ);
+            int maxCz = Math.floorDiv(TeraMath.floorToInt(clipMaxZ) + margin, chunkSizeZ);
+            for (int cz = minCz; cz <= maxCz; cz++) {
+                float minZ = cz * chunkSizeZ - margin;
+                float maxZ = (cz + 1) * chunkSizeZ - 1 + margin;
+                if (clip(p0, p1, minX, minZ, maxX, maxZ)) {
+                    lists.computeIfAbsent(key(cx, cz), k -> new IndexList()).add(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Liang-Barsky line clipping. The z range of the clipped line is stored in {@link #clipMinZ} and {@link #clipMaxZ}.
+     * @return true if the line is at least partly inside
+     */
+    private boolean clip(ImmutableVector2i p0, ImmutableVector2i p1, float minX, float minZ, float maxX, float maxZ) {
+        float x0 = p0.getX();
+        float z0 = p0.getY();
+        float dx = p1.getX() - x0;
+        float dz = p1.getY() - z0;
+
+        float t0 = 0;
+        float t1 = 1;
+        for (int i = 0; i < 4; i++) {
+            float p = (i == 0) ? -dx : (i == 1) ? dx : (i == 2) ? -dz : dz;
+            float q = (i == 0) ? x0 - minX : (i == 1) ? maxX - x0 : (i == 2) ? z0 - minZ : maxZ - z0;
+            if (p == 0) {
+                if (q < 0) {
+                    return false;
+                }
+            } else {
+                float t = q / p;
+                if (p < 0) {
+                    t0 = Math.max(t0, t);
+                } else {
+                    t1 = Math.min(t1, t);
+                }
+            }
+        }
+
+        if (t0 > t1) {
+            return false;
+        }
+
+        clipMinZ = Math.min(z0 + t0 * dz, z0 + t1 * dz);
+        clipMaxZ = Math.max(z0 + t0 * dz, z0 + t1 * dz);
+        return true;
+    }
+
+    private static long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A list of segment indices that grows geometrically.
+     */
+    private static final class IndexList {
+        private int[] data = new int[4];
+        private int size;
+
+        void add(int index) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = index;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
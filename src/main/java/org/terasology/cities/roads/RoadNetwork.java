@@ -0,0 +1,353 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.roads;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An immutable graph of {@link Road}s. Junctions are the road end points.
+ * The adjacency is stored in primitive arrays (compressed rows) and the road segments are
+ * indexed in a uniform grid, so that all roads in a chunk-sized area can be found quickly.
+ */
+public class RoadNetwork {
+
+    private final List<Road> roads;
+    private final List<ImmutableVector2i> junctions;
+    private final Map<ImmutableVector2i, Integer> junctionIds;
+
+    // adjacency in compressed row format: the edges of junction i are [edgeStart[i]..edgeStart[i + 1])
+    private final int[] edgeStart;
+    private final int[] edgeTarget;
+    private final int[] edgeRoad;
+
+    // segment index
+    private final int cellSize;
+    private final Map<Long, int[]> cells = new HashMap<>();
+    private final int[] segmentRoad;
+    private final int[] segmentBounds;      // minX, minY, maxX, maxY per segment (incl. road width)
+
+    private final Map<Road, RoadCoverage> coverages = new ConcurrentHashMap<>();
+
+    /**
+     * @param roads the roads that form the network
+     * @param cellSize the edge length of the spatial index cells (e.g. the chunk size)
+     */
+    public RoadNetwork(Collection<Road> roads, int cellSize) {
+        Preconditions.checkArgument(cellSize > 0, "cellSize must be positive");
+
+        this.roads = ImmutableList.copyOf(roads);
+        this.cellSize = cellSize;
+
+        Map<ImmutableVector2i, Integer> ids = new LinkedHashMap<>();
+        int[] degree = new int[roads.size() * 2];
+        for (Road road : this.roads) {
+            degree[junctionId(ids, road.getEnd0())]++;
+            degree[junctionId(ids, road.getEnd1())]++;
+        }
+
+        this.junctionIds = Collections.unmodifiableMap(ids);
+        this.junctions = ImmutableList.copyOf(ids.keySet());
+
+        int count = junctions.size();
+        edgeStart = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            edgeStart[i + 1] = edgeStart[i] + degree[i];
+        }
+
+        edgeTarget = new int[edgeStart[count]];
+        edgeRoad = new int[edgeStart[count]];
+        int[] fill = Arrays.copyOf(edgeStart, count);
+        for (int r = 0; r < this.roads.size(); r++) {
+            Road road = this.roads.get(r);
+            int a = ids.get(road.getEnd0());
+            int b = ids.get(road.getEnd1());
+            edgeTarget[fill[a]] = b;
+            edgeRoad[fill[a]++] = r;
+            edgeTarget[fill[b]] = a;
+            edgeRoad[fill[b]++] = r;
+        }
+
+        int segCount = 0;
+        for (Road road : this.roads) {
+            segCount += road.getSegments().size();
+        }
+
+        segmentRoad = new int[segCount];
+        segmentBounds = new int[segCount * 4];
+        Map<Long, List<Integer>> tmpCells = new HashMap<>();
+        int seg = 0;
+        for (int r = 0; r < this.roads.size(); r++) {
+            Road road = this.roads.get(r);
+            int halfWidth = (int) Math.ceil(road.getWidth() * 0.5f);
+            for (RoadSegment segment : road.getSegments()) {
+                ImmutableVector2i p0 = segment.getStart();
+                ImmutableVector2i p1 = segment.getEnd();
+                int minX = Math.min(p0.getX(), p1.getX()) - halfWidth;
+                int minY = Math.min(p0.getY(), p1.getY()) - halfWidth;
+                int maxX = Math.max(p0.getX(), p1.getX()) + halfWidth;
+                int maxY = Math.max(p0.getY(), p1.getY()) + halfWidth;
+
+                segmentRoad[seg] = r;
+                segmentBounds[seg * 4 + 0] = minX;
+                segmentBounds[seg * 4 + 1] = minY;
+                segmentBounds[seg * 4 + 2] = maxX;
+                segmentBounds[seg * 4 + 3] = maxY;
+
+                for (int cy = Math.floorDiv(minY, cellSize); cy <= Math.floorDiv(maxY, cellSize); cy++) {
+                    for (int cx = Math.floorDiv(minX, cellSize); cx <= Math.floorDiv(maxX, cellSize); cx++) {
+                        tmpCells.computeIfAbsent(cellKey(cx, cy), k -> new ArrayList<>()).add(seg);
+                    }
+                }
+                seg++;
+            }
+        }
+
+        for (Map.Entry<Long, List<Integer>> entry : tmpCells.entrySet()) {
+            cells.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * @return an unmodifiable list of all roads
+     */
+    public List<Road> getRoads() {
+        return roads;
+    }
+
+    /**
+     * @return an unmodifiable list of all junctions (road end points)
+     */
+    public List<ImmutableVector2i> getJunctions() {
+        return junctions;
+    }
+
+    /**
+     * @param junction the junction position
+     * @return all roads that end at the given junction (empty if not a junction)
+     */
+    public List<Road> getRoads(BaseVector2i junction) {
+        Integer id = junctionIds.get(ImmutableVector2i.createOrUse(junction));
+        if (id == null) {
+            return Collections.emptyList();
+        }
+
+        List<Road> result = new ArrayList<>(edgeStart[id + 1] - edgeStart[id]);
+        for (int e = edgeStart[id]; e < edgeStart[id + 1]; e++) {
+            result.add(roads.get(edgeRoad[e]));
+        }
+        return result;
+    }
+
+    /**
+     * @param area the area to test
+     * @return all roads with at least one segment (including road width) whose bounding box overlaps the area
+     */
+    public List<Road> getRoads(Rect2i area) {
+        BitSet found = new BitSet(roads.size());
+        for (int cy = Math.floorDiv(area.minY(), cellSize); cy <= Math.floorDiv(area.maxY(), cellSize); cy++) {
+            for (int cx = Math.floorDiv(area.minX(), cellSize); cx <= Math.floorDiv(area.maxX(), cellSize); cx++) {
+                int[] segs = cells.get(cellKey(cx, cy));
+                if (segs == null) {
+                    continue;
+                }
+                for (int seg : segs) {
+                    if (!found.get(segmentRoad[seg]) && overlaps(seg, area)) {
+                        found.set(segmentRoad[seg]);
+                    }
+                }
+            }
+        }
+
+        List<Road> result = new ArrayList<>(found.cardinality());
+        for (int r = found.nextSetBit(0); r >= 0; r = found.nextSetBit(r + 1)) {
+            result.add(roads.get(r));
+        }
+        return result;
+    }
+
+    /**
+     * @return the edge length of the spatial index cells
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * The coverage is computed on first access and uses the index cell size and half the road width as margin.
+     * @param road one of the roads in the network
+     * @return the indices of the segments of the road per cell
+     */
+    public RoadCoverage getCoverage(Road road) {
+        return coverages.computeIfAbsent(road, r -> {
+            int halfWidth = (int) Math.ceil(r.getWidth() * 0.5f);
+            return new RoadCoverage(r, cellSize, cellSize, halfWidth);
+        });
+    }
+
+    /**
+     * Finds the shortest connection between two junctions using A*.
+     * @param from the start junction
+     * @param to the target junction
+     * @return the roads along the shortest path (in order) or an empty list if there is none
+     */
+    public List<Road> findPath(BaseVector2i from, BaseVector2i to) {
+        Integer start = junctionIds.get(ImmutableVector2i.createOrUse(from));
+        Integer goal = junctionIds.get(ImmutableVector2i.createOrUse(to));
+        if (start == null || goal == null || start.equals(goal)) {
+            return Collections.emptyList();
+        }
+
+        int count = junctions.size();
+        float[] dist = new float[count];
+        int[] viaEdge = new int[count];
+        int[] viaNode = new int[count];
+        Arrays.fill(dist, Float.POSITIVE_INFINITY);
+        Arrays.fill(viaEdge, -1);
+        BitSet closed = new BitSet(count);
+
+        ImmutableVector2i goalPos = junctions.get(goal);
+        LongHeap open = new LongHeap();
+        dist[start] = 0;
+        open.add(estimate(0, start, goalPos), start);
+
+        while (!open.isEmpty()) {
+            int node = open.poll();
+            if (node == goal) {
+                break;
+            }
+            if (closed.get(node)) {
+                continue;
+            }
+            closed.set(node);
+
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int next = edgeTarget[e];
+                float cand = dist[node] + roads.get(edgeRoad[e]).getLength();
+                if (cand < dist[next]) {
+                    dist[next] = cand;
+                    viaEdge[next] = e;
+                    viaNode[next] = node;
+                    open.add(estimate(cand, next, goalPos), next);
+                }
+            }
+        }
+
+        if (viaEdge[goal] < 0) {
+            return Collections.emptyList();
+        }
+
+        List<Road> path = new ArrayList<>();
+        int node = goal;
+        while (node != start) {
+            path.add(roads.get(edgeRoad[viaEdge[node]]));
+            node = viaNode[node];
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private float estimate(float cost, int node, ImmutableVector2i goal) {
+        return cost + (float) junctions.get(node).distance(goal);
+    }
+
+    private boolean overlaps(int seg, Rect2i area) {
+        int i = seg * 4;
+        return segmentBounds[i + 0] <= area.maxX() && segmentBounds[i + 2] >= area.minX()
+            && segmentBounds[i + 1] <= area.maxY() && segmentBounds[i + 3] >= area.minY();
+    }
+
+    private static int junctionId(Map<ImmutableVector2i, Integer> ids, ImmutableVector2i pos) {
+        Integer id = ids.get(pos);
+        if (id == null) {
+            id = ids.size();
+            ids.put(pos, id);
+        }
+        return id;
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A binary min-heap of nodes with non-negative float priorities, stored in a long[] without boxing.
+     */
+    private static final class LongHeap {
+        private long[] data = new long[16];
+        private int size;
+
+        void add(float priority, int node) {
+            // non-negative float bits have the same order as their values
+            long value = ((long) Float.floatToIntBits(priority) << 32) | node;
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (data[parent] <= value) {
+                    break;
+                }
+                data[i] = data[parent];
+                i = parent;
+            }
+            data[i] = value;
+        }
+
+        int poll() {
+            long top = data[0];
+            long last = data[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && data[child + 1] < data[child]) {
+                    child++;
+                }
+                if (last <= data[child]) {
+                    break;
+                }
+                data[i] = data[child];
+                i = child;
+            }
+            data[i] = last;
+            return (int) top;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
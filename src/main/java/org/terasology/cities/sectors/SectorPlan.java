@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.sectors;
+
+import java.util.List;
+
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.roads.RoadNetwork;
+import org.terasology.cities.walls.TownWall;
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The settlements of one sector: their sites, the roads, the town walls and the parcels.
+ * Instances are immutable and shared by all chunks of the sector.
+ */
+public class SectorPlan {
+
+    private final ImmutableVector2i coord;
+    private final Rect2i area;
+    private final List<Site> sites;
+    private final RoadNetwork roads;
+    private final List<TownWall> walls;
+    private final List<Parcel> parcels;
+
+    /**
+     * @param coord the sector coordinate
+     * @param area the area of the sector in blocks
+     * @param sites the settlement sites
+     * @param roads the roads of the sector
+     * @param walls the town walls
+     * @param parcels the parcels of all settlements
+     */
+    public SectorPlan(BaseVector2i coord, Rect2i area, List<Site> sites, RoadNetwork roads,
+                      List<TownWall> walls, List<Parcel> parcels) {
+        this.coord = ImmutableVector2i.createOrUse(coord);
+        this.area = area;
+        this.sites = ImmutableList.copyOf(sites);
+        this.roads = roads;
+        this.walls = ImmutableList.copyOf(walls);
+        this.parcels = ImmutableList.copyOf(parcels);
+    }
+
+    /**
+     * @return the sector coordinate
+     */
+    public ImmutableVector2i getCoord() {
+        return coord;
+    }
+
+    /**
+     * @return the area of the sector in blocks
+     */
+    public Rect2i getArea() {
+        return area;
+    }
+
+    /**
+     * @return an unmodifiable list of settlement sites
+     */
+    public List<Site> getSites() {
+        return sites;
+    }
+
+    /**
+     * @return the roads of the sector
+     */
+    public RoadNetwork getRoads() {
+        return roads;
+    }
+
+    /**
+     * @return an unmodifiable list of town walls
+     */
+    public List<TownWall> getWalls() {
+        return walls;
+    }
+
+    /**
+     * @return an unmodifiable list of the parcels of all settlements
+     */
+    public List<Parcel> getParcels() {
+        return parcels;
+    }
+
+    @Override
+    public String toString() {
+        return "SectorPlan [" + coord + ", " + sites.size() + " sites, " + parcels.size() + " parcels]";
+    }
+}
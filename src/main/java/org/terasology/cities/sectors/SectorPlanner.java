@@ -0,0 +1,606 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.sectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.parcels.ParcelSubdivider;
+import org.terasology.cities.roads.Road;
+import org.terasology.cities.roads.RoadNetwork;
+import org.terasology.cities.roads.RoadSegment;
+import org.terasology.cities.walls.GateWallSegment;
+import org.terasology.cities.walls.SolidWallSegment;
+import org.terasology.cities.walls.TownWall;
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.utilities.random.MersenneRandom;
+import org.terasology.utilities.random.Random;
+import org.terasology.world.chunks.ChunkConstants;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Plans the settlements of {@link #SECTOR_SIZE} x {@link #SECTOR_SIZE} sectors. Every sector contains
+ * up to {@link #MAX_SITES} settlement sites. The sites are connected pair-wise by long-distance roads
+ * and get a grid of streets, parcels along the roads and - if large enough - a town wall.
+ * <br><br>
+ * Planning has two stages. The sites of a sector depend only on the world seed and the sector coordinate.
+ * A plan depends on the sites of the sector and of its four neighbors: the closest sites of two adjacent
+ * sectors are connected by a road that is derived from the seed and the lower sector coordinate only
+ * and stays inside the two sectors. Both sectors compute the same road, so they agree on it without
+ * any communication. The sites of the neighbors are computed lazily.
+ * <br><br>
+ * Sites and plans are kept in bounded caches, so that all chunks of a sector share one plan. The planner is
+ * thread-safe. Every entry is computed only once while it is cached, even if it is requested by several
+ * threads at the same time, and no lock is held while it is computed.
+ */
+public class SectorPlanner {
+
+    /**
+     * The edge length of a sector in blocks
+     */
+    public static final int SECTOR_SIZE = 1024;
+
+    /**
+     * The maximum number of settlements per sector
+     */
+    public static final int MAX_SITES = 3;
+
+    private static final int MIN_RADIUS = 64;
+    private static final int MAX_RADIUS = 160;
+    private static final int BORDER = MAX_RADIUS + 32;     // distance between settlement centers and sector border
+    private static final int SITE_GAP = 64;                // distance between two settlement areas
+    private static final int SITE_ATTEMPTS = 10;
+
+    private static final float ROAD_WIDTH = 5f;
+    private static final float STREET_WIDTH = 3f;
+    private static final int STREET_SPACING = 64;
+
+    private static final int WALL_MIN_RADIUS = 112;
+    private static final int WALL_CORNERS = 12;
+    private static final int WALL_THICKNESS = 3;
+    private static final int WALL_HEIGHT = 6;
+    private static final int GATE_HEIGHT = 8;
+    private static final int GATE_MARGIN = 2;              // extra gate width on both sides of a road
+
+    private static final int NO_CROSSING = Integer.MIN_VALUE;
+
+    private static final long SITES_SALT = 0x51735L;
+    private static final long PLAN_SALT = 0x91A4L;
+    private static final long LINK_X_SALT = 0x11E4L;
+    private static final long LINK_Z_SALT = 0x11E5L;
+
+    private final long seed;
+    private final LoadingCache<SectorKey, List<Site>> siteCache;
+    private final LoadingCache<SectorKey, SectorPlan> planCache;
+
+    /**
+     * @param seed the world seed
+     * @param maxCachedPlans the maximum number of plans that are kept in memory
+     */
+    public SectorPlanner(long seed, int maxCachedPlans) {
+        Preconditions.checkArgument(maxCachedPlans > 0, "maxCachedPlans must be positive");
+
+        this.seed = seed;
+        this.siteCache = CacheBuilder.newBuilder()
+                .maximumSize(maxCachedPlans * 5L)      // every plan needs the sites of its four neighbors
+                .build(CacheLoader.from(key -> createSites(new ImmutableVector2i(key.x, key.z))));
+        this.planCache = CacheBuilder.newBuilder()
+                .maximumSize(maxCachedPlans)
+                .build(CacheLoader.from(key -> createPlan(new ImmutableVector2i(key.x, key.z))));
+    }
+
+    /**
+     * @param x the world x coordinate
+     * @param z the world z coordinate
+     * @return the coordinate of the sector that contains the given block
+     */
+    public static ImmutableVector2i getSectorCoord(int x, int z) {
+        return new ImmutableVector2i(Math.floorDiv(x, SECTOR_SIZE), Math.floorDiv(z, SECTOR_SIZE));
+    }
+
+    /**
+     * @param coord the sector coordinate
+     * @return the area of the sector in blocks
+     */
+    public static Rect2i getSectorArea(BaseVector2i coord) {
+        return Rect2i.createFromMinAndSize(coord.getX() * SECTOR_SIZE, coord.getY() * SECTOR_SIZE, SECTOR_SIZE, SECTOR_SIZE);
+    }
+
+    /**
+     * @return the world seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param coord the sector coordinate
+     * @return the (cached) plan of the sector
+     */
+    public SectorPlan getPlan(BaseVector2i coord) {
+        return planCache.getUnchecked(new SectorKey(seed, coord.getX(), coord.getY()));
+    }
+
+    /**
+     * @param coord the sector coordinate
+     * @return the (cached) settlement sites of the sector
+     */
+    public List<Site> getSites(BaseVector2i coord) {
+        return siteCache.getUnchecked(new SectorKey(seed, coord.getX(), coord.getY()));
+    }
+
+    /**
+     * Plans all sectors of an area in parallel. The plans are also added to the cache.
+     * @param sectors the area in sector coordinates
+     * @param executor the executor that computes the plans
+     * @return the plans of all sectors, row by row
+     */
+    public List<SectorPlan> planAll(Rect2i sectors, Executor executor) {
+        List<CompletableFuture<SectorPlan>> futures = new ArrayList<>(sectors.area());
+        for (int sz = sectors.minY(); sz <= sectors.maxY(); sz++) {
+            for (int sx = sectors.minX(); sx <= sectors.maxX(); sx++) {
+                ImmutableVector2i coord = new ImmutableVector2i(sx, sz);
+                futures.add(CompletableFuture.supplyAsync(() -> getPlan(coord), executor));
+            }
+        }
+
+        List<SectorPlan> plans = new ArrayList<>(futures.size());
+        for (CompletableFuture<SectorPlan> future : futures) {
+            plans.add(future.join());
+        }
+        return plans;
+    }
+
+    /**
+     * @param area the area in blocks
+     * @return the plans of all sectors that overlap the area
+     */
+    public List<SectorPlan> getPlans(Rect2i area) {
+        ImmutableVector2i min = getSectorCoord(area.minX(), area.minY());
+        ImmutableVector2i max = getSectorCoord(area.maxX(), area.maxY());
+        List<SectorPlan> plans = new ArrayList<>();
+        for (int sz = min.getY(); sz <= max.getY(); sz++) {
+            for (int sx = min.getX(); sx <= max.getX(); sx++) {
+                plans.add(getPlan(new ImmutableVector2i(sx, sz)));
+            }
+        }
+        return plans;
+    }
+
+    private SectorPlan createPlan(ImmutableVector2i coord) {
+        Tracer.Span span = Tracer.begin("sector", "plan");
+        try {
+            Rect2i area = getSectorArea(coord);
+            Random rng = new MersenneRandom(getSeed(coord, PLAN_SALT));
+
+            List<Site> sites = getSites(coord);
+            List<Road> mainRoads = createMainRoads(sites, area, rng);
+
+            // both sectors of a link compute the same road, so the links to all four neighbors are part of the plan
+            ImmutableVector2i east = new ImmutableVector2i(coord.getX() + 1, coord.getY());
+            ImmutableVector2i south = new ImmutableVector2i(coord.getX(), coord.getY() + 1);
+            ImmutableVector2i west = new ImmutableVector2i(coord.getX() - 1, coord.getY());
+            ImmutableVector2i north = new ImmutableVector2i(coord.getX(), coord.getY() - 1);
+            addLink(mainRoads, coord, east, LINK_X_SALT);
+            addLink(mainRoads, coord, south, LINK_Z_SALT);
+            addLink(mainRoads, west, coord, LINK_X_SALT);
+            addLink(mainRoads, north, coord, LINK_Z_SALT);
+
+            // the links also cross the streets of the neighbors - both sectors must split them in the same places
+            List<Site> nearby = new ArrayList<>(sites);
+            nearby.addAll(getSites(east));
+            nearby.addAll(getSites(south));
+            nearby.addAll(getSites(west));
+            nearby.addAll(getSites(north));
+
+            List<Road> roads = new ArrayList<>();
+            for (Road road : mainRoads) {
+                roads.addAll(splitAtStreets(road, nearby));
+            }
+            for (Site site : sites) {
+                roads.addAll(createStreets(site, mainRoads));
+            }
+            RoadNetwork network = new RoadNetwork(roads, ChunkConstants.SIZE_X);
+
+            List<TownWall> walls = new ArrayList<>();
+            List<Parcel> parcels = new ArrayList<>();
+            for (Site site : sites) {
+                if (site.getRadius() >= WALL_MIN_RADIUS) {
+                    walls.add(createWall(site, mainRoads));
+                }
+
+                // the parcels must stay inside the town wall
+                int lotRadius = site.getRadius() - ParcelSubdivider.MAX_LOT_SIZE;
+                ParcelSubdivider subdivider = new ParcelSubdivider(network, site.getCenter(), lotRadius, rng.nextLong());
+                parcels.addAll(subdivider.getParcels(site.getBounds()));
+            }
+
+            return new SectorPlan(coord, area, sites, network, walls, parcels);
+        } finally {
+            span.close();
+        }
+    }
+
+    private List<Site> createSites(ImmutableVector2i coord) {
+        Rect2i area = getSectorArea(coord);
+        Random rng = new MersenneRandom(getSeed(coord, SITES_SALT));
+        List<Site> result = new ArrayList<>(MAX_SITES);
+        int count = 1 + rng.nextInt(MAX_SITES);
+        for (int i = 0; i < count; i++) {
+            for (int attempt = 0; attempt < SITE_ATTEMPTS; attempt++) {
+                int radius = MIN_RADIUS + rng.nextInt(MAX_RADIUS - MIN_RADIUS + 1);
+                int x = area.minX() + BORDER + rng.nextInt(area.width() - 2 * BORDER);
+                int z = area.minY() + BORDER + rng.nextInt(area.height() - 2 * BORDER);
+                Site site = new Site(new ImmutableVector2i(x, z), radius);
+                if (isFree(site, result)) {
+                    result.add(site);
+                    break;
+                }
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static boolean isFree(Site site, List<Site> others) {
+        for (Site other : others) {
+            long dx = site.getCenter().getX() - other.getCenter().getX();
+            long dz = site.getCenter().getY() - other.getCenter().getY();
+            long minDist = site.getRadius() + other.getRadius() + SITE_GAP;
+            if (dx * dx + dz * dz < minDist * minDist) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Road> createMainRoads(List<Site> sites, Rect2i area, Random rng) {
+        List<Road> roads = new ArrayList<>();
+        for (int i = 0; i < sites.size(); i++) {
+            for (int j = i + 1; j < sites.size(); j++) {
+                roads.add(createRoad(sites.get(i).getCenter(), sites.get(j).getCenter(), area, rng));
+            }
+        }
+        return roads;
+    }
+
+    /**
+     * Connects the closest sites of two adjacent sectors. The road depends only on the seed and
+     * the lower sector, so both sectors create the same road.
+     */
+    private void addLink(List<Road> roads, ImmutableVector2i lower, ImmutableVector2i upper, long salt) {
+        List<Site> lowerSites = getSites(lower);
+        List<Site> upperSites = getSites(upper);
+
+        Site bestA = null;
+        Site bestB = null;
+        long bestDist = Long.MAX_VALUE;
+        for (Site a : lowerSites) {
+            for (Site b : upperSites) {
+                long dx = b.getCenter().getX() - a.getCenter().getX();
+                long dz = b.getCenter().getY() - a.getCenter().getY();
+                if (dx * dx + dz * dz < bestDist) {
+                    bestDist = dx * dx + dz * dz;
+                    bestA = a;
+                    bestB = b;
+                }
+            }
+        }
+
+        if (bestA != null) {
+            Rect2i lowerArea = getSectorArea(lower);
+            Rect2i upperArea = getSectorArea(upper);
+            Rect2i bounds = Rect2i.createFromMinAndMax(lowerArea.minX(), lowerArea.minY(), upperArea.maxX(), upperArea.maxY());
+            Random rng = new MersenneRandom(getSeed(lower, salt));
+            roads.add(createRoad(bestA.getCenter(), bestB.getCenter(), bounds, rng));
+        }
+    }
+
+    /**
+     * Creates a road between two points that is bent a little bit to the side, but stays inside the given area.
+     */
+    private static Road createRoad(ImmutableVector2i a, ImmutableVector2i b, Rect2i bounds, Random rng) {
+        int dx = b.getX() - a.getX();
+        int dz = b.getY() - a.getY();
+        int margin = (int) Math.ceil(ROAD_WIDTH * 0.5f);
+
+        float bend = (rng.nextFloat() - 0.5f) * 0.3f;
+        int midX = Math.round((a.getX() + b.getX()) * 0.5f - dz * bend);
+        int midZ = Math.round((a.getY() + b.getY()) * 0.5f + dx * bend);
+        midX = Math.max(bounds.minX() + margin, Math.min(bounds.maxX() - margin, midX));
+        midZ = Math.max(bounds.minY() + margin, Math.min(bounds.maxY() - margin, midZ));
+        return new Road(Arrays.asList(a, new ImmutableVector2i(midX, midZ), b), ROAD_WIDTH);
+    }
+
+    private long getSeed(BaseVector2i coord, long salt) {
+        return seed ^ salt ^ (coord.getX() * 0x9E3779B97F4A7C15L) ^ (coord.getY() * 0xC2B2AE3D27D4EB4FL);
+    }
+
+    /**
+     * Creates a grid of streets through the settlement center. The streets are split wherever they cross
+     * each other or a main road, so that all crossings are junctions of the road network. The main roads
+     * end in the settlement center, which is always a crossing of the grid.
+     * @param site the settlement site
+     * @param mainRoads the unsplit main roads
+     * @return the street pieces
+     */
+    private static List<Road> createStreets(Site site, List<Road> mainRoads) {
+        List<Road> streets = new ArrayList<>();
+        int cx = site.getCenter().getX();
+        int cz = site.getCenter().getY();
+        int radius = site.getRadius();
+        int count = radius / STREET_SPACING;
+        for (int k = -count; k <= count; k++) {
+            int off = k * STREET_SPACING;
+            int half = getStreetHalfLength(radius, off);
+            if (half < 0) {
+                continue;
+            }
+
+            List<Integer> xs = new ArrayList<>();       // the split points of the street along z = cz + off
+            List<Integer> zs = new ArrayList<>();       // the split points of the street along x = cx + off
+            for (int j = -count; j <= count; j++) {
+                int cross = j * STREET_SPACING;
+                int crossHalf = getStreetHalfLength(radius, cross);
+                if (crossHalf >= Math.abs(off) && half >= Math.abs(cross)) {
+                    xs.add(cx + cross);
+                    zs.add(cz + cross);
+                }
+            }
+            for (Road road : mainRoads) {
+                for (RoadSegment seg : road.getSegments()) {
+                    ImmutableVector2i p0 = seg.getStart();
+                    ImmutableVector2i p1 = seg.getEnd();
+                    int x = crossLine(p0.getY(), p0.getX(), p1.getY(), p1.getX(), cz + off, cx - half, cx + half);
+                    if (x != NO_CROSSING) {
+                        xs.add(x);
+                    }
+                    int z = crossLine(p0.getX(), p0.getY(), p1.getX(), p1.getY(), cx + off, cz - half, cz + half);
+                    if (z != NO_CROSSING) {
+                        zs.add(z);
+                    }
+                }
+            }
+
+            xs.add(cx - half);
+            xs.add(cx + half);
+            zs.add(cz - half);
+            zs.add(cz + half);
+            Collections.sort(xs);
+            Collections.sort(zs);
+            for (int i = 1; i < zs.size(); i++) {
+                if (!zs.get(i).equals(zs.get(i - 1))) {
+                    streets.add(new Road(new ImmutableVector2i(cx + off, zs.get(i - 1)), new ImmutableVector2i(cx + off, zs.get(i)), STREET_WIDTH));
+                }
+            }
+            for (int i = 1; i < xs.size(); i++) {
+                if (!xs.get(i).equals(xs.get(i - 1))) {
+                    streets.add(new Road(new ImmutableVector2i(xs.get(i - 1), cz + off), new ImmutableVector2i(xs.get(i), cz + off), STREET_WIDTH));
+                }
+            }
+        }
+        return streets;
+    }
+
+    /**
+     * @return half the length of the street at the given offset from the center or -1 if it is too short
+     */
+    private static int getStreetHalfLength(int radius, int off) {
+        int half = (int) Math.sqrt(radius * radius - off * off);
+        return (half < STREET_SPACING / 2) ? -1 : half;
+    }
+
+    /**
+     * Splits a road wherever it crosses a street of one of the given sites. The crossing points are computed
+     * from the unsplit road, just like in {@link #createStreets(Site, List)}, so that both end up at the same junction.
+     * @param road the unsplit road
+     * @param sites all sites whose streets may cross the road
+     * @return the pieces of the road
+     */
+    private static List<Road> splitAtStreets(Road road, List<Site> sites) {
+        List<Road> pieces = new ArrayList<>();
+        List<ImmutableVector2i> points = new ArrayList<>();
+        points.add(road.getEnd0());
+        for (RoadSegment seg : road.getSegments()) {
+            ImmutableVector2i p0 = seg.getStart();
+            ImmutableVector2i p1 = seg.getEnd();
+            float dx = p1.getX() - p0.getX();
+            float dz = p1.getY() - p0.getY();
+
+            List<ImmutableVector2i> crossings = new ArrayList<>();
+            for (Site site : sites) {
+                int cx = site.getCenter().getX();
+                int cz = site.getCenter().getY();
+                int count = site.getRadius() / STREET_SPACING;
+                for (int k = -count; k <= count; k++) {
+                    int off = k * STREET_SPACING;
+                    int half = getStreetHalfLength(site.getRadius(), off);
+                    if (half < 0) {
+                        continue;
+                    }
+                    int x = crossLine(p0.getY(), p0.getX(), p1.getY(), p1.getX(), cz + off, cx - half, cx + half);
+                    if (x != NO_CROSSING) {
+                        crossings.add(new ImmutableVector2i(x, cz + off));
+                    }
+                    int z = crossLine(p0.getX(), p0.getY(), p1.getX(), p1.getY(), cx + off, cz - half, cz + half);
+                    if (z != NO_CROSSING) {
+                        crossings.add(new ImmutableVector2i(cx + off, z));
+                    }
+                }
+            }
+            crossings.sort((c0, c1) -> Float.compare(
+                    (c0.getX() - p0.getX()) * dx + (c0.getY() - p0.getY()) * dz,
+                    (c1.getX() - p0.getX()) * dx + (c1.getY() - p0.getY()) * dz));
+
+            for (ImmutableVector2i crossing : crossings) {
+                if (!crossing.equals(points.get(points.size() - 1))) {
+                    points.add(crossing);
+                    pieces.add(new Road(points, road.getWidth()));
+                    points = new ArrayList<>();
+                    points.add(crossing);
+                }
+            }
+            if (!p1.equals(points.get(points.size() - 1))) {
+                points.add(p1);
+            }
+        }
+        if (points.size() >= 2) {
+            pieces.add(new Road(points, road.getWidth()));
+        }
+        return pieces;
+    }
+
+    /**
+     * Computes where a segment crosses the axis-aligned line a = line. The coordinate a is
+     * perpendicular to the line, b runs along it.
+     * @param a0 the a coordinate of the first point
+     * @param b0 the b coordinate of the first point
+     * @param a1 the a coordinate of the second point
+     * @param b1 the b coordinate of the second point
+     * @param line the a coordinate of the line
+     * @param min the minimum b coordinate of the line
+     * @param max the maximum b coordinate of the line
+     * @return the (rounded) b coordinate of the crossing or {@link #NO_CROSSING}
+     */
+    private static int crossLine(int a0, int b0, int a1, int b1, int line, int min, int max) {
+        if (a0 == a1 || line < Math.min(a0, a1) || line > Math.max(a0, a1)) {
+            return NO_CROSSING;
+        }
+        int b = (int) Math.round(b0 + (double) (line - a0) * (b1 - b0) / (a1 - a0));
+        return (b >= min && b <= max) ? b : NO_CROSSING;
+    }
+
+    /**
+     * Creates a regular polygon around the settlement area. The edges touch the settlement circle.
+     * Wherever a road crosses the wall, a gate is inserted.
+     */
+    private static TownWall createWall(Site site, List<Road> roads) {
+        TownWall wall = new TownWall();
+        double wallRadius = site.getRadius() / Math.cos(Math.PI / WALL_CORNERS);
+        ImmutableVector2i prev = getCorner(site, wallRadius, 0);
+        for (int i = 1; i <= WALL_CORNERS; i++) {
+            ImmutableVector2i next = getCorner(site, wallRadius, i % WALL_CORNERS);
+            addWallSegments(wall, prev, next, roads);
+            prev = next;
+        }
+        return wall;
+    }
+
+    private static ImmutableVector2i getCorner(Site site, double radius, int index) {
+        double angle = 2 * Math.PI * index / WALL_CORNERS;
+        return new ImmutableVector2i(
+                site.getCenter().getX() + (int) Math.round(radius * Math.cos(angle)),
+                site.getCenter().getY() + (int) Math.round(radius * Math.sin(angle)));
+    }
+
+    private static void addWallSegments(TownWall wall, ImmutableVector2i a, ImmutableVector2i b, List<Road> roads) {
+        float dx = b.getX() - a.getX();
+        float dz = b.getY() - a.getY();
+        float len = (float) Math.sqrt(dx * dx + dz * dz);
+
+        List<float[]> gates = new ArrayList<>();
+        for (Road road : roads) {
+            float halfGate = (road.getWidth() * 0.5f + GATE_MARGIN) / len;
+            for (RoadSegment seg : road.getSegments()) {
+                float t = intersect(a, b, seg.getStart(), seg.getEnd());
+                if (t >= 0) {
+                    gates.add(new float[] {t - halfGate, t + halfGate});
+                }
+            }
+        }
+        gates.sort((g0, g1) -> Float.compare(g0[0], g1[0]));
+
+        float pos = 0;
+        for (float[] gate : gates) {
+            float t0 = Math.max(pos, gate[0]);
+            float t1 = Math.min(1, gate[1]);
+            if (t1 <= t0) {
+                continue;       // covered by the previous gate
+            }
+            if (t0 > pos) {
+                wall.addWall(new SolidWallSegment(lerp(a, b, pos), lerp(a, b, t0), WALL_THICKNESS, WALL_HEIGHT));
+            }
+            wall.addWall(new GateWallSegment(lerp(a, b, t0), lerp(a, b, t1), WALL_THICKNESS, GATE_HEIGHT));
+            pos = t1;
+        }
+        if (pos < 1) {
+            wall.addWall(new SolidWallSegment(lerp(a, b, pos), b, WALL_THICKNESS, WALL_HEIGHT));
+        }
+    }
+
+    /**
+     * @return the relative position of the intersection on the first segment or -1 if there is none
+     */
+    private static float intersect(BaseVector2i a0, BaseVector2i a1, BaseVector2i b0, BaseVector2i b1) {
+        float ax = a1.getX() - a0.getX();
+        float az = a1.getY() - a0.getY();
+        float bx = b1.getX() - b0.getX();
+        float bz = b1.getY() - b0.getY();
+        float denom = ax * bz - az * bx;
+        if (denom == 0) {
+            return -1;
+        }
+        float cx = b0.getX() - a0.getX();
+        float cz = b0.getY() - a0.getY();
+        float t = (cx * bz - cz * bx) / denom;
+        float u = (cx * az - cz * ax) / denom;
+        return (t >= 0 && t <= 1 && u >= 0 && u <= 1) ? t : -1;
+    }
+
+    private static ImmutableVector2i lerp(BaseVector2i a, BaseVector2i b, float t) {
+        return new ImmutableVector2i(
+                Math.round(a.getX() + (b.getX() - a.getX()) * t),
+                Math.round(a.getY() + (b.getY() - a.getY()) * t));
+    }
+
+    private static final class SectorKey {
+        private final long seed;
+        private final int x;
+        private final int z;
+
+        SectorKey(long seed, int x, int z) {
+            this.seed = seed;
+            this.x = x;
+            this.z = z;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SectorKey)) {
+                return false;
+            }
+            SectorKey other = (SectorKey) obj;
+            return seed == other.seed && x == other.x && z == other.z;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (seed ^ (seed >>> 32)) * 961 + x * 31 + z;
+        }
+    }
+}
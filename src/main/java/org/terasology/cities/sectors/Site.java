@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.sectors;
+
+import java.util.Objects;
+
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The location of a settlement: a circular area around a center.
+ */
+public final class Site {
+
+    private final ImmutableVector2i center;
+    private final int radius;
+
+    /**
+     * @param center the center of the settlement
+     * @param radius the radius of the settlement
+     */
+    public Site(BaseVector2i center, int radius) {
+        Preconditions.checkArgument(radius > 0, "radius must be positive");
+
+        this.center = ImmutableVector2i.createOrUse(center);
+        this.radius = radius;
+    }
+
+    /**
+     * @return the center of the settlement
+     */
+    public ImmutableVector2i getCenter() {
+        return center;
+    }
+
+    /**
+     * @return the radius of the settlement
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return the bounding box of the settlement area
+     */
+    public Rect2i getBounds() {
+        return Rect2i.createFromMinAndMax(center.getX() - radius, center.getY() - radius,
+                center.getX() + radius, center.getY() + radius);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Site)) {
+            return false;
+        }
+        Site other = (Site) obj;
+        return radius == other.radius && center.equals(other.center);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(center, radius);
+    }
+
+    @Override
+    public String toString() {
+        return "Site [" + center + ", radius " + radius + "]";
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.surface;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.terasology.cities.roads.Road;
+import org.terasology.cities.roads.RoadCoverage;
+import org.terasology.cities.roads.RoadNetwork;
+import org.terasology.cities.roads.RoadSegment;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.TeraMath;
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Levels and grades the terrain along roads. The road height at every vertex is the average terrain height
+ * around it and varies linearly along each segment. Next to the road, the height blends into the terrain.
+ * <br><br>
+ * Height maps are created per area (e.g. a chunk) and only consider the road segments that the
+ * {@link RoadCoverage} lists for the area and its border. The area is divided into small cells and
+ * every column is only tested against the segments that can reach its cell.
+ * The vertex heights are computed once per area and depend on the surface facet only,
+ * so neighbouring areas always agree.
+ */
+public class RoadGrading {
+
+    private static final int CELL_SIZE = 8;
+
+    private final RoadNetwork network;
+    private final InfiniteSurfaceHeightFacet surface;
+    private final int blendDistance;
+    private final int sampleRadius;
+
+    /**
+     * @param network the road network
+     * @param surface the terrain height
+     * @param blendDistance the distance from the road border in which the height blends into the terrain
+     * @param sampleRadius the radius of the area around a vertex that is averaged
+     */
+    public RoadGrading(RoadNetwork network, InfiniteSurfaceHeightFacet surface, int blendDistance, int sampleRadius) {
+        Preconditions.checkArgument(blendDistance >= 0, "blendDistance must not be negative");
+        Preconditions.checkArgument(sampleRadius >= 0, "sampleRadius must not be negative");
+
+        this.network = network;
+        this.surface = surface;
+        this.blendDistance = blendDistance;
+        this.sampleRadius = sampleRadius;
+    }
+
+    /**
+     * @return the road network
+     */
+    public RoadNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * @param area the area to compute
+     * @return a height map that contains the graded roads inside the area and the terrain outside
+     */
+    public HeightMap createHeightMap(Rect2i area) {
+        int[] heights = new int[area.width() * area.height()];
+        Segments segs = collectSegments(area);
+
+        int cellsX = (area.width() + CELL_SIZE - 1) / CELL_SIZE;
+        int cellsZ = (area.height() + CELL_SIZE - 1) / CELL_SIZE;
+        int[][] grid = segs.buildGrid(area, cellsX, cellsZ);
+
+        for (int z = area.minY(); z <= area.maxY(); z++) {
+            int lz = z - area.minY();
+            int row = lz * area.width();
+            for (int x = area.minX(); x <= area.maxX(); x++) {
+                int lx = x - area.minX();
+                int[] cellSegs = grid[(lz / CELL_SIZE) * cellsX + lx / CELL_SIZE];
+                heights[row + lx] = computeHeight(segs, cellSegs, x, z);
+            }
+        }
+
+        return new AreaHeightMap(area, heights);
+    }
+
+    private Segments collectSegments(Rect2i area) {
+        int border = blendDistance + 1;
+        Rect2i expanded = area.expand(border, border);
+        int cellSize = network.getCellSize();
+        int minCx = Math.floorDiv(expanded.minX(), cellSize);
+        int minCz = Math.floorDiv(expanded.minY(), cellSize);
+        int maxCx = Math.floorDiv(expanded.maxX(), cellSize);
+        int maxCz = Math.floorDiv(expanded.maxY(), cellSize);
+
+        // vertex heights are scoped to this area and dropped afterwards
+        Map<ImmutableVector2i, Float> vertexHeights = new HashMap<>();
+
+        Segments segs = new Segments();
+        BitSet added = new BitSet();
+        for (Road road : network.getRoads(expanded)) {
+            float halfWidth = road.getWidth() * 0.5f;
+            List<RoadSegment> roadSegs = road.getSegments();
+            RoadCoverage coverage = network.getCoverage(road);
+            added.clear();
+            for (int cz = minCz; cz <= maxCz; cz++) {
+                for (int cx = minCx; cx <= maxCx; cx++) {
+                    coverage.forEachSegment(cx, cz, idx -> {
+                        if (!added.get(idx)) {
+                            added.set(idx);
+                            RoadSegment seg = roadSegs.get(idx);
+                            float h0 = vertexHeights.computeIfAbsent(seg.getStart(), this::computeVertexHeight);
+                            float h1 = vertexHeights.computeIfAbsent(seg.getEnd(), this::computeVertexHeight);
+                            segs.add(seg.getStart(), seg.getEnd(), halfWidth, h0, h1, blendDistance, area);
+                        }
+                    });
+                }
+            }
+        }
+        return segs;
+    }
+
+    private int computeHeight(Segments segs, int[] cellSegs, int x, int z) {
+        float terrain = surface.getWorld(x, z);
+        if (cellSegs.length == 0) {
+            return TeraMath.floorToInt(terrain);
+        }
+
+        float bestDist = Float.POSITIVE_INFINITY;
+        float bestHeight = terrain;
+
+        for (int seg : cellSegs) {
+            int i = seg * Segments.STRIDE;
+            float px = x - segs.data[i + 0];
+            float pz = z - segs.data[i + 1];
+            float dx = segs.data[i + 2];
+            float dz = segs.data[i + 3];
+            float t = TeraMath.clamp((px * dx + pz * dz) * segs.data[i + 4]);
+            float ex = px - t * dx;
+            float ez = pz - t * dz;
+
+            // compare distances from the road border, so that wider roads win
+            float dist = (float) Math.sqrt(ex * ex + ez * ez) - segs.data[i + 5];
+            if (dist < bestDist) {
+                float h0 = segs.data[i + 6];
+                float h1 = segs.data[i + 7];
+                bestDist = dist;
+                bestHeight = h0 + (h1 - h0) * t;
+            }
+        }
+
+        float height;
+        if (bestDist <= 0) {
+            height = bestHeight;
+        } else if (bestDist < blendDistance) {
+            float f = bestDist / blendDistance;
+            f = f * f * (3 - 2 * f);    // smooth step
+            height = bestHeight + (terrain - bestHeight) * f;
+        } else {
+            height = terrain;
+        }
+
+        return TeraMath.floorToInt(height);
+    }
+
+    private float computeVertexHeight(ImmutableVector2i pos) {
+        float sum = 0;
+        int count = 0;
+        for (int dz = -sampleRadius; dz <= sampleRadius; dz++) {
+            for (int dx = -sampleRadius; dx <= sampleRadius; dx++) {
+                sum += surface.getWorld(pos.getX() + dx, pos.getY() + dz);
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    /**
+     * The segments relevant for one area in primitive arrays.
+     */
+    private static final class Segments {
+        static final int STRIDE = 8;
+
+        float[] data = new float[16 * STRIDE];      // x0, z0, dx, dz, 1 / len^2, halfWidth, h0, h1
+        private int[] bounds = new int[16 * 4];     // minX, minZ, maxX, maxZ (incl. half width and blend distance)
+        private int count;
+
+        void add(ImmutableVector2i p0, ImmutableVector2i p1, float halfWidth, float h0, float h1,
+                 int blendDistance, Rect2i area) {
+            int reach = (int) Math.ceil(halfWidth) + blendDistance;
+            int minX = Math.min(p0.getX(), p1.getX()) - reach;
+            int minZ = Math.min(p0.getY(), p1.getY()) - reach;
+            int maxX = Math.max(p0.getX(), p1.getX()) + reach;
+            int maxZ = Math.max(p0.getY(), p1.getY()) + reach;
+
+            if (maxX < area.minX() || minX > area.maxX() || maxZ < area.minY() || minZ > area.maxY()) {
+                return;
+            }
+
+            if (count * STRIDE == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+
+            float dx = p1.getX() - p0.getX();
+            float dz = p1.getY() - p0.getY();
+            float lenSq = dx * dx + dz * dz;
+
+            int i = count * STRIDE;
+            data[i + 0] = p0.getX();
+            data[i + 1] = p0.getY();
+            data[i + 2] = dx;
+            data[i + 3] = dz;
+            data[i + 4] = (lenSq > 0) ? 1f / lenSq : 0f;
+            data[i + 5] = halfWidth;
+            data[i + 6] = h0;
+            data[i + 7] = h1;
+
+            int j = count * 4;
+            bounds[j + 0] = minX;
+            bounds[j + 1] = minZ;
+            bounds[j + 2] = maxX;
+            bounds[j + 3] = maxZ;
+            count++;
+        }
+
+        int[][] buildGrid(Rect2i area, int cellsX, int cellsZ) {
+            int[] sizes = new int[cellsX * cellsZ];
+            for (int seg = 0; seg < count; seg++) {
+                forEachCell(seg, area, cellsX, cellsZ, sizes, null);
+            }
+
+            int[][] grid = new int[sizes.length][];
+            for (int i = 0; i < sizes.length; i++) {
+                grid[i] = new int[sizes[i]];
+            }
+
+            int[] fill = new int[sizes.length];
+            for (int seg = 0; seg < count; seg++) {
+                forEachCell(seg, area, cellsX, cellsZ, fill, grid);
+            }
+            return grid;
+        }
+
+        /**
+         * Increments the counter of every cell that the segment reaches and stores the segment in the grid, if given.
+         */
+        private void forEachCell(int seg, Rect2i area, int cellsX, int cellsZ, int[] counters, int[][] grid) {
+            int j = seg * 4;
+            int minCx = Math.max(0, (bounds[j + 0] - area.minX()) / CELL_SIZE);
+            int minCz = Math.max(0, (bounds[j + 1] - area.minY()) / CELL_SIZE);
+            int maxCx = Math.min(cellsX - 1, (bounds[j + 2] - area.minX()) / CELL_SIZE);
+            int maxCz = Math.min(cellsZ - 1, (bounds[j + 3] - area.minY()) / CELL_SIZE);
+            for (int cz = minCz; cz <= maxCz; cz++) {
+                for (int cx = minCx; cx <= maxCx; cx++) {
+                    int cell = cz * cellsX + cx;
+                    if (grid != null) {
+                        grid[cell][counters[cell]] = seg;
+                    }
+                    counters[cell]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Provides precomputed values inside an area and falls back to the terrain outside.
+     */
+    private final class AreaHeightMap implements RowHeightMap {
+
+        private final Rect2i area;
+        private final int[] heights;
+
+        AreaHeightMap(Rect2i area, int[] heights) {
+            this.area = area;
+            this.heights = heights;
+        }
+
+        @Override
+        public int apply(BaseVector2i pos) {
+            return apply(pos.getX(), pos.getY());
+        }
+
+        @Override
+        public int apply(int x, int z) {
+            if (!area.contains(x, z)) {
+                return TeraMath.floorToInt(surface.getWorld(x, z));
+            }
+
+            int lx = x - area.minX();
+            int lz = z - area.minY();
+            return heights[lz * area.width() + lx];
+        }
+
+        @Override
+        public void readRow(int x0, int x1, int z, int[] buffer) {
+            if (z < area.minY() || z > area.maxY() || x0 < area.minX() || x1 > area.maxX()) {
+                for (int x = x0; x <= x1; x++) {
+                    buffer[x - x0] = apply(x, z);
+                }
+                return;
+            }
+
+            int start = (z - area.minY()) * area.width() + x0 - area.minX();
+            System.arraycopy(heights, start, buffer, 0, x1 - x0 + 1);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.surface;
+
+import org.terasology.commonworld.heightmap.HeightMap;
+
+/**
+ * A {@link HeightMap} that can provide a whole row of heights in one call.
+ */
+public interface RowHeightMap extends HeightMap {
+
+    /**
+     * @param x0 the first x coordinate (inclusive)
+     * @param x1 the last x coordinate (inclusive)
+     * @param z the z coordinate
+     * @param buffer receives the heights, starting at index 0
+     */
+    void readRow(int x0, int x1, int z, int[] buffer);
+
+    /**
+     * Reads a row of heights from any height map. Falls back to one call per column
+     * if the height map is not a {@link RowHeightMap}.
+     * @param hm the height map
+     * @param x0 the first x coordinate (inclusive)
+     * @param x1 the last x coordinate (inclusive)
+     * @param z the z coordinate
+     * @param buffer receives the heights, starting at index 0
+     */
+    static void readRow(HeightMap hm, int x0, int x1, int z, int[] buffer) {
+        if (hm instanceof RowHeightMap) {
+            ((RowHeightMap) hm).readRow(x0, x1, z, buffer);
+        } else {
+            for (int x = x0; x <= x1; x++) {
+                buffer[x - x0] = hm.apply(x, z);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.bldg.gen;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.metrics.AllocationProfiler;
+import org.terasology.cities.parcels.DefaultParcel;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.parcels.Zone;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.geom.Rect2i;
+
+/**
+ * Tests the {@link AllocationProfilingBuildingGenerator} class.
+ */
+public class AllocationProfilingBuildingGeneratorTest {
+
+    private final Parcel parcel = new DefaultParcel(Rect2i.createFromMinAndSize(0, 0, 20, 16), Orientation.NORTH, Zone.GOVERNMENTAL);
+
+    @After
+    public void cleanup() {
+        if (AllocationProfiler.isSupported()) {
+            AllocationProfiler.setEnabled(false);
+        }
+        AllocationProfiler.clear();
+    }
+
+    @Test
+    public void testDisabled() {
+        BuildingGenerator generator = new AllocationProfilingBuildingGenerator(new TownHallGenerator());
+        Assert.assertNotNull(generator.generate(parcel, HeightMaps.constant(3)));
+        Assert.assertEquals(0, AllocationProfiler.getCount("TownHallGenerator"));
+    }
+
+    @Test
+    public void testRegistry() {
+        if (!AllocationProfiler.isSupported()) {
+            return;
+        }
+
+        AllocationProfiler.setEnabled(true);
+        BuildingGeneratorRegistry registry = BuildingGeneratorRegistry.createDefault(1234);
+        Assert.assertNotNull(registry.generate(parcel, HeightMaps.constant(3)));
+        Assert.assertNotNull(registry.generate(parcel, HeightMaps.constant(3)));
+        Assert.assertEquals(2, AllocationProfiler.getCount("TownHallGenerator"));
+        Assert.assertTrue(AllocationProfiler.getBytes("TownHallGenerator") > 0);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.bldg.gen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.parcels.DefaultParcel;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.parcels.Zone;
+import org.terasology.commonworld.Orientation;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.utilities.random.MersenneRandom;
+import org.terasology.utilities.random.Random;
+
+/**
+ * Tests the {@link BuildingGeneratorRegistry} class.
+ */
+public class BuildingGeneratorRegistryTest {
+
+    private final BuildingGenerator small = new RectHouseGenerator();
+    private final BuildingGenerator medium = new RectHouseGenerator();
+    private final BuildingGenerator large = new TownHallGenerator();
+
+    private final BuildingGeneratorRegistry registry = new BuildingGeneratorRegistry()
+            .register(Zone.RESIDENTIAL, small, 1f, 8, 16)
+            .register(Zone.RESIDENTIAL, medium, 3f, 12, 24)
+            .register(Zone.GOVERNMENTAL, large, 1f, 24, Integer.MAX_VALUE);
+
+    @Test
+    public void testFootprint() {
+        Random rng = new MersenneRandom(1234);
+        Assert.assertSame(small, registry.select(parcel(10, 14, Zone.RESIDENTIAL), rng));
+        Assert.assertSame(medium, registry.select(parcel(20, 14, Zone.RESIDENTIAL), rng));
+        Assert.assertSame(large, registry.select(parcel(30, 24, Zone.GOVERNMENTAL), rng));
+        Assert.assertNull(registry.select(parcel(6, 14, Zone.RESIDENTIAL), rng));
+        Assert.assertNull(registry.select(parcel(20, 20, Zone.GOVERNMENTAL), rng));
+        Assert.assertNull(registry.select(parcel(20, 20, Zone.COMMERCIAL), rng));
+    }
+
+    @Test
+    public void testWeights() {
+        Random rng = new MersenneRandom(1234);
+        Parcel parcel = parcel(14, 14, Zone.RESIDENTIAL);
+        int runs = 10000;
+        int count = 0;
+        for (int i = 0; i < runs; i++) {
+            if (registry.select(parcel, rng) == medium) {
+                count++;
+            }
+        }
+        Assert.assertEquals(0.75, count / (double) runs, 0.02);
+    }
+
+    @Test
+    public void testFeasible() {
+        BuildingGeneratorRegistry defaults = BuildingGeneratorRegistry.createDefault(1234);
+        List<Parcel> parcels = Arrays.asList(
+                parcel(14, 14, Zone.CLERICAL),          // too small for a church
+                parcel(16, 24, Zone.CLERICAL),
+                parcel(12, 12, Zone.COMMERCIAL),        // falls back to a house
+                parcel(24, 12, Zone.COMMERCIAL),        // too long for a house, too narrow for a market
+                parcel(5, 5, Zone.RESIDENTIAL),
+                parcel(16, 16, Zone.GOVERNMENTAL));
+
+        BitSet feasible = defaults.getFeasible(parcels);
+        Assert.assertEquals("{1, 2, 5}", feasible.toString());
+        Assert.assertNull(defaults.select(parcels.get(0), new MersenneRandom(1234)));
+        Assert.assertTrue(defaults.select(parcels.get(2), new MersenneRandom(1234)) instanceof RectHouseGenerator);
+    }
+
+    @Test
+    public void testManyCombinations() throws Exception {
+        // every parcel size fits a different combination of entries
+        BuildingGeneratorRegistry many = new BuildingGeneratorRegistry();
+        List<BuildingGenerator> generators = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            BuildingGenerator generator = new RectHouseGenerator();
+            generators.add(generator);
+            many.register(Zone.RESIDENTIAL, generator, 1f, 10 + i, Integer.MAX_VALUE);
+        }
+
+        // concurrent first selections must agree
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    Random rng = new MersenneRandom(1234);
+                    for (int run = 0; run < 50; run++) {
+                        for (int k = 0; k < 20; k++) {
+                            int index = generators.indexOf(many.select(parcel(10 + k, 15 + k, Zone.RESIDENTIAL), rng));
+                            Assert.assertTrue("size " + (10 + k) + ": " + index, index >= 0 && index <= k);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Parcel parcel(int width, int height, Zone zone) {
+        return new DefaultParcel(Rect2i.createFromMinAndSize(0, 0, width, height), Orientation.NORTH, zone);
+    }
+}
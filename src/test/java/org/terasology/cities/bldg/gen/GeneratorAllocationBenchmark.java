@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.bldg.gen;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.cities.bldg.Building;
+import org.terasology.cities.bldg.BuildingPart;
+import org.terasology.cities.metrics.AllocationProfiler;
+import org.terasology.cities.parcels.DefaultParcel;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.parcels.Zone;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.geom.Rect2i;
+
+/**
+ * Measures the number of bytes that are allocated per generated building, including doors, windows and decorations.
+ * It is a benchmark, not a unit test, so it is ignored by default. It requires a JVM that supports
+ * thread allocation measurement (e.g. HotSpot).
+ */
+@Ignore("Benchmark - run manually")
+public class GeneratorAllocationBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneratorAllocationBenchmark.class);
+
+    private static final int WARMUP = 2000;
+    private static final int RUNS = 10000;
+
+    private final HeightMap hm = HeightMaps.constant(10);
+    private final Parcel parcel = new DefaultParcel(Rect2i.createFromMinAndSize(0, 0, 40, 30), Orientation.NORTH, Zone.RESIDENTIAL);
+
+    @After
+    public void cleanup() {
+        AllocationProfiler.setEnabled(false);
+        AllocationProfiler.clear();
+    }
+
+    @Test
+    public void testAllocations() {
+        Assert.assertTrue("Allocation measurement is not supported by this JVM", AllocationProfiler.isSupported());
+        AllocationProfiler.setEnabled(true);
+
+        measure(new SimpleChurchGenerator(1234));
+        measure(new TownHallGenerator());
+        measure(new RectHouseGenerator());
+        measure(new CommercialBuildingGenerator(1234));
+
+        logger.info("Allocated bytes per building:\n{}", AllocationProfiler.toJson());
+    }
+
+    private void measure(BuildingGenerator gen) {
+        String name = gen.getClass().getSimpleName();
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += generate(gen);
+        }
+
+        for (int i = 0; i < RUNS; i++) {
+            long before = AllocationProfiler.getAllocatedBytes();
+            sink += generate(gen);
+            AllocationProfiler.record(name, AllocationProfiler.getAllocatedBytes() - before);
+        }
+
+        Assert.assertTrue(sink > 0);
+        Assert.assertTrue(AllocationProfiler.getBytes(name) > 0);
+    }
+
+    private int generate(BuildingGenerator gen) {
+        Building bldg = gen.generate(parcel, hm);
+        int count = 0;
+        for (BuildingPart part : bldg.getParts()) {
+            count += part.getDoors().size() + part.getWindows().size() + part.getDecorations().size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.bldg.gen;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.parcels.DefaultParcel;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.parcels.Zone;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.utilities.random.MersenneRandom;
+
+/**
+ * Tests the {@link TracingBuildingGenerator} class.
+ */
+public class TracingBuildingGeneratorTest {
+
+    private final Parcel parcel = new DefaultParcel(Rect2i.createFromMinAndSize(0, 0, 20, 16), Orientation.NORTH, Zone.GOVERNMENTAL);
+
+    @After
+    public void cleanup() {
+        Tracer.setEnabled(false);
+        Tracer.clear();
+    }
+
+    @Test
+    public void testSpans() throws IOException {
+        Tracer.setEnabled(true);
+        BuildingGenerator generator = new TracingBuildingGenerator(new TownHallGenerator());
+        Assert.assertTrue(generator.canGenerate(parcel));
+        Assert.assertNotNull(generator.generate(parcel, HeightMaps.constant(3)));
+        Assert.assertEquals(1, Tracer.getEventCount());
+
+        StringBuilder sb = new StringBuilder();
+        Tracer.writeChromeTrace(sb);
+        Assert.assertTrue(sb.toString(), sb.toString().contains("\"name\": \"TownHallGenerator\", \"cat\": \"generator\""));
+    }
+
+    @Test
+    public void testRegistry() throws IOException {
+        Tracer.setEnabled(true);
+        BuildingGeneratorRegistry registry = BuildingGeneratorRegistry.createDefault(1234);
+        Assert.assertTrue(registry.select(parcel, new MersenneRandom(1)) instanceof TownHallGenerator);
+        Assert.assertNotNull(registry.generate(parcel, HeightMaps.constant(3)));
+        Assert.assertEquals(1, Tracer.getEventCount());
+
+        // the span is named after the generator, not after the decorators
+        StringBuilder sb = new StringBuilder();
+        Tracer.writeChromeTrace(sb);
+        Assert.assertTrue(sb.toString(), sb.toString().contains("\"name\": \"TownHallGenerator\""));
+    }
+}
@@ -77,4 +77,41 @@ public void testMoveWest() {
         Assert.assertEquals(new Vector2i(40, 60), cur.getPos());
         Assert.assertEquals(Rect2i.createFromMinAndSize(21, 49, 18, 14), cur.rect(-2, 2, 14, 18));
     }
+
+    @Test
+    public void testTransform() {
+        Turtle cur = new Turtle(10, 20, Orientation.EAST);
+        Vector2i out = new Vector2i();
+        Assert.assertSame(out, cur.transform(-5, 10, out));
+        Assert.assertEquals(new Vector2i(20, 15), out);
+        Assert.assertEquals(out, cur.transform(-5, 10));
+        Assert.assertEquals(20, cur.transformX(-5, 10));
+        Assert.assertEquals(15, cur.transformY(-5, 10));
+    }
+
+    @Test
+    public void testSet() {
+        Turtle cur = new Turtle(10, 20, Orientation.EAST);
+        Turtle copy = new Turtle(0, 0, Orientation.NORTH).set(cur);
+        cur.move(3, 4).rotate(90);
+
+        Assert.assertEquals(Orientation.EAST, copy.getOrientation());
+        Assert.assertEquals(new Vector2i(10, 20), copy.getPos(new Vector2i()));
+    }
+
+    @Test
+    public void testAdjustRect() {
+        for (Orientation o : Orientation.values()) {
+            if (o.getDir().getX() != 0 && o.getDir().getY() != 0) {
+                continue;   // only cardinal directions
+            }
+            Turtle cur = new Turtle(0, 0, o);
+            Vector2i max = Edges.getCorner(rect, o.getRotated(45));
+            Vector2i min = Edges.getCorner(rect, o.getRotated(225));
+            Vector2i lowerLeft = new Turtle(min, o).transform(-1, 2);
+            Vector2i upperRight = new Turtle(max, o).transform(3, -4);
+            Rect2i expected = Rect2i.createEncompassing(lowerLeft, upperRight);
+            Assert.assertEquals(expected, cur.adjustRect(rect, -1, 2, 3, -4));
+        }
+    }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AllocationProfiler} class.
+ */
+public class AllocationProfilerTest {
+
+    @After
+    public void cleanup() {
+        if (AllocationProfiler.isSupported()) {
+            AllocationProfiler.setEnabled(false);
+        }
+        AllocationProfiler.clear();
+    }
+
+    @Test
+    public void testRecord() {
+        AllocationProfiler.record("Generator \"A\"", 100);
+        AllocationProfiler.record("Generator \"A\"", 300);
+        AllocationProfiler.record("B", 50);
+        Assert.assertEquals(2, AllocationProfiler.getCount("Generator \"A\""));
+        Assert.assertEquals(400, AllocationProfiler.getBytes("Generator \"A\""));
+        Assert.assertEquals(0, AllocationProfiler.getCount("C"));
+
+        String json = AllocationProfiler.toJson();
+        Assert.assertTrue(json, json.contains("\"Generator \\\"A\\\"\": {\"count\": 2, \"bytes\": 400, \"bytesPerCall\": 200}"));
+        Assert.assertTrue(json, json.contains("\"B\": {\"count\": 1, \"bytes\": 50, \"bytesPerCall\": 50}"));
+
+        AllocationProfiler.clear();
+        Assert.assertEquals(0, AllocationProfiler.getCount("B"));
+    }
+
+    @Test
+    public void testMeasure() {
+        if (!AllocationProfiler.isSupported()) {
+            Assert.assertEquals(-1, AllocationProfiler.getAllocatedBytes());
+            return;
+        }
+
+        AllocationProfiler.setEnabled(true);
+        long before = AllocationProfiler.getAllocatedBytes();
+        byte[] data = new byte[100000];
+        long after = AllocationProfiler.getAllocatedBytes();
+        Assert.assertTrue(after - before >= data.length);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.metrics;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link Tracer} class.
+ */
+public class TracerTest {
+
+    @After
+    public void cleanup() {
+        Tracer.setEnabled(false);
+        Tracer.clear();
+    }
+
+    @Test
+    public void testDisabled() {
+        Tracer.Span span = Tracer.begin("generator", "Test");
+        Assert.assertNotNull(span);
+        span.close();
+        Assert.assertEquals(0, Tracer.getEventCount());
+    }
+
+    @Test
+    public void testNested() throws IOException {
+        Tracer.setEnabled(true);
+        Tracer.Span outer = Tracer.begin("generator", "Outer");
+        Tracer.Span inner = Tracer.begin("part", "Inner \"quoted\"");
+        inner.close();
+        outer.close();
+        Assert.assertEquals(2, Tracer.getEventCount());
+
+        StringBuilder sb = new StringBuilder();
+        Tracer.writeChromeTrace(sb);
+        String json = sb.toString();
+        Assert.assertTrue(json, json.contains("\"name\": \"Outer\", \"cat\": \"generator\", \"ph\": \"X\""));
+        Assert.assertTrue(json, json.contains("\"name\": \"Inner \\\"quoted\\\"\", \"cat\": \"part\""));
+    }
+
+    @Test
+    public void testWrongOrder() {
+        Tracer.setEnabled(true);
+        Tracer.Span outer = Tracer.begin("generator", "Outer");
+        Tracer.Span inner = Tracer.begin("part", "Inner");
+        outer.close();
+        inner.close();
+        Assert.assertEquals(2, Tracer.getEventCount());
+
+        // closing twice is ignored
+        outer.close();
+        Assert.assertEquals(2, Tracer.getEventCount());
+    }
+
+    @Test
+    public void testCloseInFinally() {
+        Tracer.setEnabled(true);
+        Tracer.Span span = Tracer.begin("generator", "Failing");
+        try {
+            Tracer.begin("part", "Unclosed");
+            throw new IllegalArgumentException("original");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("original", e.getMessage());
+        } finally {
+            span.close();
+        }
+        Assert.assertEquals(1, Tracer.getEventCount());
+    }
+}
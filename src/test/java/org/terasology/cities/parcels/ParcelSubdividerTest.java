@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.parcels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.roads.Road;
+import org.terasology.cities.roads.RoadNetwork;
+import org.terasology.commonworld.Orientation;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector2i;
+
+/**
+ * Tests the {@link ParcelSubdivider} class.
+ * <pre>
+ *         a
+ *         |
+ *  b ---- c ---- d
+ *         |
+ *         e
+ * </pre>
+ */
+public class ParcelSubdividerTest {
+
+    private final Vector2i a = new Vector2i(0, -200);
+    private final Vector2i b = new Vector2i(-200, 0);
+    private final Vector2i c = new Vector2i(0, 0);
+    private final Vector2i d = new Vector2i(200, 0);
+    private final Vector2i e = new Vector2i(0, 200);
+
+    private final RoadNetwork network = new RoadNetwork(Arrays.asList(
+            new Road(a, c, 6f), new Road(b, c, 6f), new Road(c, d, 4f), new Road(c, e, 4f)), 32);
+
+    private final ParcelSubdivider subdivider = new ParcelSubdivider(network, c, 180, 1234);
+
+    private final Rect2i all = Rect2i.createFromMinAndSize(-256, -256, 512, 512);
+
+    @Test
+    public void testSectors() {
+        List<Parcel> parcels = subdivider.getParcels(all);
+        Assert.assertFalse(parcels.isEmpty());
+
+        // the union of the quadrants must be equal to the whole area
+        List<Parcel> union = new ArrayList<>();
+        union.addAll(subdivider.getParcels(Rect2i.createFromMinAndSize(-256, -256, 256, 256)));
+        union.addAll(subdivider.getParcels(Rect2i.createFromMinAndSize(0, -256, 256, 256)));
+        union.addAll(subdivider.getParcels(Rect2i.createFromMinAndSize(-256, 0, 256, 256)));
+        union.addAll(subdivider.getParcels(Rect2i.createFromMinAndSize(0, 0, 256, 256)));
+
+        Assert.assertEquals(parcels.size(), union.size());
+        Assert.assertTrue(union.containsAll(parcels));
+    }
+
+    @Test
+    public void testGridTown() {
+        // a 1600x1600 grid town with a road every 80 blocks, split at the crossings
+        int step = 80;
+        List<Road> roads = new ArrayList<>();
+        for (int i = -800; i <= 800; i += step) {
+            for (int j = -800; j < 800; j += step) {
+                roads.add(new Road(new Vector2i(i, j), new Vector2i(i, j + step), 4f));
+                roads.add(new Road(new Vector2i(j, i), new Vector2i(j + step, i), 4f));
+            }
+        }
+        ParcelSubdivider town = new ParcelSubdivider(new RoadNetwork(roads, 64), c, 800, 5678);
+
+        int sector = 128;
+        List<Parcel> union = new ArrayList<>();
+        for (int z = -896; z < 896; z += sector) {
+            for (int x = -896; x < 896; x += sector) {
+                union.addAll(town.getParcels(Rect2i.createFromMinAndSize(x, z, sector, sector)));
+            }
+        }
+        Assert.assertTrue(Integer.toString(union.size()), union.size() > 3000);
+
+        List<Parcel> parcels = town.getParcels(Rect2i.createFromMinAndSize(-896, -896, 1792, 1792));
+        Assert.assertEquals(parcels.size(), union.size());
+        Assert.assertTrue(union.containsAll(parcels));
+    }
+
+    @Test
+    public void testOverlaps() {
+        List<Parcel> parcels = subdivider.getParcels(all);
+        for (int i = 0; i < parcels.size(); i++) {
+            Rect2i rc = parcels.get(i).getShape();
+            Assert.assertTrue(rc.toString(), rc.width() <= ParcelSubdivider.MAX_LOT_SIZE);
+            Assert.assertTrue(rc.toString(), rc.height() <= ParcelSubdivider.MAX_LOT_SIZE);
+            Assert.assertFalse(rc.toString(), rc.contains(c));
+            for (int j = i + 1; j < parcels.size(); j++) {
+                Assert.assertFalse(rc.toString(), rc.overlaps(parcels.get(j).getShape()));
+            }
+        }
+    }
+
+    @Test
+    public void testOrientation() {
+        for (Parcel parcel : subdivider.getParcels(all)) {
+            Rect2i rc = parcel.getShape();
+            if (rc.maxX() < -3 && rc.maxY() < -3) {     // north-west quadrant
+                Orientation o = parcel.getOrientation();
+                Assert.assertTrue(o.toString(), o == Orientation.EAST || o == Orientation.SOUTH);
+            }
+        }
+    }
+
+    @Test
+    public void testZones() {
+        for (Parcel parcel : subdivider.getParcels(all)) {
+            Rect2i rc = parcel.getShape();
+            int dx = (rc.minX() + rc.maxX()) / 2;
+            int dz = (rc.minY() + rc.maxY()) / 2;
+            if (dx * dx + dz * dz > 120 * 120) {
+                Assert.assertEquals(Zone.RESIDENTIAL, parcel.getZone());
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.pregen;
+
+import static org.terasology.cities.DefaultBlockType.AIR;
+import static org.terasology.cities.DefaultBlockType.BUILDING_FLOOR;
+import static org.terasology.cities.DefaultBlockType.BUILDING_WALL;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.cities.raster.BufferRasterTarget;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link RegionFile} class.
+ */
+public class RegionFileTest {
+
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(-16, -4, 32), new Vector3i(16, 8, 16));
+
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        file = Files.createTempFile("region", ".bin");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        try (RegionFile regionFile = new RegionFile(file, region)) {
+            BufferRasterTarget target = regionFile.getTarget();
+            target.setBlock(-16, -4, 32, BUILDING_FLOOR);
+            target.setBlock(-1, 3, 47, BUILDING_WALL);
+            target.setBlock(-5, 0, 40, BUILDING_FLOOR);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(RegionFile.MAGIC, buffer.getInt());
+        Assert.assertEquals(RegionFile.VERSION, buffer.getInt());
+        Assert.assertArrayEquals(new int[] {-16, -4, 32, 16, 8, 16}, new int[] {
+                buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                buffer.getInt(), buffer.getInt(), buffer.getInt()});
+
+        short[] ids = new short[16 * 8 * 16];
+        buffer.asShortBuffer().get(ids);
+        buffer.position(buffer.position() + ids.length * Short.BYTES);
+
+        int count = buffer.getInt();
+        List<String> palette = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            palette.add(new String(name, StandardCharsets.UTF_8));
+        }
+        Assert.assertFalse(buffer.hasRemaining());
+        Assert.assertEquals(Arrays.asList(AIR.toString(), BUILDING_FLOOR.toString(), BUILDING_WALL.toString()), palette);
+
+        Assert.assertEquals(BUILDING_FLOOR.toString(), palette.get(ids[indexOf(-16, -4, 32)]));
+        Assert.assertEquals(BUILDING_WALL.toString(), palette.get(ids[indexOf(-1, 3, 47)]));
+        Assert.assertEquals(BUILDING_FLOOR.toString(), palette.get(ids[indexOf(-5, 0, 40)]));
+
+        int written = 0;
+        for (short id : ids) {
+            if (id != 0) {
+                written++;
+            }
+        }
+        Assert.assertEquals(3, written);
+    }
+
+    private int indexOf(int x, int y, int z) {
+        int lx = x - region.minX();
+        int ly = y - region.minY();
+        int lz = z - region.minZ();
+        return (ly * region.sizeZ() + lz) * region.sizeX() + lx;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import static org.terasology.cities.DefaultBlockType.AIR;
+import static org.terasology.cities.DefaultBlockType.BUILDING_FLOOR;
+import static org.terasology.cities.DefaultBlockType.BUILDING_WALL;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link BufferRasterTarget} class.
+ */
+public class BufferRasterTargetTest {
+
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(-16, -4, 32), new Vector3i(16, 8, 16));
+
+    @Test
+    public void testSetAndGet() {
+        BufferRasterTarget target = BufferRasterTarget.allocateDirect(region);
+
+        target.setBlock(-16, -4, 32, BUILDING_FLOOR);
+        target.setBlock(-1, 3, 47, BUILDING_WALL);
+        target.setBlock(-5, 0, 40, BUILDING_FLOOR);
+
+        Assert.assertEquals(BUILDING_FLOOR, target.getBlockType(-16, -4, 32));
+        Assert.assertEquals(BUILDING_WALL, target.getBlockType(-1, 3, 47));
+        Assert.assertEquals(BUILDING_FLOOR, target.getBlockType(-5, 0, 40));
+        Assert.assertEquals(AIR, target.getBlockType(-6, 0, 40));
+        Assert.assertEquals(Arrays.asList(AIR, BUILDING_FLOOR, BUILDING_WALL), target.getPalette());
+    }
+
+    @Test
+    public void testOutsideIgnored() {
+        BufferRasterTarget target = BufferRasterTarget.allocateDirect(region);
+
+        target.setBlock(0, 0, 40, BUILDING_WALL);
+        target.setBlock(-5, 4, 40, BUILDING_WALL);
+
+        Assert.assertEquals(Arrays.asList(AIR), target.getPalette());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBufferTooSmall() {
+        new BufferRasterTarget(region, ByteBuffer.allocate(16));
+    }
+}
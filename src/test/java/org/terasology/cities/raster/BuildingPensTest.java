@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.BaseVector2i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link BuildingPens} class.
+ */
+public class BuildingPensTest {
+
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(0, 4, 0), new Vector3i(16, 10, 16));
+
+    private final HeightMap terrain = new HeightMap() {
+
+        @Override
+        public int apply(BaseVector2i pos) {
+            return apply(pos.getX(), pos.getY());
+        }
+
+        @Override
+        public int apply(int x, int z) {
+            return new Random(x * 31 + z).nextInt(18);
+        }
+    };
+
+    /**
+     * Floors must not depend on the traversal order, also if the terrain or the floor level
+     * are below or above the target's height range.
+     */
+    @Test
+    public void testFloorTraversalOrder() {
+        Rect2i rect = Rect2i.createFromMinAndSize(2, 3, 11, 9);
+        for (int baseHeight : new int[] {2, 5, 9, 14, 16}) {
+            BufferRasterTarget columns = createTarget();
+            BufferRasterTarget layers = createTarget();
+
+            draw(new OrderedRasterTarget(columns, TraversalOrder.COLUMNS), rect, baseHeight);
+            draw(new OrderedRasterTarget(layers, TraversalOrder.LAYERS), rect, baseHeight);
+
+            for (int z = region.minZ(); z <= region.maxZ(); z++) {
+                for (int y = region.minY(); y <= region.maxY(); y++) {
+                    for (int x = region.minX(); x <= region.maxX(); x++) {
+                        Assert.assertEquals("base height " + baseHeight + " at " + x + "/" + y + "/" + z,
+                                columns.getBlockType(x, y, z), layers.getBlockType(x, y, z));
+                    }
+                }
+            }
+        }
+    }
+
+    private BufferRasterTarget createTarget() {
+        // fill with something other than air to see where air is written
+        BufferRasterTarget target = BufferRasterTarget.allocateDirect(region);
+        for (int z = region.minZ(); z <= region.maxZ(); z++) {
+            for (int y = region.minY(); y <= region.maxY(); y++) {
+                for (int x = region.minX(); x <= region.maxX(); x++) {
+                    target.setBlock(x, y, z, DefaultBlockType.FENCE);
+                }
+            }
+        }
+        return target;
+    }
+
+    private void draw(RasterTarget target, Rect2i rect, int baseHeight) {
+        Pen pen = BuildingPens.floorPen(target, terrain, baseHeight, DefaultBlockType.BUILDING_FLOOR);
+        RasterUtil.fillRect(pen, rect);
+        pen.drawSpan(0, 15, 14);
+        pen.draw(15, 0);
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import static org.terasology.cities.DefaultBlockType.AIR;
+import static org.terasology.cities.DefaultBlockType.BUILDING_FLOOR;
+import static org.terasology.cities.DefaultBlockType.BUILDING_WALL;
+import static org.terasology.cities.DefaultBlockType.ROOF_HIP;
+import static org.terasology.cities.DefaultBlockType.SIMPLE_DOOR;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.BlockType;
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.bldg.Building;
+import org.terasology.cities.bldg.DefaultBuilding;
+import org.terasology.cities.bldg.RectBuildingPart;
+import org.terasology.cities.bldg.gen.BuildingGeneratorRegistry;
+import org.terasology.cities.bldg.gen.RectHouseGenerator;
+import org.terasology.cities.bldg.gen.TracingBuildingGenerator;
+import org.terasology.cities.door.SimpleDoor;
+import org.terasology.cities.metrics.RasterMetrics;
+import org.terasology.cities.metrics.Tracer;
+import org.terasology.cities.model.roof.HipRoof;
+import org.terasology.cities.parcels.DefaultParcel;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.parcels.Zone;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector2i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link BuildingRasterizer} class.
+ */
+public class BuildingRasterizerTest {
+
+    private static final Pattern EVENT = Pattern.compile("\\{\"name\": \"([^\"]*)\", \"cat\": \"([^\"]*)\", \"ph\": \"X\", \"ts\": ([0-9.]+), \"dur\": ([0-9.]+)");
+
+    private final HeightMap terrain = HeightMaps.constant(2);
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(0, 0, 0), new Vector3i(64, 32, 64));
+
+    @Test
+    public void testRectPart() {
+        Rect2i rc = Rect2i.createFromMinAndSize(10, 20, 8, 6);
+        DefaultBuilding building = new DefaultBuilding(Orientation.NORTH);
+        building.addPart(new RectBuildingPart(rc, new HipRoof(rc, rc.expand(1, 1), 7, 1, 9), 3, 4));
+
+        BufferRasterTarget target = BufferRasterTarget.allocateDirect(region);
+        new BuildingRasterizer(Collections.singletonList(building), terrain).raster(target);
+
+        Assert.assertEquals(BUILDING_FLOOR, target.getBlockType(12, 2, 22));
+        Assert.assertEquals(AIR, target.getBlockType(12, 3, 22));
+        Assert.assertEquals(BUILDING_WALL, target.getBlockType(10, 3, 22));
+        Assert.assertEquals(BUILDING_WALL, target.getBlockType(17, 6, 25));
+        Assert.assertEquals(AIR, target.getBlockType(17, 3, 26));
+
+        // the eaves are one block high, the roof rises towards the center
+        Assert.assertEquals(ROOF_HIP, target.getBlockType(9, 7, 19));
+        Assert.assertEquals(AIR, target.getBlockType(9, 8, 19));
+        Assert.assertEquals(ROOF_HIP, target.getBlockType(13, 9, 23));
+        Assert.assertEquals(AIR, target.getBlockType(13, 10, 23));
+    }
+
+    @Test
+    public void testOverlappingParts() {
+        // the tower overlaps the wall of the hall by one column
+        Rect2i hall = Rect2i.createFromMinAndSize(10, 10, 12, 8);
+        Rect2i tower = Rect2i.createFromMinAndSize(21, 12, 5, 5);
+        DefaultBuilding building = new DefaultBuilding(Orientation.NORTH);
+        building.addPart(new RectBuildingPart(hall, null, 3, 4));
+        building.addPart(new RectBuildingPart(tower, null, 3, 10));
+
+        AtomicInteger duplicates = new AtomicInteger();
+        BufferRasterTarget target = createDuplicateCounter(duplicates, true);
+        new BuildingRasterizer(Collections.singletonList(building), terrain).raster(target);
+
+        Assert.assertEquals(0, duplicates.get());
+
+        // the taller tower claims the shared wall, the hall's wall continues outside of the tower
+        Assert.assertEquals(BUILDING_WALL, target.getBlockType(21, 12, 14));
+        Assert.assertEquals(AIR, target.getBlockType(21, 12, 11));
+        Assert.assertEquals(BUILDING_WALL, target.getBlockType(21, 6, 11));
+        Assert.assertEquals(BUILDING_WALL, target.getBlockType(21, 6, 17));
+
+        // the hall's floor does not reach into the tower
+        Assert.assertEquals(BUILDING_WALL, target.getBlockType(21, 3, 14));
+        Assert.assertEquals(AIR, target.getBlockType(22, 3, 14));
+    }
+
+    @Test
+    public void testOverlappingRoofs() {
+        // the eaves of both roofs reach into the other part
+        Rect2i hall = Rect2i.createFromMinAndSize(10, 10, 12, 8);
+        Rect2i tower = Rect2i.createFromMinAndSize(21, 12, 5, 5);
+        DefaultBuilding building = new DefaultBuilding(Orientation.NORTH);
+        building.addPart(new RectBuildingPart(hall, new HipRoof(hall, hall.expand(1, 1), 7, 1, 9), 3, 4));
+        building.addPart(new RectBuildingPart(tower, new HipRoof(tower, tower.expand(1, 1), 13, 1, 15), 3, 10));
+
+        AtomicInteger duplicates = new AtomicInteger();
+        BufferRasterTarget target = createDuplicateCounter(duplicates, true);
+        new BuildingRasterizer(Collections.singletonList(building), terrain).raster(target);
+
+        Assert.assertEquals(0, duplicates.get());
+
+        // the hall's eaves stop at the tower, but continue next to it
+        Assert.assertEquals(AIR, target.getBlockType(22, 7, 14));
+        Assert.assertEquals(ROOF_HIP, target.getBlockType(22, 7, 10));
+
+        // the tower's eaves stop at the hall, but not on the other side
+        Assert.assertEquals(AIR, target.getBlockType(20, 13, 14));
+        Assert.assertEquals(ROOF_HIP, target.getBlockType(26, 13, 14));
+    }
+
+    @Test
+    public void testStructures() {
+        // two buildings with two parts each, including roofs and doors
+        List<Building> buildings = new ArrayList<>();
+        for (int offset : new int[] {0, 30}) {
+            Rect2i hall = Rect2i.createFromMinAndSize(10 + offset, 10, 12, 8);
+            Rect2i tower = Rect2i.createFromMinAndSize(21 + offset, 12, 5, 5);
+            DefaultBuilding building = new DefaultBuilding(Orientation.NORTH);
+            RectBuildingPart part = new RectBuildingPart(hall, new HipRoof(hall, hall.expand(1, 1), 7, 1, 9), 3, 4);
+            part.addDoor(new SimpleDoor(Orientation.NORTH, new Vector2i(15 + offset, 10), 3, 5));
+            building.addPart(part);
+            building.addPart(new RectBuildingPart(tower, new HipRoof(tower, tower.expand(1, 1), 13, 1, 15), 3, 10));
+            buildings.add(building);
+        }
+
+        RasterMetrics metrics = new RasterMetrics();
+        MeteredRasterTarget target = new MeteredRasterTarget(BufferRasterTarget.allocateDirect(region), metrics);
+        new BuildingRasterizer(buildings, terrain).raster(target);
+        target.finish();
+
+        // one scope per building that covers all writes of parts, roofs and doors
+        long voxels = 0;
+        for (DefaultBlockType type : DefaultBlockType.values()) {
+            voxels += metrics.getVoxels(type);
+        }
+        Assert.assertEquals(2, metrics.getStructureCount("Building"));
+        Assert.assertEquals(voxels, metrics.getStructureVoxels("Building"));
+        Assert.assertTrue(metrics.getVoxels(ROOF_HIP) > 0);
+        Assert.assertTrue(metrics.getVoxels(SIMPLE_DOOR) > 0);
+    }
+
+    @Test
+    public void testGeneratedWithoutDuplicates() {
+        // the church and the town hall consist of several overlapping parts with roofs
+        BuildingGeneratorRegistry registry = BuildingGeneratorRegistry.createDefault(1234);
+        List<Parcel> parcels = new ArrayList<>();
+        parcels.add(new DefaultParcel(Rect2i.createFromMinAndSize(2, 2, 30, 30), Orientation.SOUTH, Zone.CLERICAL));
+        parcels.add(new DefaultParcel(Rect2i.createFromMinAndSize(34, 2, 26, 30), Orientation.WEST, Zone.GOVERNMENTAL));
+
+        for (Parcel parcel : parcels) {
+            Building building = registry.generate(parcel, terrain);
+            AtomicInteger duplicates = new AtomicInteger();
+            BufferRasterTarget target = createDuplicateCounter(duplicates, false);   // doors and windows replace walls on purpose
+            new BuildingRasterizer(Collections.singletonList(building), terrain).raster(target);
+            Assert.assertEquals(parcel.toString(), 0, duplicates.get());
+        }
+    }
+
+    @Test
+    public void testDetailsOnDemand() {
+        Rect2i rc = Rect2i.createFromMinAndSize(10, 20, 8, 6);
+        DefaultBuilding building = new DefaultBuilding(Orientation.NORTH);
+        RectBuildingPart part = new RectBuildingPart(rc, null, 3, 4);
+        AtomicInteger expanded = new AtomicInteger();
+        part.addDetails(() -> {
+            expanded.incrementAndGet();
+            part.addDoor(new SimpleDoor(Orientation.NORTH, new Vector2i(12, 20), 3, 5));
+        });
+        building.addPart(part);
+        BuildingRasterizer rasterizer = new BuildingRasterizer(Collections.singletonList(building), terrain);
+
+        BufferRasterTarget coarse = new BufferRasterTarget(region, ByteBuffer.allocate(BufferRasterTarget.getRequiredCapacity(region))) {
+            @Override
+            public boolean isDetailed() {
+                return false;
+            }
+        };
+        rasterizer.raster(coarse);
+        Assert.assertEquals(0, expanded.get());
+        Assert.assertEquals(BUILDING_WALL, coarse.getBlockType(12, 3, 20));
+
+        BufferRasterTarget detailed = BufferRasterTarget.allocateDirect(region);
+        rasterizer.raster(detailed);
+        rasterizer.raster(detailed);
+        Assert.assertEquals(1, expanded.get());
+        Assert.assertEquals(SIMPLE_DOOR, detailed.getBlockType(12, 3, 20));
+        Assert.assertEquals(SIMPLE_DOOR, detailed.getBlockType(12, 4, 20));
+        Assert.assertEquals(BUILDING_WALL, detailed.getBlockType(12, 5, 20));
+    }
+
+    @Test
+    public void testGeneratedBuildings() {
+        BuildingGeneratorRegistry registry = BuildingGeneratorRegistry.createDefault(1234);
+        List<Parcel> parcels = new ArrayList<>();
+        parcels.add(new DefaultParcel(Rect2i.createFromMinAndSize(2, 2, 12, 14), Orientation.NORTH, Zone.RESIDENTIAL));
+        parcels.add(new DefaultParcel(Rect2i.createFromMinAndSize(20, 2, 24, 24), Orientation.EAST, Zone.COMMERCIAL));
+        parcels.add(new DefaultParcel(Rect2i.createFromMinAndSize(2, 30, 30, 30), Orientation.SOUTH, Zone.CLERICAL));
+        parcels.add(new DefaultParcel(Rect2i.createFromMinAndSize(36, 30, 26, 30), Orientation.WEST, Zone.GOVERNMENTAL));
+
+        List<Building> buildings = new ArrayList<>();
+        for (Parcel parcel : parcels) {
+            buildings.add(registry.generate(parcel, terrain));
+        }
+
+        BufferRasterTarget target = BufferRasterTarget.allocateDirect(region);
+        new BuildingRasterizer(buildings, terrain).raster(target);
+
+        for (Parcel parcel : parcels) {
+            Assert.assertTrue("No walls on " + parcel, countWalls(target, parcel.getShape()) > 0);
+        }
+    }
+
+    @Test
+    public void testTracing() throws IOException {
+        Tracer.setEnabled(true);
+        try {
+            Parcel parcel = new DefaultParcel(Rect2i.createFromMinAndSize(10, 10, 20, 20), Orientation.NORTH, Zone.RESIDENTIAL);
+            Building building = new TracingBuildingGenerator(new RectHouseGenerator()).generate(parcel, terrain);
+            new BuildingRasterizer(Collections.singletonList(building), terrain).raster(BufferRasterTarget.allocateDirect(region));
+
+            StringBuilder sb = new StringBuilder();
+            Tracer.writeChromeTrace(sb);
+            List<String[]> events = new ArrayList<>();
+            Matcher matcher = EVENT.matcher(sb);
+            while (matcher.find()) {
+                events.add(new String[] {matcher.group(1), matcher.group(2), matcher.group(3), matcher.group(4)});
+            }
+
+            Assert.assertEquals(1, count(events, "generator"));
+            Assert.assertEquals(1, count(events, "roof"));
+            Assert.assertEquals(1, count(events, "door"));
+            Assert.assertEquals(building.getParts().iterator().next().getWindows().size(), count(events, "window"));
+            Assert.assertTrue(count(events, "decoration") > 0);
+
+            // roofs and details are nested in the span of their part
+            for (String[] event : events) {
+                if (!event[1].equals("generator") && !event[1].equals("part")) {
+                    Assert.assertTrue(event[0], isNestedInPart(event, events));
+                }
+            }
+        } finally {
+            Tracer.setEnabled(false);
+            Tracer.clear();
+        }
+    }
+
+    private static int count(List<String[]> events, String category) {
+        int count = 0;
+        for (String[] event : events) {
+            if (event[1].equals(category)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isNestedInPart(String[] child, List<String[]> events) {
+        double eps = 0.002;     // start and duration are rounded separately
+        double start = Double.parseDouble(child[2]);
+        double end = start + Double.parseDouble(child[3]);
+        for (String[] event : events) {
+            if (event[1].equals("part") && event[0].equals("RectBuildingPart")) {
+                double partStart = Double.parseDouble(event[2]);
+                double partEnd = partStart + Double.parseDouble(event[3]);
+                if (partStart <= start + eps && end <= partEnd + eps) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private BufferRasterTarget createDuplicateCounter(AtomicInteger duplicates, boolean detailed) {
+        Set<Long> written = new HashSet<>();
+        return new BufferRasterTarget(region, ByteBuffer.allocate(BufferRasterTarget.getRequiredCapacity(region))) {
+            @Override
+            public void setBlock(int x, int y, int z, BlockType type) {
+                if (!written.add(((long) x << 40) | ((long) y << 20) | z)) {
+                    duplicates.incrementAndGet();
+                }
+                super.setBlock(x, y, z, type);
+            }
+
+            @Override
+            public boolean isDetailed() {
+                return detailed;
+            }
+        };
+    }
+
+    private static int countWalls(BufferRasterTarget target, Rect2i rc) {
+        int count = 0;
+        for (int z = rc.minY(); z <= rc.maxY(); z++) {
+            for (int x = rc.minX(); x <= rc.maxX(); x++) {
+                for (int y = target.getMinHeight(); y <= target.getMaxHeight(); y++) {
+                    if (target.getBlockType(x, y, z) == BUILDING_WALL) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Vector3i;
+import org.terasology.world.chunks.CoreChunk;
+
+/**
+ * Tests the {@link ChunkRasterScheduler} class.
+ */
+public class ChunkRasterSchedulerTest {
+
+    private static final int SIZE = 32;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+    private ChunkRasterScheduler scheduler;
+
+    @Before
+    public void setup() {
+        // a single worker that blocks until released, so that the queue can be filled first
+        Rasterizer recorder = target -> {
+            order.add(target.getAffectedArea().minX() / SIZE);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        scheduler = new ChunkRasterScheduler(Collections.singletonList(recorder), null, 1, 200);
+    }
+
+    @After
+    public void cleanup() {
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        CompletableFuture<CoreChunk> first = scheduler.submit(createChunk(0));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<CompletableFuture<CoreChunk>> futures = new ArrayList<>();
+        for (int cx : new int[] {2, -1, 1, -2}) {
+            futures.add(scheduler.submit(createChunk(cx)));
+        }
+
+        // the chunk at 2 is closest to the player
+        scheduler.setPlayerPositions(Collections.singletonList(new ImmutableVector2i(2 * SIZE + 20, 10)));
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<CoreChunk> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(Arrays.asList(0, 2, 1, -1, -2), order);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        CompletableFuture<CoreChunk> first = scheduler.submit(createChunk(0));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<CoreChunk> near = scheduler.submit(createChunk(1));
+        CompletableFuture<CoreChunk> far = scheduler.submit(createChunk(8));
+
+        scheduler.setPlayerPositions(Collections.singletonList(new ImmutableVector2i(0, 0)));
+        Assert.assertTrue(far.isCancelled());
+        Assert.assertFalse(near.isDone());
+
+        // requests beyond the cancel distance are not even queued
+        Assert.assertTrue(scheduler.submit(createChunk(-7)).isCancelled());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        near.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(Arrays.asList(0, 1), order);
+        Assert.assertEquals(0, scheduler.getPendingCount());
+    }
+
+    /**
+     * @param cx the chunk x coordinate (the chunk z coordinate is zero)
+     * @return a chunk that provides only its location
+     */
+    private static CoreChunk createChunk(int cx) {
+        Region3i region = Region3i.createFromMinAndSize(new Vector3i(cx * SIZE, 0, 0), new Vector3i(SIZE, SIZE, SIZE));
+        return (CoreChunk) Proxy.newProxyInstance(CoreChunk.class.getClassLoader(), new Class<?>[] {CoreChunk.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getPosition":
+                        return new Vector3i(cx, 0, 0);
+                    case "getRegion":
+                        return region;
+                    case "getChunkWorldOffsetX":
+                        return cx * SIZE;
+                    case "getChunkWorldOffsetY":
+                    case "getChunkWorldOffsetZ":
+                        return 0;
+                    case "getChunkSizeX":
+                    case "getChunkSizeY":
+                    case "getChunkSizeZ":
+                        return SIZE;
+                    case "chunkToWorldPositionY":
+                        return args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.bldg.HollowBuildingPart;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link HollowBuildingPartRasterizer} class.
+ */
+public class HollowBuildingPartRasterizerTest {
+
+    private final HeightMap terrain = HeightMaps.constant(3);
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(0, 0, 0), new Vector3i(48, 24, 48));
+    private final HollowBuildingPartRasterizer rasterizer = new HollowBuildingPartRasterizer();
+
+    @Test
+    public void testAgainstColumns() {
+        int[][] layouts = {
+            {4, 6, 20, 15},
+            {-7, 30, 25, 9},        // partly outside the target
+            {40, -3, 13, 13},       // partly outside the target
+            {10, 10, 3, 3},
+        };
+        for (int[] l : layouts) {
+            for (int radius = 1; radius <= 4; radius++) {
+                Rect2i rc = Rect2i.createFromMinAndSize(l[0], l[1], l[2], l[3]);
+                HollowBuildingPart part = new HollowBuildingPart(rc, null, 4, 9, radius);
+
+                BufferRasterTarget expected = BufferRasterTarget.allocateDirect(region);
+                rasterColumns(expected, part);
+
+                BufferRasterTarget actual = BufferRasterTarget.allocateDirect(region);
+                rasterizer.raster(actual, part, terrain);
+
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testProfilePillarsAndApex() {
+        // arches of width 3 between pillars at 0, 4 and 8, the apex leaves the top row closed
+        Assert.assertArrayEquals(new int[] {0, 3, 4, 3, 0, 3, 4, 3, 0}, rasterizer.getProfile(9, 1, 5));
+
+        // jambs of height 4 below an arc of radius 2
+        Assert.assertArrayEquals(new int[] {0, 5, 6, 7, 6, 5, 0}, rasterizer.getProfile(7, 2, 8));
+    }
+
+    @Test
+    public void testProfileCornerWalls() {
+        // the arches are centered, the remaining blocks next to the corners stay closed
+        Assert.assertArrayEquals(new int[] {0, 0, 3, 4, 3, 0, 3, 4, 3, 0, 0}, rasterizer.getProfile(11, 1, 5));
+        Assert.assertArrayEquals(new int[] {0, 3, 4, 3, 0, 3, 4, 3, 0, 0}, rasterizer.getProfile(10, 1, 5));
+
+        // too short for a single arch
+        Assert.assertArrayEquals(new int[] {0, 0, 0, 0}, rasterizer.getProfile(4, 2, 6));
+    }
+
+    @Test
+    public void testProfileLowWall() {
+        // radius >= wall height: no jambs and the arc is cut off below the top row
+        Assert.assertArrayEquals(new int[] {0, 1, 2, 2, 2, 2, 2, 1, 0, 0}, rasterizer.getProfile(10, 3, 3));
+        Assert.assertArrayEquals(new int[] {0, 0, 0, 0, 0}, rasterizer.getProfile(5, 1, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProfileKeyRange() {
+        rasterizer.getProfile(1 << 21, 1, 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProfileNegative() {
+        rasterizer.getProfile(10, -1, 5);
+    }
+
+    /**
+     * Rasterizes the part block by block as the columns of the walls.
+     * The profiles are verified separately with hand-computed values.
+     */
+    private void rasterColumns(RasterTarget target, HollowBuildingPart part) {
+        Rect2i rc = part.getShape();
+        Pen floorPen = BuildingPens.floorPen(target, terrain, part.getBaseHeight(), DefaultBlockType.BUILDING_FLOOR);
+        RasterUtil.fillRect(floorPen, rc);
+
+        int base = part.getBaseHeight();
+        int wallHeight = part.getWallHeight();
+        int[] alongX = rasterizer.getProfile(rc.width(), part.getArcRadius(), wallHeight);
+        for (int i = 0; i < rc.width(); i++) {
+            drawColumn(target, rc.minX() + i, rc.minY(), base + alongX[i], base + wallHeight);
+            drawColumn(target, rc.minX() + i, rc.maxY(), base + alongX[i], base + wallHeight);
+        }
+        int[] alongZ = rasterizer.getProfile(rc.height(), part.getArcRadius(), wallHeight);
+        for (int i = 1; i < rc.height() - 1; i++) {
+            drawColumn(target, rc.minX(), rc.minY() + i, base + alongZ[i], base + wallHeight);
+            drawColumn(target, rc.maxX(), rc.minY() + i, base + alongZ[i], base + wallHeight);
+        }
+    }
+
+    private static void drawColumn(RasterTarget target, int x, int z, int bottom, int top) {
+        if (target.getAffectedArea().contains(x, z)) {
+            for (int y = Math.max(target.getMinHeight(), bottom); y < Math.min(target.getMaxHeight() + 1, top); y++) {
+                target.setBlock(x, y, z, DefaultBlockType.BUILDING_WALL);
+            }
+        }
+    }
+
+    private void assertEquals(BufferRasterTarget expected, BufferRasterTarget actual) {
+        for (int z = region.minZ(); z <= region.maxZ(); z++) {
+            for (int y = region.minY(); y <= region.maxY(); y++) {
+                for (int x = region.minX(); x <= region.maxX(); x++) {
+                    Assert.assertEquals(x + "/" + y + "/" + z, expected.getBlockType(x, y, z), actual.getBlockType(x, y, z));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import static org.terasology.cities.DefaultBlockType.AIR;
+import static org.terasology.cities.DefaultBlockType.BUILDING_WALL;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.BlockType;
+import org.terasology.cities.bldg.Building;
+import org.terasology.cities.bldg.gen.BuildingGeneratorRegistry;
+import org.terasology.cities.parcels.DefaultParcel;
+import org.terasology.cities.parcels.Zone;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Region3i;
+import org.terasology.math.Side;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link LodRasterTarget} class.
+ */
+public class LodRasterTargetTest {
+
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(-32, 0, 64), new Vector3i(64, 32, 64));
+
+    @Test
+    public void testFinalContent() {
+        LodRasterTarget target = new LodRasterTarget(region, 4);
+
+        // the center column of cell (1, 0, 2) is at x = -32 + 4 + 2, z = 64 + 8 + 2
+        for (int y = 0; y < 4; y++) {
+            target.setBlock(-26, y, 74, BUILDING_WALL);
+        }
+        Assert.assertEquals(BUILDING_WALL, target.getBlockType(1, 0, 2));
+
+        // overwriting replaces the previous type instead of adding a vote
+        target.setBlock(-26, 0, 74, AIR);
+        target.setBlock(-26, 1, 74, AIR);
+        target.setBlock(-26, 1, 74, AIR);
+        Assert.assertEquals(AIR, target.getBlockType(1, 0, 2));
+
+        // blocks that were never written count as AIR
+        target.setBlock(-26, 4, 74, BUILDING_WALL);
+        Assert.assertEquals(AIR, target.getBlockType(1, 1, 2));
+    }
+
+    @Test
+    public void testAgainstFullResolution() {
+        HeightMap terrain = HeightMaps.constant(4);
+        BuildingGeneratorRegistry registry = BuildingGeneratorRegistry.createDefault(5678);
+        List<Building> buildings = new ArrayList<>();
+        buildings.add(registry.generate(new DefaultParcel(Rect2i.createFromMinAndSize(-30, 66, 24, 20), Orientation.NORTH, Zone.RESIDENTIAL), terrain));
+        buildings.add(registry.generate(new DefaultParcel(Rect2i.createFromMinAndSize(0, 66, 30, 30), Orientation.EAST, Zone.CLERICAL), terrain));
+        buildings.add(registry.generate(new DefaultParcel(Rect2i.createFromMinAndSize(-30, 98, 60, 28), Orientation.SOUTH, Zone.COMMERCIAL), terrain));
+        BuildingRasterizer rasterizer = new BuildingRasterizer(buildings, terrain);
+
+        CountingTarget full = new CountingTarget(BufferRasterTarget.allocateDirect(region));
+        rasterizer.raster(full);
+
+        int scale = 4;
+        LodRasterTarget lod = new LodRasterTarget(region, scale);
+        CountingTarget coarse = new CountingTarget(lod);
+        rasterizer.raster(coarse);
+
+        BufferRasterTarget buffer = (BufferRasterTarget) full.base;
+        int mismatches = 0;
+        int solid = 0;
+        for (int cy = 0; cy < lod.getCellsY(); cy++) {
+            for (int cz = 0; cz < lod.getCellsZ(); cz++) {
+                for (int cx = 0; cx < lod.getCellsX(); cx++) {
+                    int x = region.minX() + cx * scale + scale / 2;
+                    int z = region.minZ() + cz * scale + scale / 2;
+                    BlockType expected = getMostFrequent(buffer, x, cy * scale, z, scale);
+                    if (expected != AIR) {
+                        solid++;
+                    }
+                    if (expected != lod.getBlockType(cx, cy, cz)) {
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        Assert.assertTrue(solid > 0);
+        Assert.assertEquals(0, mismatches);
+
+        // the pens skip all columns but the sampled ones: 1 in scale^2 for areas, about 1 in scale for walls
+        Assert.assertTrue(coarse.writes * scale * 2 <= full.writes);
+    }
+
+    /**
+     * @return the most frequent type in the column, ties are broken in favor of the lower block
+     */
+    private static BlockType getMostFrequent(BufferRasterTarget target, int x, int bottom, int z, int height) {
+        BlockType best = AIR;
+        int bestCount = 0;
+        for (int y = bottom; y < bottom + height; y++) {
+            BlockType type = target.getBlockType(x, y, z);
+            int count = 0;
+            for (int other = y; other < bottom + height; other++) {
+                if (target.getBlockType(x, other, z) == type) {
+                    count++;
+                }
+            }
+            if (count > bestCount) {
+                bestCount = count;
+                best = type;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts the writes and forwards them to another target. Details are never rasterized.
+     */
+    private static final class CountingTarget implements RasterTarget {
+
+        private final RasterTarget base;
+        private int writes;
+
+        CountingTarget(RasterTarget base) {
+            this.base = base;
+        }
+
+        @Override
+        public void setBlock(int x, int y, int z, BlockType type) {
+            writes++;
+            base.setBlock(x, y, z, type);
+        }
+
+        @Override
+        public void setBlock(int x, int y, int z, BlockType type, Set<Side> side) {
+            writes++;
+            base.setBlock(x, y, z, type, side);
+        }
+
+        @Override
+        public boolean isDetailed() {
+            return false;   // the same content for both targets
+        }
+
+        @Override
+        public int getSampleStride() {
+            return base.getSampleStride();
+        }
+
+        @Override
+        public Rect2i getAffectedArea() {
+            return base.getAffectedArea();
+        }
+
+        @Override
+        public Region3i getAffectedRegion() {
+            return base.getAffectedRegion();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import static org.terasology.cities.DefaultBlockType.BUILDING_FLOOR;
+import static org.terasology.cities.DefaultBlockType.BUILDING_WALL;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.BlockType;
+import org.terasology.cities.metrics.RasterMetrics;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link MeteredRasterTarget} class.
+ */
+public class MeteredRasterTargetTest {
+
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(-16, -4, 32), new Vector3i(16, 8, 16));
+
+    @Test
+    public void testCounts() {
+        RasterMetrics metrics = new RasterMetrics();
+        BufferRasterTarget buffer = BufferRasterTarget.allocateDirect(region);
+        MeteredRasterTarget target = new MeteredRasterTarget(buffer, metrics);
+
+        target.setBlock(-16, -4, 32, BUILDING_FLOOR);
+        target.setBlock(-5, 0, 40, BUILDING_FLOOR);
+        target.setBlock(-5, 0, 40, BUILDING_WALL);      // overwrite
+        target.setBlock(0, 0, 40, BUILDING_WALL);       // outside
+        target.setBlock(-5, 4, 40, BUILDING_WALL);      // above
+        target.finish();
+
+        Assert.assertEquals(2, metrics.getVoxels(BUILDING_FLOOR));
+        Assert.assertEquals(1, metrics.getVoxels(BUILDING_WALL));
+        Assert.assertEquals(1, metrics.getOverwrites());
+        Assert.assertEquals(2, metrics.getRejected());
+        Assert.assertEquals(1, metrics.getChunkTimes().getCount());
+        Assert.assertEquals(BUILDING_WALL, buffer.getBlockType(-5, 0, 40));
+    }
+
+    @Test
+    public void testRejectedNotForwarded() {
+        AtomicInteger forwarded = new AtomicInteger();
+        BufferRasterTarget buffer = new BufferRasterTarget(region, ByteBuffer.allocate(BufferRasterTarget.getRequiredCapacity(region))) {
+            @Override
+            public void setBlock(int x, int y, int z, BlockType type) {
+                forwarded.incrementAndGet();
+                super.setBlock(x, y, z, type);
+            }
+        };
+        MeteredRasterTarget target = new MeteredRasterTarget(buffer, new RasterMetrics());
+
+        target.setBlock(0, 0, 40, BUILDING_WALL);
+        target.setBlock(-5, -5, 40, BUILDING_WALL);
+        target.setBlock(-5, 0, 48, BUILDING_WALL);
+        Assert.assertEquals(0, forwarded.get());
+
+        target.setBlock(-5, 0, 47, BUILDING_WALL);
+        Assert.assertEquals(1, forwarded.get());
+    }
+
+    @Test
+    public void testOverwritesPerLayer() {
+        RasterMetrics metrics = new RasterMetrics();
+        MeteredRasterTarget target = new MeteredRasterTarget(BufferRasterTarget.allocateDirect(region), metrics);
+
+        for (int y = -4; y < 4; y++) {
+            for (int z = 32; z < 48; z++) {
+                for (int x = -16; x < 0; x++) {
+                    target.setBlock(x, y, z, BUILDING_WALL);
+                    if ((x + y + z) % 3 == 0) {
+                        target.setBlock(x, y, z, BUILDING_FLOOR);
+                    }
+                }
+            }
+        }
+        target.finish();
+
+        Assert.assertEquals(8 * 16 * 16, metrics.getVoxels(BUILDING_WALL));
+        Assert.assertEquals(metrics.getVoxels(BUILDING_FLOOR), metrics.getOverwrites());
+        Assert.assertEquals(0, metrics.getRejected());
+    }
+
+    @Test
+    public void testStructures() {
+        RasterMetrics metrics = new RasterMetrics();
+        MeteredRasterTarget target = new MeteredRasterTarget(BufferRasterTarget.allocateDirect(region), metrics);
+
+        Rasterizer wall = new TestWallRasterizer();
+        target.raster(Collections.singletonList(wall));
+        target.finish();
+
+        String json = metrics.toJson();
+        Assert.assertTrue(json, json.contains("\"TestWall\": {\"count\": 1"));
+        Assert.assertTrue(json, json.contains("\"voxels\": 8}"));
+        Assert.assertTrue(json, json.contains("\"BUILDING_WALL\": 8"));
+    }
+
+    private static class TestWallRasterizer implements Rasterizer {
+
+        @Override
+        public void raster(RasterTarget target) {
+            Pens.fill(target, -4, 4, BUILDING_WALL).draw(-8, 40);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import java.util.Set;
+
+import org.terasology.cities.BlockType;
+import org.terasology.math.Region3i;
+import org.terasology.math.Side;
+import org.terasology.math.geom.Rect2i;
+
+/**
+ * Forwards all writes, but reports a fixed traversal order.
+ */
+class OrderedRasterTarget implements RasterTarget {
+
+    private final RasterTarget base;
+    private final TraversalOrder order;
+
+    OrderedRasterTarget(RasterTarget base, TraversalOrder order) {
+        this.base = base;
+        this.order = order;
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockType type) {
+        base.setBlock(x, y, z, type);
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockType type, Set<Side> side) {
+        base.setBlock(x, y, z, type, side);
+    }
+
+    @Override
+    public TraversalOrder getTraversalOrder() {
+        return order;
+    }
+
+    @Override
+    public Rect2i getAffectedArea() {
+        return base.getAffectedArea();
+    }
+
+    @Override
+    public Region3i getAffectedRegion() {
+        return base.getAffectedRegion();
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.math.TeraMath;
+import org.terasology.math.geom.LineSegment;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector2f;
+
+/**
+ * Compares the clipping {@link RasterUtil} primitives against straightforward
+ * implementations that check every point with a {@link CheckedPen}.
+ */
+public class RasterUtilTest {
+
+    private static final int RUNS = 500;
+
+    private final Random rng = new Random(12345);
+
+    @Test
+    public void testDrawCircle() {
+        for (int i = 0; i < RUNS; i++) {
+            Rect2i area = randomArea();
+            int cx = rng.nextInt(64) - 32;
+            int cy = rng.nextInt(64) - 32;
+            int rad = rng.nextInt(20);
+
+            RecordingPen expected = new RecordingPen(area);
+            drawCircleChecked(new CheckedPen(expected), cx, cy, rad);
+
+            RecordingPen actual = new RecordingPen(area);
+            RasterUtil.drawCircle(actual, cx, cy, rad);
+
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void testFillCircle() {
+        for (int i = 0; i < RUNS; i++) {
+            Rect2i area = randomArea();
+            int cx = rng.nextInt(64) - 32;
+            int cy = rng.nextInt(64) - 32;
+            int rad = rng.nextInt(20);
+
+            RecordingPen expected = new RecordingPen(area);
+            fillCircleChecked(new CheckedPen(expected), cx, cy, rad);
+
+            RecordingPen actual = new RecordingPen(area);
+            RasterUtil.fillCircle(actual, cx, cy, rad);
+
+            assertSame(expected, actual);
+            Assert.assertEquals("every column must be drawn once", actual.points.size(), actual.count);
+        }
+    }
+
+    @Test
+    public void testDrawLine() {
+        for (int i = 0; i < RUNS; i++) {
+            Rect2i area = randomArea();
+            int x1 = rng.nextInt(100) - 50;
+            int z1 = rng.nextInt(100) - 50;
+            int x2 = rng.nextInt(100) - 50;
+            int z2 = rng.nextInt(100) - 50;
+
+            RecordingPen expected = new RecordingPen(area);
+            drawLineChecked(new CheckedPen(expected), x1, z1, x2, z2);
+
+            RecordingPen actual = new RecordingPen(area);
+            RasterUtil.drawLine(actual, x1, z1, x2, z2);
+
+            assertSame(expected, actual);
+        }
+    }
+
+    @Test
+    public void testDrawLineSegment() {
+        for (int i = 0; i < RUNS; i++) {
+            Rect2i area = randomArea();
+            int x1 = area.minX() + rng.nextInt(area.width());
+            int z1 = area.minY() + rng.nextInt(area.height());
+            int x2 = area.minX() + rng.nextInt(area.width());
+            int z2 = area.minY() + rng.nextInt(area.height());
+
+            // lines inside the area are not clipped
+            RecordingPen expected = new RecordingPen(area);
+            RasterUtil.drawLine(expected, x1, z1, x2, z2);
+
+            RecordingPen actual = new RecordingPen(area);
+            RasterUtil.drawLine(actual, new LineSegment(x1 + 0.5f, z1 + 0.5f, x2 + 0.5f, z2 + 0.5f));
+            assertSame(expected, actual);
+
+            // lines that cross the area are clipped to it
+            RecordingPen crossing = new RecordingPen(area);
+            RasterUtil.drawLine(crossing, new LineSegment(x1 - 100, z1 - 50, x2 + 100, z2 + 50));
+            Assert.assertEquals("points outside the target area", 0, crossing.outside);
+        }
+    }
+
+    @Test
+    public void testClippedLineSegment() {
+        for (int i = 0; i < RUNS; i++) {
+            Rect2i area = randomArea();
+            float minX = area.minX();
+            float minZ = area.minY();
+            float maxX = area.maxX() + 1;   // the blocks cover [min..max + 1]
+            float maxZ = area.maxY() + 1;
+
+            List<LineSegment> lines = new ArrayList<>();
+
+            // fully outside on one side
+            lines.add(new LineSegment(minX - 1 - 10 * rng.nextFloat(), minZ + 40 * rng.nextFloat(), minX - 0.5f * rng.nextFloat(), minZ + 40 * rng.nextFloat()));
+            lines.add(new LineSegment(minX + 40 * rng.nextFloat(), maxZ + 0.1f + 10 * rng.nextFloat(), minX + 40 * rng.nextFloat(), maxZ + 0.1f));
+
+            // crossing, with float endpoints far outside and inside
+            lines.add(new LineSegment(randomCoord(minX), randomCoord(minZ), randomCoord(minX), randomCoord(minZ)));
+            lines.add(new LineSegment(minX - 20 * rng.nextFloat(), minZ - 20 * rng.nextFloat(), maxX + 20 * rng.nextFloat(), maxZ + 20 * rng.nextFloat()));
+
+            // touching and running along the edges
+            lines.add(new LineSegment(minX, randomCoord(minZ), randomCoord(minX), minZ));
+            lines.add(new LineSegment(maxX, randomCoord(minZ), maxX, randomCoord(minZ)));
+            lines.add(new LineSegment(randomCoord(minX), maxZ, randomCoord(minX), maxZ));
+            lines.add(new LineSegment(minX - 5, minZ + 5, minX + 5, minZ - 5));
+            lines.add(new LineSegment(maxX - 3, maxZ + 3, maxX + 3, maxZ - 3));
+
+            for (LineSegment line : lines) {
+                RecordingPen expected = new RecordingPen(area);
+                drawLineSegmentChecked(new CheckedPen(expected), line);
+
+                RecordingPen actual = new RecordingPen(area);
+                RasterUtil.drawLine(actual, line);
+
+                Assert.assertEquals(area + " " + line.getStart() + " -> " + line.getEnd(), expected.points, actual.points);
+                Assert.assertEquals("points outside the target area", 0, actual.outside);
+            }
+        }
+    }
+
+    @Test
+    public void testRects() {
+        for (int i = 0; i < RUNS; i++) {
+            Rect2i area = randomArea();
+            Rect2i rect = Rect2i.createFromMinAndSize(rng.nextInt(64) - 32, rng.nextInt(64) - 32, rng.nextInt(20) + 1, rng.nextInt(20) + 1);
+
+            RecordingPen expectedFill = new RecordingPen(area);
+            CheckedPen checkedFill = new CheckedPen(expectedFill);
+            for (int z = rect.minY(); z <= rect.maxY(); z++) {
+                for (int x = rect.minX(); x <= rect.maxX(); x++) {
+                    checkedFill.draw(x, z);
+                }
+            }
+
+            RecordingPen actualFill = new RecordingPen(area);
+            RasterUtil.fillRect(actualFill, rect);
+            assertSame(expectedFill, actualFill);
+
+            RecordingPen expectedDraw = new RecordingPen(area);
+            CheckedPen checkedDraw = new CheckedPen(expectedDraw);
+            for (int z = rect.minY(); z <= rect.maxY(); z++) {
+                for (int x = rect.minX(); x <= rect.maxX(); x++) {
+                    if (x == rect.minX() || x == rect.maxX() || z == rect.minY() || z == rect.maxY()) {
+                        checkedDraw.draw(x, z);
+                    }
+                }
+            }
+
+            RecordingPen actualDraw = new RecordingPen(area);
+            RasterUtil.drawRect(actualDraw, rect);
+            assertSame(expectedDraw, actualDraw);
+        }
+    }
+
+    private Rect2i randomArea() {
+        return Rect2i.createFromMinAndSize(rng.nextInt(40) - 20, rng.nextInt(40) - 20, rng.nextInt(32) + 1, rng.nextInt(32) + 1);
+    }
+
+    private float randomCoord(float min) {
+        return min - 30 + 90 * rng.nextFloat();
+    }
+
+    private static void assertSame(RecordingPen expected, RecordingPen actual) {
+        Assert.assertEquals(expected.points, actual.points);
+        Assert.assertEquals("points outside the target area", 0, actual.outside);
+    }
+
+    private static void drawCircleChecked(CheckedPen pen, int cx, int cy, int rad) {
+        int d = -rad;
+        int x = rad;
+        int y = 0;
+        while (y <= x) {
+            pen.draw(cx + x, cy + y);
+            pen.draw(cx - x, cy + y);
+            pen.draw(cx - x, cy - y);
+            pen.draw(cx + x, cy - y);
+
+            pen.draw(cx + y, cy + x);
+            pen.draw(cx - y, cy + x);
+            pen.draw(cx - y, cy - x);
+            pen.draw(cx + y, cy - x);
+
+            d = d + 2 * y + 1;
+            y = y + 1;
+            if (d > 0) {
+                d = d - 2 * x + 2;
+                x = x - 1;
+            }
+        }
+    }
+
+    private static void fillCircleChecked(CheckedPen pen, int cx, int cy, int rad) {
+        for (int y = 0; y <= rad; y++) {
+            for (int x = 0; x * x + y * y <= (rad + 0.5) * (rad + 0.5); x++) {
+                pen.draw(cx + x, cy + y);
+                pen.draw(cx - x, cy + y);
+                pen.draw(cx - x, cy - y);
+                pen.draw(cx + x, cy - y);
+            }
+        }
+    }
+
+    /**
+     * The previous implementation: clip with {@link LineSegment#getClipped}, then draw the line between the clipped endpoints.
+     */
+    private static void drawLineSegmentChecked(CheckedPen pen, LineSegment line) {
+        Vector2f p0 = new Vector2f();
+        Vector2f p1 = new Vector2f();
+        if (line.getClipped(pen.getTargetArea(), p0, p1)) {
+            int x1 = TeraMath.floorToInt(p0.getX());
+            int z1 = TeraMath.floorToInt(p0.getY());
+            int x2 = TeraMath.floorToInt(p1.getX());
+            int z2 = TeraMath.floorToInt(p1.getY());
+            drawLineChecked(pen, x1, z1, x2, z2);
+        }
+    }
+
+    private static void drawLineChecked(CheckedPen pen, int x1, int z1, int x2, int z2) {
+        int dx = Math.abs(x2 - x1);
+        int dy = Math.abs(z2 - z1);
+        int sx = (x1 < x2) ? 1 : -1;
+        int sy = (z1 < z2) ? 1 : -1;
+        int err = dx - dy;
+        int x = x1;
+        int z = z1;
+
+        while (true) {
+            pen.draw(x, z);
+            if (x == x2 && z == z2) {
+                break;
+            }
+            int e2 = 2 * err;
+            if (e2 > -dy) {
+                err = err - dy;
+                x += sx;
+            }
+            if (e2 < dx) {
+                err = err + dx;
+                z += sy;
+            }
+        }
+    }
+
+    /**
+     * Records all drawn points.
+     */
+    private static class RecordingPen implements Pen {
+
+        private final Rect2i area;
+        private final Set<Long> points = new HashSet<>();
+        private int count;
+        private int outside;
+
+        RecordingPen(Rect2i area) {
+            this.area = area;
+        }
+
+        @Override
+        public void draw(int x, int z) {
+            if (!area.contains(x, z)) {
+                outside++;
+            }
+            points.add(((long) x << 32) | (z & 0xFFFFFFFFL));
+            count++;
+        }
+
+        @Override
+        public Rect2i getTargetArea() {
+            return area;
+        }
+    }
+}
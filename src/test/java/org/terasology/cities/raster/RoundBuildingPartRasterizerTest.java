@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.cities.bldg.RoundBuildingPart;
+import org.terasology.cities.model.roof.ConicRoof;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Circle;
+import org.terasology.math.geom.Vector2i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link RoundBuildingPartRasterizer} class against the per-column circle rasterization
+ * that {@link RasterUtil#fillCircle} used before the span tables were introduced.
+ */
+public class RoundBuildingPartRasterizerTest {
+
+    private final HeightMap terrain = HeightMaps.constant(3);
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(0, 0, 0), new Vector3i(40, 32, 40));
+    private final RoundBuildingPartRasterizer rasterizer = new RoundBuildingPartRasterizer();
+
+    @Test
+    public void testAgainstFillCircle() {
+        int[][] centers = {{20, 20}, {12, 35}, {32, 5}};    // inside and partly outside the target
+        for (int[] center : centers) {
+            for (int rad = 0; rad <= 7; rad++) {
+                for (int pitch = 1; pitch <= 2; pitch++) {
+                    Vector2i pos = new Vector2i(center[0], center[1]);
+                    ConicRoof roof = new ConicRoof(pos, rad + 1, 9, pitch);
+                    RoundBuildingPart part = new RoundBuildingPart(new Circle(pos.x(), pos.y(), rad), roof, 4, 5);
+
+                    BufferRasterTarget expected = BufferRasterTarget.allocateDirect(region);
+                    rasterCircles(expected, part, roof);
+
+                    BufferRasterTarget actual = BufferRasterTarget.allocateDirect(region);
+                    rasterizer.raster(actual, part, terrain);
+
+                    assertEquals(expected, actual);
+                    Assert.assertEquals(DefaultBlockType.BUILDING_WALL, actual.getBlockType(pos.x() + rad, 4, pos.y()));
+                }
+            }
+        }
+    }
+
+    private void rasterCircles(RasterTarget target, RoundBuildingPart part, ConicRoof roof) {
+        int cx = pos(part.getShape().getCenter().getX());
+        int cz = pos(part.getShape().getCenter().getY());
+        int rad = (int) part.getShape().getRadius();
+
+        Pen floorPen = BuildingPens.floorPen(target, terrain, part.getBaseHeight(), DefaultBlockType.BUILDING_FLOOR);
+        fillCircle(floorPen, cx, cz, rad);
+
+        Pen wallPen = Pens.fill(target, part.getBaseHeight(), part.getTopHeight(), DefaultBlockType.BUILDING_WALL);
+        drawRing(wallPen, cx, cz, rad);
+
+        int roofRad = (int) roof.getArea().getRadius();
+        for (int r = roofRad; r >= 0; r--) {
+            int bottom = roof.getBaseHeight() + (roofRad - r) * roof.getPitch();
+            drawRing(Pens.fill(target, bottom, bottom + roof.getPitch(), DefaultBlockType.ROOF_HIP), cx, cz, r);
+        }
+    }
+
+    private static int pos(float v) {
+        return (int) Math.floor(v);
+    }
+
+    /**
+     * Draws the columns of the disc that are not part of the next smaller disc.
+     */
+    private static void drawRing(Pen pen, int cx, int cz, int rad) {
+        fillCircle(new AbstractPen(pen.getTargetArea()) {
+
+            @Override
+            public void draw(int x, int z) {
+                if (!inside(x - cx, z - cz, rad - 1)) {
+                    pen.draw(x, z);
+                }
+            }
+        }, cx, cz, rad);
+    }
+
+    private static boolean inside(int dx, int dz, int rad) {
+        return rad >= 0 && dx * dx + dz * dz <= (rad + 0.5) * (rad + 0.5);
+    }
+
+    /**
+     * The previous implementation of {@link RasterUtil#fillCircle}, without duplicate columns on the axes.
+     */
+    private static void fillCircle(Pen pen, int cx, int cz, int rad) {
+        for (int dz = -rad; dz <= rad; dz++) {
+            for (int dx = -rad; dx <= rad; dx++) {
+                if (inside(dx, dz, rad) && pen.getTargetArea().contains(cx + dx, cz + dz)) {
+                    pen.draw(cx + dx, cz + dz);
+                }
+            }
+        }
+    }
+
+    private void assertEquals(BufferRasterTarget expected, BufferRasterTarget actual) {
+        for (int z = region.minZ(); z <= region.maxZ(); z++) {
+            for (int y = region.minY(); y <= region.maxY(); y++) {
+                for (int x = region.minX(); x <= region.maxX(); x++) {
+                    Assert.assertEquals(x + "/" + y + "/" + z, expected.getBlockType(x, y, z), actual.getBlockType(x, y, z));
+                }
+            }
+        }
+    }
+}
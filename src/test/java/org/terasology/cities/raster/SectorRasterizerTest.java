@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.bldg.gen.BuildingGeneratorRegistry;
+import org.terasology.cities.metrics.RasterMetrics;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.sectors.SectorPlan;
+import org.terasology.cities.sectors.SectorPlanner;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link SectorRasterizer} class.
+ */
+public class SectorRasterizerTest {
+
+    private final HeightMap terrain = HeightMaps.constant(10);
+
+    @Test
+    public void testStructures() {
+        SectorPlanner planner = new SectorPlanner(1234, 4);
+        SectorPlan plan = planner.getPlan(new ImmutableVector2i(0, 0));
+        Parcel parcel = plan.getParcels().iterator().next();
+        Rect2i area = parcel.getShape().expand(4, 4);
+
+        Region3i region = Region3i.createFromMinAndSize(new Vector3i(area.minX(), 0, area.minY()), new Vector3i(area.width(), 64, area.height()));
+        RasterMetrics metrics = new RasterMetrics();
+        MeteredRasterTarget target = new MeteredRasterTarget(BufferRasterTarget.allocateDirect(region), metrics);
+
+        SectorRasterizer rasterizer = new SectorRasterizer(planner, BuildingGeneratorRegistry.createDefault(1234), terrain);
+        target.raster(Collections.singletonList(rasterizer));
+        target.finish();
+
+        // the sector is broken down into its road network, its buildings and its town walls
+        Assert.assertEquals(1, metrics.getStructureCount("Sector"));
+        Assert.assertEquals(1, metrics.getStructureCount("Road"));
+        Assert.assertEquals(plan.getWalls().size(), metrics.getStructureCount("TownWall"));
+        Assert.assertTrue(metrics.getStructureCount("Building") > 0);
+        Assert.assertTrue(metrics.getStructureVoxels("Building") > 0);
+
+        long parts = metrics.getStructureVoxels("Road") + metrics.getStructureVoxels("Building") + metrics.getStructureVoxels("TownWall");
+        Assert.assertEquals(metrics.getStructureVoxels("Sector"), parts);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.math.geom.Rect2i;
+
+/**
+ * Tests the {@link SpanUnion} class.
+ */
+public class SpanUnionTest {
+
+    @Test
+    public void testFirstWins() {
+        SpanUnion union = new SpanUnion();
+        union.add(0, 5, 10, 1);
+        union.add(0, 0, 20, 2);
+        union.add(0, 8, 12, 3);
+
+        Assert.assertEquals(Arrays.asList(
+                "0: 0..4 #2", "0: 5..10 #1", "0: 11..20 #2"), collect(union));
+    }
+
+    @Test
+    public void testDisjointGaps() {
+        SpanUnion union = new SpanUnion();
+        union.add(0, 0, 2, 1);
+        union.add(0, 6, 8, 1);
+        union.add(0, 1, 7, 2);
+
+        Assert.assertEquals(Arrays.asList(
+                "0: 0..2 #1", "0: 3..5 #2", "0: 6..8 #1"), collect(union));
+        Assert.assertEquals(2, union.getId(4, 0));
+        Assert.assertEquals(-1, union.getId(9, 0));
+    }
+
+    @Test
+    public void testRectAndDisc() {
+        SpanUnion union = new SpanUnion();
+        union.add(Rect2i.createFromMinAndSize(0, 0, 2, 2), 1);
+        union.addDisc(0, 0, 1, 2);
+
+        Assert.assertEquals(Arrays.asList(
+                "-1: -1..1 #2",
+                "0: -1..-1 #2", "0: 0..1 #1",
+                "1: -1..-1 #2", "1: 0..1 #1"), collect(union));
+    }
+
+    @Test
+    public void testClip() {
+        SpanUnion union = new SpanUnion();
+        union.add(0, 5, 10, 1);
+        union.add(0, 0, 20, 2);
+
+        List<String> spans = new ArrayList<>();
+        Pen pen = new AbstractPen(Rect2i.createFromMinAndSize(-10, -10, 40, 40)) {
+
+            @Override
+            public void draw(int x, int z) {
+                spans.add(z + ": " + x);
+            }
+
+            @Override
+            public void drawSpan(int x0, int x1, int z) {
+                spans.add(z + ": " + x0 + ".." + x1);
+            }
+        };
+
+        Pen clipped = union.clip(pen, 2);
+        clipped.drawSpan(3, 15, 0);
+        clipped.drawSpan(-5, 30, 1);
+        clipped.draw(6, 0);
+        clipped.draw(12, 0);
+        Assert.assertEquals(Arrays.asList("0: 3..4", "0: 11..15", "0: 12"), spans);
+    }
+
+    @Test
+    public void testClipSpans() {
+        SpanUnion union = new SpanUnion();
+        union.add(2, 5, 10, 1);
+        for (int z = 0; z < 5; z++) {
+            union.add(z, 0, 20, 2);
+        }
+
+        List<String> spans = new ArrayList<>();
+        Pen pen = new AbstractPen(Rect2i.createFromMinAndSize(-10, -10, 40, 40)) {
+
+            @Override
+            public void draw(int x, int z) {
+                spans.add(z + ": " + x);
+            }
+
+            @Override
+            public void drawSpan(int x0, int x1, int z) {
+                spans.add(z + ": " + x0 + ".." + x1);
+            }
+
+            @Override
+            public void drawSpans(int x0, int x1, int z0, int z1) {
+                spans.add(z0 + "-" + z1 + ": " + x0 + ".." + x1);
+            }
+        };
+
+        // fully covered rows are passed on in blocks
+        Pen clipped = union.clip(pen, 2);
+        clipped.drawSpans(3, 15, -1, 6);
+        Assert.assertEquals(Arrays.asList("0-1: 3..15", "2: 3..4", "2: 11..15", "3-4: 3..15"), spans);
+    }
+
+    private static List<String> collect(SpanUnion union) {
+        List<String> spans = new ArrayList<>();
+        union.forEach((z, x0, x1, id) -> spans.add(z + ": " + x0 + ".." + x1 + " #" + id));
+        return spans;
+    }
+}
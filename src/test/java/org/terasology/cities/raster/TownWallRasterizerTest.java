@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.raster;
+
+import static org.terasology.cities.DefaultBlockType.AIR;
+import static org.terasology.cities.DefaultBlockType.BUILDING_WALL;
+import static org.terasology.cities.DefaultBlockType.TOWER_WALL;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.bldg.SimpleTower;
+import org.terasology.cities.walls.GateWallSegment;
+import org.terasology.cities.walls.SolidWallSegment;
+import org.terasology.cities.walls.TownWall;
+import org.terasology.commonworld.Orientation;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector2i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Tests the {@link TownWallRasterizer} class.
+ */
+public class TownWallRasterizerTest {
+
+    private static final int TERRAIN = 2;
+
+    private final HeightMap terrain = HeightMaps.constant(TERRAIN);
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(0, 0, 0), new Vector3i(64, 32, 64));
+
+    @Test
+    public void testTowers() {
+        Rect2i towerRect = Rect2i.createFromMinAndSize(28, 17, 7, 7);
+        TownWall townWall = new TownWall();
+        townWall.addWall(new SolidWallSegment(new Vector2i(2, 20), new Vector2i(31, 20), 3, 6));
+        townWall.addWall(new SolidWallSegment(new Vector2i(31, 20), new Vector2i(31, 50), 3, 6));
+        townWall.addTower(new SimpleTower(Orientation.NORTH, towerRect, TERRAIN + 1, 10));
+
+        BufferRasterTarget target = BufferRasterTarget.allocateDirect(region);
+        new TownWallRasterizer(townWall, terrain, 16).raster(target);
+
+        // the wall is cut at the tower and the tower is built in its place
+        for (int x = 2; x < towerRect.minX(); x++) {
+            for (int z = 19; z <= 21; z++) {
+                Assert.assertEquals(TOWER_WALL, target.getBlockType(x, TERRAIN, z));
+                Assert.assertEquals(TOWER_WALL, target.getBlockType(x, TERRAIN + 5, z));
+                Assert.assertEquals(AIR, target.getBlockType(x, TERRAIN + 6, z));
+            }
+        }
+        for (int z = towerRect.minY(); z <= towerRect.maxY(); z++) {
+            for (int x = towerRect.minX(); x <= towerRect.maxX(); x++) {
+                for (int y = target.getMinHeight(); y <= target.getMaxHeight(); y++) {
+                    Assert.assertTrue(target.getBlockType(x, y, z) != TOWER_WALL);
+                }
+            }
+        }
+        for (int z = 19; z <= 21; z++) {
+            Assert.assertEquals(BUILDING_WALL, target.getBlockType(towerRect.minX(), TERRAIN + 5, z));
+            Assert.assertEquals(BUILDING_WALL, target.getBlockType(towerRect.maxX(), TERRAIN + 5, z));
+        }
+        Assert.assertEquals(TOWER_WALL, target.getBlockType(31, TERRAIN, towerRect.maxY() + 1));
+    }
+
+    @Test
+    public void testGate() {
+        TownWall townWall = new TownWall();
+        townWall.addWall(new SolidWallSegment(new Vector2i(40, 0), new Vector2i(40, 10), 3, 8));
+        townWall.addWall(new GateWallSegment(new Vector2i(40, 10), new Vector2i(40, 16), 3, 8));
+        townWall.addWall(new SolidWallSegment(new Vector2i(40, 16), new Vector2i(40, 30), 3, 8));
+
+        BufferRasterTarget target = BufferRasterTarget.allocateDirect(region);
+        new TownWallRasterizer(townWall, terrain, 16).raster(target);
+
+        int passage = TownWallRasterizer.GATE_PASSAGE_HEIGHT;
+        Assert.assertEquals(TOWER_WALL, target.getBlockType(40, TERRAIN, 5));
+        Assert.assertEquals(AIR, target.getBlockType(40, TERRAIN, 13));
+        Assert.assertEquals(AIR, target.getBlockType(40, TERRAIN + passage - 1, 13));
+        Assert.assertEquals(TOWER_WALL, target.getBlockType(40, TERRAIN + passage, 13));
+        Assert.assertEquals(TOWER_WALL, target.getBlockType(40, TERRAIN + 7, 13));
+        Assert.assertEquals(AIR, target.getBlockType(40, TERRAIN + 8, 13));
+        Assert.assertEquals(TOWER_WALL, target.getBlockType(40, TERRAIN, 20));
+    }
+
+    @Test
+    public void testChunks() {
+        TownWall townWall = new TownWall();
+        townWall.addWall(new SolidWallSegment(new Vector2i(3, 5), new Vector2i(60, 47), 4, 5));
+        townWall.addTower(new SimpleTower(Orientation.EAST, Rect2i.createFromMinAndSize(28, 22, 6, 6), TERRAIN + 1, 9));
+        TownWallRasterizer rasterizer = new TownWallRasterizer(townWall, terrain, 16);
+
+        BufferRasterTarget whole = BufferRasterTarget.allocateDirect(region);
+        rasterizer.raster(whole);
+
+        // rasterizing chunk by chunk yields the same result
+        for (int cz = 0; cz < 4; cz++) {
+            for (int cx = 0; cx < 4; cx++) {
+                Region3i chunk = Region3i.createFromMinAndSize(new Vector3i(cx * 16, 0, cz * 16), new Vector3i(16, 32, 16));
+                BufferRasterTarget part = BufferRasterTarget.allocateDirect(chunk);
+                rasterizer.raster(part);
+                for (int z = chunk.minZ(); z <= chunk.maxZ(); z++) {
+                    for (int y = chunk.minY(); y <= chunk.maxY(); y++) {
+                        for (int x = chunk.minX(); x <= chunk.maxX(); x++) {
+                            Assert.assertEquals(whole.getBlockType(x, y, z), part.getBlockType(x, y, z));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.terasology.cities.raster;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.cities.DefaultBlockType;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.commonworld.heightmap.HeightMaps;
+import org.terasology.math.Region3i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Compares large fills into a {@link BufferRasterTarget} in column order and in layer order.
+ * It is a benchmark, not a unit test, so it is ignored by default. Run a single test method per JVM
+ * for reliable numbers - both orders share the same JIT profile otherwise, which penalizes the second one.
+ */
+@Ignore("Benchmark - run manually")
+public class TraversalOrderBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(TraversalOrderBenchmark.class);
+
+    private static final int WARMUP = 10;
+    private static final int RUNS = 20;
+
+    private final Region3i region = Region3i.createFromMinAndSize(new Vector3i(0, 0, 0), new Vector3i(256, 128, 256));
+    private final BufferRasterTarget buffer = BufferRasterTarget.allocateDirect(region);
+
+    @Test
+    public void testColumns() {
+        measureAll(new OrderedRasterTarget(buffer, TraversalOrder.COLUMNS));
+    }
+
+    @Test
+    public void testLayers() {
+        measureAll(new OrderedRasterTarget(buffer, TraversalOrder.LAYERS));
+    }
+
+    private void measureAll(RasterTarget target) {
+        HeightMap bottom = HeightMaps.constant(10);
+        HeightMap top = HeightMaps.constant(110);
+        HeightMap terrain = HeightMaps.constant(30);
+
+        Pen constantPen = Pens.fill(target, 10, 110, DefaultBlockType.BUILDING_WALL);
+        Pen heightMapPen = Pens.fill(target, bottom, top, DefaultBlockType.BUILDING_FOUNDATION);
+        Pen floorPen = BuildingPens.floorPen(target, terrain, 60, DefaultBlockType.BUILDING_FLOOR);
+
+        TraversalOrder order = target.getTraversalOrder();
+        logger.info("{} constant fill:   {} ms", order, String.format("%6.1f", measure(constantPen)));
+        logger.info("{} height map fill: {} ms", order, String.format("%6.1f", measure(heightMapPen)));
+        logger.info("{} floor fill:      {} ms", order, String.format("%6.1f", measure(floorPen)));
+    }
+
+    private double measure(Pen pen) {
+        Rect2i rect = buffer.getAffectedArea();
+        for (int i = 0; i < WARMUP; i++) {
+            RasterUtil.fillRect(pen, rect);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            RasterUtil.fillRect(pen, rect);
+        }
+        return (System.nanoTime() - start) / 1e6 / RUNS;
+    }
+}
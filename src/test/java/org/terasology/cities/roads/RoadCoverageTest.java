@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.roads;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Vector2i;
+
+/**
+ * Compares the {@link RoadCoverage} class against a brute-force intersection test of every segment with every chunk.
+ */
+public class RoadCoverageTest {
+
+    private static final int CHUNK_SIZE = 32;
+
+    private final Random rng = new Random(4321);
+
+    @Test
+    public void testCoverage() {
+        for (int run = 0; run < 100; run++) {
+            List<Vector2i> points = new ArrayList<>();
+            for (int i = 0; i < 2 + rng.nextInt(6); i++) {
+                points.add(new Vector2i(rng.nextInt(400) - 200, rng.nextInt(400) - 200));
+            }
+            Road road = new Road(points, 2 + rng.nextInt(8));
+            int margin = (int) Math.ceil(road.getWidth() * 0.5f);
+            RoadCoverage coverage = new RoadCoverage(road, CHUNK_SIZE, CHUNK_SIZE, margin);
+
+            for (int cz = -10; cz <= 10; cz++) {
+                for (int cx = -10; cx <= 10; cx++) {
+                    List<Integer> expected = new ArrayList<>();
+                    for (int i = 0; i < road.getSegments().size(); i++) {
+                        RoadSegment seg = road.getSegments().get(i);
+                        if (intersects(seg.getStart(), seg.getEnd(),
+                                cx * CHUNK_SIZE - margin, cz * CHUNK_SIZE - margin,
+                                (cx + 1) * CHUNK_SIZE - 1 + margin, (cz + 1) * CHUNK_SIZE - 1 + margin)) {
+                            expected.add(i);
+                        }
+                    }
+
+                    List<Integer> actual = new ArrayList<>();
+                    coverage.forEachSegment(cx, cz, actual::add);
+                    Assert.assertEquals("chunk " + cx + "/" + cz, expected, actual);
+                    Assert.assertEquals(!expected.isEmpty(), coverage.covers(cx, cz));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testManySegments() {
+        // a zig-zag road with all segments in the same chunk
+        List<Vector2i> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(new Vector2i(i % 2 * 10, i % 20));
+        }
+        Road road = new Road(points, 2);
+        RoadCoverage coverage = new RoadCoverage(road, CHUNK_SIZE, CHUNK_SIZE, 1);
+
+        List<Integer> actual = new ArrayList<>();
+        coverage.forEachSegment(0, 0, actual::add);
+        Assert.assertEquals(999, actual.size());
+        Assert.assertEquals(Arrays.asList(0, 1, 2), actual.subList(0, 3));
+    }
+
+    /**
+     * @return true if the segment touches the rectangle (inclusive bounds)
+     */
+    private static boolean intersects(ImmutableVector2i p0, ImmutableVector2i p1, int minX, int minZ, int maxX, int maxZ) {
+        if (inside(p0, minX, minZ, maxX, maxZ) || inside(p1, minX, minZ, maxX, maxZ)) {
+            return true;
+        }
+        long[][] corners = {{minX, minZ}, {maxX, minZ}, {maxX, maxZ}, {minX, maxZ}};
+        for (int i = 0; i < 4; i++) {
+            long[] a = corners[i];
+            long[] b = corners[(i + 1) % 4];
+            if (crosses(p0.getX(), p0.getY(), p1.getX(), p1.getY(), a[0], a[1], b[0], b[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean inside(ImmutableVector2i p, int minX, int minZ, int maxX, int maxZ) {
+        return p.getX() >= minX && p.getX() <= maxX && p.getY() >= minZ && p.getY() <= maxZ;
+    }
+
+    private static boolean crosses(long ax, long az, long bx, long bz, long cx, long cz, long dx, long dz) {
+        long d1 = cross(cx, cz, dx, dz, ax, az);
+        long d2 = cross(cx, cz, dx, dz, bx, bz);
+        long d3 = cross(ax, az, bx, bz, cx, cz);
+        long d4 = cross(ax, az, bx, bz, dx, dz);
+        if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) {
+            return true;
+        }
+        return (d1 == 0 && onSegment(cx, cz, dx, dz, ax, az))
+            || (d2 == 0 && onSegment(cx, cz, dx, dz, bx, bz))
+            || (d3 == 0 && onSegment(ax, az, bx, bz, cx, cz))
+            || (d4 == 0 && onSegment(ax, az, bx, bz, dx, dz));
+    }
+
+    private static long cross(long ax, long az, long bx, long bz, long px, long pz) {
+        return (bx - ax) * (pz - az) - (bz - az) * (px - ax);
+    }
+
+    private static boolean onSegment(long ax, long az, long bx, long bz, long px, long pz) {
+        return px >= Math.min(ax, bx) && px <= Math.max(ax, bx) && pz >= Math.min(az, bz) && pz <= Math.max(az, bz);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.roads;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector2i;
+
+/**
+ * Tests the {@link RoadNetwork} class.
+ * <pre>
+ *  a ------ b ------ c
+ *  |                |
+ *  |________ d _____|       e ---- f
+ * </pre>
+ */
+public class RoadNetworkTest {
+
+    private final Vector2i a = new Vector2i(0, 0);
+    private final Vector2i b = new Vector2i(100, 0);
+    private final Vector2i c = new Vector2i(200, 0);
+    private final Vector2i d = new Vector2i(150, 150);
+    private final Vector2i e = new Vector2i(300, 150);
+    private final Vector2i f = new Vector2i(400, 150);
+
+    private final Road ab = new Road(a, b, 4f);
+    private final Road bc = new Road(b, c, 4f);
+    private final Road ad = new Road(Arrays.asList(a, new Vector2i(0, 150), d), 4f);
+    private final Road dc = new Road(Arrays.asList(d, new Vector2i(200, 150), c), 4f);
+    private final Road ef = new Road(e, f, 4f);
+
+    private final RoadNetwork network = new RoadNetwork(Arrays.asList(ab, bc, ad, dc, ef), 32);
+
+    @Test
+    public void testJunctions() {
+        Assert.assertEquals(6, network.getJunctions().size());
+        Assert.assertEquals(Arrays.asList(ab, bc), network.getRoads(b));
+        Assert.assertEquals(Collections.emptyList(), network.getRoads(new Vector2i(1, 1)));
+    }
+
+    @Test
+    public void testShortestPath() {
+        Assert.assertEquals(Arrays.asList(ab, bc), network.findPath(a, c));
+        Assert.assertEquals(Arrays.asList(bc, dc), network.findPath(b, d));
+        Assert.assertEquals(Collections.emptyList(), network.findPath(a, f));
+    }
+
+    @Test
+    public void testArea() {
+        Assert.assertEquals(Arrays.asList(ab, ad), network.getRoads(Rect2i.createFromMinAndSize(0, 0, 32, 32)));
+        Assert.assertEquals(Arrays.asList(ad), network.getRoads(Rect2i.createFromMinAndSize(-33, 64, 32, 32)));
+        Assert.assertEquals(Collections.emptyList(), network.getRoads(Rect2i.createFromMinAndSize(64, 64, 32, 32)));
+    }
+}
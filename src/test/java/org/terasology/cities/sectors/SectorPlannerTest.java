@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.sectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.parcels.Parcel;
+import org.terasology.cities.roads.Road;
+import org.terasology.cities.roads.RoadNetwork;
+import org.terasology.cities.walls.TownWall;
+import org.terasology.cities.walls.WallSegment;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+
+/**
+ * Tests the {@link SectorPlanner} class.
+ */
+public class SectorPlannerTest {
+
+    private final SectorPlanner planner = new SectorPlanner(1234, 16);
+
+    @Test
+    public void testCache() {
+        SectorPlan plan = planner.getPlan(new ImmutableVector2i(2, -3));
+        Assert.assertSame(plan, planner.getPlan(new ImmutableVector2i(2, -3)));
+        Assert.assertEquals(new ImmutableVector2i(2, -3), plan.getCoord());
+
+        // the same seed yields the same plan
+        SectorPlan other = new SectorPlanner(1234, 16).getPlan(new ImmutableVector2i(2, -3));
+        Assert.assertEquals(plan.getSites(), other.getSites());
+        Assert.assertEquals(plan.getParcels(), other.getParcels());
+    }
+
+    @Test
+    public void testPlans() {
+        Rect2i area = Rect2i.createFromMinAndSize(-SectorPlanner.SECTOR_SIZE, 0, 2 * SectorPlanner.SECTOR_SIZE, 10);
+        List<SectorPlan> plans = planner.getPlans(area);
+        Assert.assertEquals(2, plans.size());
+
+        int walls = 0;
+        for (int i = 0; i < 20; i++) {
+            SectorPlan plan = planner.getPlan(new ImmutableVector2i(i, i % 3));
+            Rect2i sector = plan.getArea();
+            Assert.assertFalse(plan.getSites().isEmpty());
+            Assert.assertTrue(plan.getSites().size() <= SectorPlanner.MAX_SITES);
+
+            for (Site site : plan.getSites()) {
+                Assert.assertTrue(sector.contains(site.getBounds()));
+            }
+            for (Parcel parcel : plan.getParcels()) {
+                Assert.assertTrue(sector.contains(parcel.getShape()));
+            }
+            for (TownWall wall : plan.getWalls()) {
+                for (WallSegment seg : wall.getWalls()) {
+                    Assert.assertTrue(sector.contains(seg.getStart()) && sector.contains(seg.getEnd()));
+                }
+                walls++;
+            }
+        }
+        Assert.assertTrue(walls > 0);
+    }
+
+    @Test
+    public void testBorders() {
+        SectorPlan plan = planner.getPlan(new ImmutableVector2i(0, 0));
+        SectorPlan east = planner.getPlan(new ImmutableVector2i(1, 0));
+        SectorPlan south = planner.getPlan(new ImmutableVector2i(0, 1));
+
+        // the link is split by the streets of both sectors, but the piece that crosses the border must be the same
+        Assert.assertEquals(1, getSharedRoads(plan, east).size());
+        Assert.assertEquals(getSharedRoads(plan, east), getSharedRoads(east, plan));
+        Assert.assertEquals(1, getSharedRoads(plan, south).size());
+        Assert.assertEquals(getSharedRoads(plan, south), getSharedRoads(south, plan));
+    }
+
+    @Test
+    public void testConnected() {
+        for (int i = 0; i < 10; i++) {
+            SectorPlan plan = planner.getPlan(new ImmutableVector2i(i, -i));
+            RoadNetwork network = plan.getRoads();
+            List<Site> sites = plan.getSites();
+            for (Site site : sites) {
+                // every street can be reached from the center of its site
+                int streets = 0;
+                for (Road road : network.getRoads()) {
+                    if (site.getBounds().contains(road.getEnd0()) && site.getBounds().contains(road.getEnd1())) {
+                        for (ImmutableVector2i end : Arrays.asList(road.getEnd0(), road.getEnd1())) {
+                            if (!end.equals(site.getCenter())) {
+                                Assert.assertFalse(end.toString(), network.findPath(site.getCenter(), end).isEmpty());
+                            }
+                        }
+                        streets++;
+                    }
+                }
+                Assert.assertTrue(streets > 0);
+            }
+            for (int j = 1; j < sites.size(); j++) {
+                Assert.assertFalse(network.findPath(sites.get(0).getCenter(), sites.get(j).getCenter()).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testParallel() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Rect2i sectors = Rect2i.createFromMinAndSize(-3, -3, 6, 6);
+            List<SectorPlan> plans = new SectorPlanner(5678, 64).planAll(sectors, executor);
+            Assert.assertEquals(36, plans.size());
+
+            SectorPlanner sequential = new SectorPlanner(5678, 64);
+            for (SectorPlan plan : plans) {
+                Assert.assertTrue(sectors.contains(plan.getCoord()));
+                SectorPlan other = sequential.getPlan(plan.getCoord());
+                Assert.assertEquals(plan.getParcels(), other.getParcels());
+                Assert.assertEquals(getPoints(plan.getRoads().getRoads()), getPoints(other.getRoads().getRoads()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return the point lists of all roads of the first plan that cross the border to the other sector
+     */
+    private static Set<List<ImmutableVector2i>> getSharedRoads(SectorPlan plan, SectorPlan other) {
+        Set<List<ImmutableVector2i>> result = new HashSet<>();
+        Rect2i a = plan.getArea();
+        Rect2i b = other.getArea();
+        for (Road road : plan.getRoads().getRoads()) {
+            if ((a.contains(road.getEnd0()) && b.contains(road.getEnd1())) || (b.contains(road.getEnd0()) && a.contains(road.getEnd1()))) {
+                result.add(road.getPoints());
+            }
+        }
+        return result;
+    }
+
+    private static List<List<ImmutableVector2i>> getPoints(List<Road> roads) {
+        List<List<ImmutableVector2i>> result = new ArrayList<>();
+        for (Road road : roads) {
+            result.add(road.getPoints());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.cities.surface;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.terasology.cities.roads.Road;
+import org.terasology.cities.roads.RoadNetwork;
+import org.terasology.cities.roads.RoadSegment;
+import org.terasology.commonworld.heightmap.HeightMap;
+import org.terasology.math.TeraMath;
+import org.terasology.math.geom.ImmutableVector2i;
+import org.terasology.math.geom.Rect2i;
+import org.terasology.math.geom.Vector2i;
+
+/**
+ * Tests the {@link RoadGrading} class.
+ */
+public class RoadGradingTest {
+
+    private static final int BLEND = 5;
+    private static final int RADIUS = 2;
+
+    private final InfiniteSurfaceHeightFacet surface = (x, z) -> 20 + x * 0.13f + Math.floorMod(z, 7) * 0.5f;
+
+    @Test
+    public void testAgainstAllSegments() {
+        Random rng = new Random(9876);
+        List<Road> roads = new ArrayList<>();
+        for (int r = 0; r < 12; r++) {
+            List<Vector2i> points = new ArrayList<>();
+            for (int i = 0; i < 2 + rng.nextInt(5); i++) {
+                points.add(new Vector2i(rng.nextInt(300) - 150, rng.nextInt(300) - 150));
+            }
+            roads.add(new Road(points, 2 + rng.nextInt(6)));
+        }
+        RoadNetwork network = new RoadNetwork(roads, 32);
+        RoadGrading grading = new RoadGrading(network, surface, BLEND, RADIUS);
+
+        int graded = 0;
+        for (int i = 0; i < 9; i++) {
+            Rect2i area = Rect2i.createFromMinAndSize(-96 + (i % 3) * 64, -96 + (i / 3) * 64, 32, 32);
+            HeightMap hm = grading.createHeightMap(area);
+            for (int z = area.minY(); z <= area.maxY(); z++) {
+                for (int x = area.minX(); x <= area.maxX(); x++) {
+                    Assert.assertEquals(x + "/" + z, computeHeight(roads, x, z), hm.apply(x, z));
+                    if (hm.apply(x, z) != TeraMath.floorToInt(surface.getWorld(x, z))) {
+                        graded++;
+                    }
+                }
+            }
+        }
+        Assert.assertTrue(graded > 0);
+    }
+
+    @Test
+    public void testNeighbours() {
+        List<Vector2i> points = new ArrayList<>();
+        points.add(new Vector2i(-40, 3));
+        points.add(new Vector2i(10, 20));
+        points.add(new Vector2i(70, 5));
+        RoadNetwork network = new RoadNetwork(Collections.singletonList(new Road(points, 4)), 32);
+        RoadGrading grading = new RoadGrading(network, surface, BLEND, RADIUS);
+
+        HeightMap left = grading.createHeightMap(Rect2i.createFromMinAndSize(-32, 0, 48, 32));
+        HeightMap right = grading.createHeightMap(Rect2i.createFromMinAndSize(0, 0, 48, 32));
+        for (int z = 0; z < 32; z++) {
+            for (int x = 0; x < 16; x++) {
+                Assert.assertEquals(left.apply(x, z), right.apply(x, z));
+            }
+        }
+
+        // the road surface follows the averaged vertex heights, not the terrain
+        Assert.assertTrue(TeraMath.floorToInt(surface.getWorld(10, 20)) != right.apply(10, 20));
+    }
+
+    /**
+     * Computes the height by testing every segment of every road.
+     */
+    private int computeHeight(List<Road> roads, int x, int z) {
+        float terrain = surface.getWorld(x, z);
+        float bestDist = Float.POSITIVE_INFINITY;
+        float bestHeight = terrain;
+        for (Road road : roads) {
+            for (RoadSegment seg : road.getSegments()) {
+                ImmutableVector2i p0 = seg.getStart();
+                ImmutableVector2i p1 = seg.getEnd();
+                float dx = p1.getX() - p0.getX();
+                float dz = p1.getY() - p0.getY();
+                float px = x - p0.getX();
+                float pz = z - p0.getY();
+                float lenSq = dx * dx + dz * dz;
+                float t = (lenSq > 0) ? TeraMath.clamp((px * dx + pz * dz) * (1f / lenSq)) : 0;
+                float ex = px - t * dx;
+                float ez = pz - t * dz;
+                float dist = (float) Math.sqrt(ex * ex + ez * ez) - road.getWidth() * 0.5f;
+                if (dist < bestDist) {
+                    float h0 = vertexHeight(p0);
+                    bestDist = dist;
+                    bestHeight = h0 + (vertexHeight(p1) - h0) * t;
+                }
+            }
+        }
+
+        float height = terrain;
+        if (bestDist <= 0) {
+            height = bestHeight;
+        } else if (bestDist < BLEND) {
+            float f = bestDist / BLEND;
+            f = f * f * (3 - 2 * f);
+            height = bestHeight + (terrain - bestHeight) * f;
+        }
+        return TeraMath.floorToInt(height);
+    }
+
+    private float vertexHeight(ImmutableVector2i pos) {
+        float sum = 0;
+        int count = 0;
+        for (int dz = -RADIUS; dz <= RADIUS; dz++) {
+            for (int dx = -RADIUS; dx <= RADIUS; dx++) {
+                sum += surface.getWorld(pos.getX() + dx, pos.getY() + dz);
+                count++;
+            }
+        }
+        return sum / count;
+    }
+}